@@ -0,0 +1,58 @@
+package com.github.dscpsyl.jgrade2;
+
+import com.github.dscpsyl.jgrade2.benchmarks.Synthetic;
+import com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks turning a Checkstyle XML report into a graded test result,
+ * without running Checkstyle itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckstyleGraderBenchmark {
+
+    @Param({"0", "10", "100", "1000", "10000"})
+    private int errors;
+
+    private byte[] report;
+
+    /**
+     * Build the report.
+     */
+    @Setup
+    public void setUp() {
+        this.report = Synthetic.checkstyleReport(this.errors);
+    }
+
+    /**
+     * Parse the report with a new grader, as every run does.
+     * @return The result.
+     * @throws IOException Never.
+     */
+    @Benchmark
+    public GradedTestResult parseReport() throws IOException {
+        CheckstyleGrader grader = new CheckstyleGrader(10, 1, "checkstyle.jar", ".");
+        return grader.xmlToGradedTestResult(new ByteArrayInputStream(this.report));
+    }
+}
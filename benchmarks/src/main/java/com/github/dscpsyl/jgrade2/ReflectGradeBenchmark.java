@@ -0,0 +1,131 @@
+package com.github.dscpsyl.jgrade2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks finding the grade methods of a grading class, which happens
+ * once per class for every submission graded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReflectGradeBenchmark {
+
+    @Param({"small", "large"})
+    private String graderClass;
+
+    private Class<?> c;
+
+    /**
+     * A grading class the size of a short assignment's.
+     */
+    public static class SmallGrader {
+        /** @param g The grader. */
+        @BeforeGrading
+        public void setUp(Grader g) { }
+
+        /** @param g The grader. */
+        @Grade
+        public void gradeConstructor(Grader g) { }
+
+        /** @param g The grader. */
+        @Grade
+        public void gradeGetters(Grader g) { }
+
+        /** @param g The grader. */
+        @Grade
+        public void gradeToString(Grader g) { }
+
+        /** @param g The grader. */
+        @AfterGrading
+        public void tearDown(Grader g) { }
+    }
+
+    /**
+     * A grading class the size of a long assignment's, with helpers that
+     * are not grade methods and inherited grade methods.
+     */
+    public static class LargeGrader extends SmallGrader {
+        /** @param g The grader. */
+        @Grade
+        public void gradePartOne(Grader g) { }
+
+        /** @param g The grader. */
+        @Grade
+        public void gradePartTwo(Grader g) { }
+
+        /** @param g The grader. */
+        @Grade
+        public void gradePartThree(Grader g) { }
+
+        /** @param g The grader. */
+        @Grade
+        public void gradePartFour(Grader g) { }
+
+        /** @param g The grader. */
+        @Grade
+        public void gradePartFive(Grader g) { }
+
+        /** @param g The grader. */
+        @Grade
+        public void gradeStyle(Grader g) { }
+
+        /** @param g The grader. */
+        @Grade
+        public void gradeEdgeCases(Grader g) { }
+
+        /** @param g The grader. */
+        @Grade
+        public void gradePerformance(Grader g) { }
+
+        /** @param g The grader. */
+        @AfterGrading
+        public void summarize(Grader g) { }
+
+        /** @return A helper that is not a grade method. */
+        public String expectedOutput() {
+            return "";
+        }
+
+        /** @param s A helper that is not a grade method. */
+        public void compare(String s) { }
+
+        /** @param g A helper that is not a grade method. */
+        public void report(Grader g) { }
+    }
+
+    /**
+     * Pick the grading class.
+     */
+    @Setup
+    public void setUp() {
+        this.c = "small".equals(this.graderClass) ? SmallGrader.class : LargeGrader.class;
+    }
+
+    /**
+     * Find the grade methods.
+     * @return The methods in the order they run.
+     */
+    @Benchmark
+    public List<Method> graderMethods() {
+        return ReflectGrade.graderMethods(this.c);
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.dscpsyl.jgrade2.benchmarks;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Compares two JMH result files written with <code>-rf json</code>, a
+ * stored baseline and a new run, benchmark by benchmark. A benchmark has
+ * regressed if it got worse by more than the threshold and by more than
+ * the error of both measurements together, so noise alone is not reported.
+ * <p>
+ *     Usage: <code>java -cp target/benchmarks.jar
+ *     com.github.dscpsyl.jgrade2.benchmarks.CompareToBaseline
+ *     baseline.json current.json [threshold percent, default 10]</code>
+ * </p>
+ * <p>
+ *     Exits with 1 if any benchmark regressed, so it can fail a build.
+ * </p>
+ */
+public final class CompareToBaseline {
+
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10;
+    private static final double PERCENT = 100;
+    private static final String PACKAGE_PREFIX = "com.github.dscpsyl.jgrade2.";
+
+    /**
+     * The score of one benchmark in one run.
+     */
+    private static final class Score {
+        private final double score;
+        private final double error;
+        private final String unit;
+        private final boolean higherIsBetter;
+
+        /**
+         * Create a new Score from a JMH result.
+         * @param result The result.
+         * @throws JSONException If the result is not a JMH result.
+         */
+        Score(JSONObject result) throws JSONException {
+            JSONObject metric = result.getJSONObject("primaryMetric");
+            this.score = metric.getDouble("score");
+            double e = metric.optDouble("scoreError", 0);
+            this.error = Double.isNaN(e) ? 0 : e;
+            this.unit = metric.getString("scoreUnit");
+            this.higherIsBetter = "thrpt".equals(result.getString("mode"));
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private CompareToBaseline() { }
+
+    /**
+     * Compare the files and print a table of the changes.
+     * @param args The baseline file, the current file and optionally the threshold in percent.
+     * @throws IOException If a file cannot be read.
+     * @throws JSONException If a file is not a JMH result file.
+     */
+    public static void main(String[] args) throws IOException, JSONException {
+        if (args.length < 2) {
+            System.err.println("usage: CompareToBaseline baseline.json current.json [threshold percent]");
+            System.exit(2);
+        }
+        Map<String, Score> baseline = read(args[0]);
+        Map<String, Score> current = read(args[1]);
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+
+        int regressions = 0;
+        System.out.printf("%-70s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score now = entry.getValue();
+            Score then = baseline.get(entry.getKey());
+            if (then == null) {
+                System.out.printf("%-70s %14s %14.3f %9s%n", entry.getKey(), "-", now.score, "new");
+                continue;
+            }
+            double change = (now.score - then.score) / then.score * PERCENT;
+            double worse = now.higherIsBetter ? then.score - now.score : now.score - then.score;
+            boolean regressed = worse > then.score * threshold / PERCENT && worse > then.error + now.error;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%% %s%s%n", entry.getKey(), then.score, now.score,
+                    change, now.unit, regressed ? "  REGRESSION" : "");
+        }
+
+        System.out.printf("%d of %d benchmarks regressed by more than %.1f%%%n", regressions, current.size(),
+                threshold);
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+    /**
+     * Read a JMH result file.
+     * @param file The file.
+     * @return The score of each benchmark, keyed by its name and parameters.
+     * @throws IOException If the file cannot be read.
+     * @throws JSONException If the file is not a JMH result file.
+     */
+    private static Map<String, Score> read(String file) throws IOException, JSONException {
+        JSONArray results = new JSONArray(new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8));
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (int i = 0; i < results.length(); i++) {
+            JSONObject result = results.getJSONObject(i);
+            scores.put(key(result), new Score(result));
+        }
+        return scores;
+    }
+
+    /**
+     * Get the name a benchmark is compared by.
+     * @param result The JMH result of the benchmark.
+     * @return The benchmark's name relative to the jgrade2 package and its
+     *         parameters, sorted by name.
+     * @throws JSONException If the result has no benchmark name.
+     */
+    private static String key(JSONObject result) throws JSONException {
+        String name = result.getString("benchmark");
+        StringBuilder key = new StringBuilder(name.startsWith(PACKAGE_PREFIX)
+                ? name.substring(PACKAGE_PREFIX.length()) : name);
+        JSONObject params = result.optJSONObject("params");
+        if (params != null) {
+            Map<String, Object> sorted = new TreeMap<>();
+            Iterator<String> names = params.keys();
+            while (names.hasNext()) {
+                String param = names.next();
+                sorted.put(param, params.get(param));
+            }
+            key.append(sorted);
+        }
+        return key.toString();
+    }
+}
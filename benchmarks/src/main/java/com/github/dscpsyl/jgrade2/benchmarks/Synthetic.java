@@ -0,0 +1,125 @@
+package com.github.dscpsyl.jgrade2.benchmarks;
+
+import com.github.dscpsyl.jgrade2.Grader;
+import com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult;
+
+import static com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult.HIDDEN;
+import static com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult.VISIBLE;
+
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Synthetic grading data for the benchmarks, sized like real assignments.
+ * Every fourth test fails, and a failing test's output is an assertion
+ * message and a stack trace of about 1.5 KB (with the quotes, tabs and
+ * non-ASCII characters real output has), while passing tests print a
+ * short line. Everything is deterministic so runs are comparable.
+ */
+public final class Synthetic {
+
+    /** One in this many tests fails. */
+    public static final int FAILURE_INTERVAL = 4;
+
+    private static final int STACK_DEPTH = 20;
+    private static final int ERRORS_PER_FILE = 20;
+
+    private static final String[] CHECKS = {
+        "MagicNumberCheck", "JavadocMethodCheck", "LineLengthCheck", "FinalParametersCheck", "MethodNameCheck",
+    };
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Synthetic() { }
+
+    /**
+     * Whether the test with the index fails.
+     * @param i The index of the test.
+     * @return True for every {@value #FAILURE_INTERVAL}th test.
+     */
+    public static boolean fails(int i) {
+        return i % FAILURE_INTERVAL == FAILURE_INTERVAL - 1;
+    }
+
+    /**
+     * The output of the test with the index.
+     * @param i The index of the test.
+     * @return A stack trace for failing tests, a short line for others.
+     */
+    public static String output(int i) {
+        if (!fails(i)) {
+            return "Checking \"test" + i + "\"... ok\n";
+        }
+        StringBuilder sb = new StringBuilder("FAILED/ABORTED:: \n")
+                .append("org.opentest4j.AssertionFailedError: expected: <\"Grüße, 世界\"> but was: <\"")
+                .append(i).append("\">\n");
+        for (int frame = 0; frame < STACK_DEPTH; frame++) {
+            sb.append("\tat edu.example.hw").append(frame).append(".Submission.method").append(frame)
+                    .append("(Submission.java:").append(i + frame).append(")\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A graded test result as the listener would record it.
+     * @param i The index of the test.
+     * @return The result.
+     */
+    public static GradedTestResult result(int i) {
+        GradedTestResult result = new GradedTestResult("Test " + i, Integer.toString(i), 2.0,
+                i % 2 == 0 ? VISIBLE : HIDDEN);
+        result.addOutput(output(i));
+        if (fails(i)) {
+            result.setPassed(false);
+        } else {
+            result.setScore(2.0);
+        }
+        return result;
+    }
+
+    /**
+     * A grader with results, a score and output, ready to format.
+     * @param results The number of results.
+     * @return The grader.
+     */
+    public static Grader grader(int results) {
+        Grader grader = new Grader();
+        for (int i = 0; i < results; i++) {
+            grader.addGradedTestResult(result(i));
+        }
+        grader.addOutput("Graded " + results + " tests.\n");
+        grader.setExecutionTime(results);
+        return grader;
+    }
+
+    /**
+     * A Checkstyle XML report, preceded by the line Checkstyle prints
+     * before it, with {@value #ERRORS_PER_FILE} errors in each file.
+     * @param errors The number of errors.
+     * @return The report, encoded as UTF-8.
+     */
+    public static byte[] checkstyleReport(int errors) {
+        StringBuilder sb = new StringBuilder("Starting audit...\n")
+                .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<checkstyle version=\"9.3\">\n");
+        for (int i = 0; i < errors; i++) {
+            if (i % ERRORS_PER_FILE == 0) {
+                if (i > 0) {
+                    sb.append("</file>\n");
+                }
+                sb.append("<file name=\"/autograder/submission/src/main/java/edu/example/File")
+                        .append(i / ERRORS_PER_FILE).append(".java\">\n");
+            }
+            String check = CHECKS[i % CHECKS.length];
+            sb.append("<error line=\"").append(i + 1).append("\" column=\"").append(i % ERRORS_PER_FILE + 1)
+                    .append("\" severity=\"error\" message=\"&apos;").append(i)
+                    .append("&apos; is a magic number.\" source=\"com.puppycrawl.tools.checkstyle.checks.")
+                    .append(check).append("\"/>\n");
+        }
+        if (errors > 0) {
+            sb.append("</file>\n");
+        }
+        sb.append("</checkstyle>\nAudit done.\n");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
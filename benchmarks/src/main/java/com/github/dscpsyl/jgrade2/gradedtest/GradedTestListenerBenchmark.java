@@ -0,0 +1,168 @@
+package com.github.dscpsyl.jgrade2.gradedtest;
+
+import com.github.dscpsyl.jgrade2.benchmarks.Synthetic;
+
+import org.junit.platform.engine.ConfigurationParameters;
+import org.junit.platform.engine.TestDescriptor;
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.support.descriptor.AbstractTestDescriptor;
+import org.junit.platform.engine.support.descriptor.ClassSource;
+import org.junit.platform.engine.support.descriptor.EngineDescriptor;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+import org.opentest4j.AssertionFailedError;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks the {@link GradedTestListener} callbacks for a whole test
+ * plan, without running any tests: the plan starts, every test starts,
+ * prints its output and finishes, and the plan finishes. This covers
+ * recording the plan order, capturing output, measuring each test and
+ * sorting the results, but none of the JUnit engine's own work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GradedTestListenerBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    private int results;
+
+    private TestPlan plan;
+    private List<TestIdentifier> tests;
+    private List<TestExecutionResult> outcomes;
+    private List<String> outputs;
+
+    /**
+     * A plain descriptor for the synthetic plan.
+     */
+    private static final class SyntheticDescriptor extends AbstractTestDescriptor {
+        private final Type type;
+
+        /**
+         * Create a new SyntheticDescriptor.
+         * @param uniqueId The unique id.
+         * @param type The type.
+         * @param source The source.
+         */
+        SyntheticDescriptor(UniqueId uniqueId, Type type, TestSource source) {
+            super(uniqueId, uniqueId.getLastSegment().getValue(), source);
+            this.type = type;
+        }
+
+        @Override
+        public Type getType() {
+            return this.type;
+        }
+    }
+
+    /**
+     * No configuration parameters.
+     */
+    private static final class NoConfigurationParameters implements ConfigurationParameters {
+        @Override
+        public Optional<String> get(String key) {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<Boolean> getBoolean(String key) {
+            return Optional.empty();
+        }
+
+        @Override
+        @Deprecated
+        public int size() {
+            return 0;
+        }
+
+        @Override
+        public Set<String> keySet() {
+            return Set.of();
+        }
+    }
+
+    /**
+     * A graded test for the synthetic plan to point at. Never run.
+     */
+    public static class SyntheticTests {
+        /**
+         * The test.
+         */
+        @GradedTest(name = "Synthetic test", number = "1", points = 2.0)
+        public void gradedTest() { }
+    }
+
+    /**
+     * Build a plan of one class with the tests, and their outcomes and output.
+     * @throws NoSuchMethodException Never.
+     */
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        EngineDescriptor engine = new EngineDescriptor(UniqueId.forEngine("benchmark"), "Benchmark");
+        TestDescriptor suite = new SyntheticDescriptor(engine.getUniqueId().append("class", "SyntheticTests"),
+                TestDescriptor.Type.CONTAINER, ClassSource.from(SyntheticTests.class));
+        engine.addChild(suite);
+        MethodSource source = MethodSource.from(SyntheticTests.class,
+                SyntheticTests.class.getMethod("gradedTest"));
+        this.outcomes = new ArrayList<>();
+        this.outputs = new ArrayList<>();
+        for (int i = 0; i < this.results; i++) {
+            suite.addChild(new SyntheticDescriptor(suite.getUniqueId().append("method", "test" + i),
+                    TestDescriptor.Type.TEST, source));
+            this.outcomes.add(Synthetic.fails(i)
+                    ? TestExecutionResult.failed(new AssertionFailedError("expected: <1> but was: <" + i + ">"))
+                    : TestExecutionResult.successful());
+            this.outputs.add(Synthetic.output(i));
+        }
+
+        this.plan = TestPlan.from(List.of(engine), new NoConfigurationParameters());
+        this.tests = new ArrayList<>();
+        for (TestIdentifier root : this.plan.getRoots()) {
+            for (TestIdentifier container : this.plan.getChildren(root)) {
+                this.tests.addAll(this.plan.getChildren(container));
+            }
+        }
+    }
+
+    /**
+     * Run the plan through a new listener.
+     * @return The results, in plan order.
+     */
+    @Benchmark
+    public List<GradedTestResult> runPlan() {
+        GradedTestListener listener = new GradedTestListener();
+        listener.testPlanExecutionStarted(this.plan);
+        for (int i = 0; i < this.tests.size(); i++) {
+            TestIdentifier test = this.tests.get(i);
+            listener.executionStarted(test);
+            System.out.print(this.outputs.get(i));
+            listener.executionFinished(test, this.outcomes.get(i));
+        }
+        listener.testPlanExecutionFinished(this.plan);
+        return listener.getGradedTestResults();
+    }
+}
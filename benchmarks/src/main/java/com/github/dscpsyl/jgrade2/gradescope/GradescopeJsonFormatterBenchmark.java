@@ -0,0 +1,70 @@
+package com.github.dscpsyl.jgrade2.gradescope;
+
+import com.github.dscpsyl.jgrade2.Grader;
+import com.github.dscpsyl.jgrade2.benchmarks.Synthetic;
+import com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks formatting a grader's results as Gradescope JSON, both to a
+ * string and streamed to an output stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GradescopeJsonFormatterBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    private int results;
+
+    private Grader grader;
+    private GradescopeJsonFormatter formatter;
+
+    /**
+     * Build the grader and formatter.
+     */
+    @Setup
+    public void setUp() {
+        this.grader = Synthetic.grader(this.results);
+        this.formatter = new GradescopeJsonFormatter();
+        this.formatter.setVisibility(GradedTestResult.VISIBLE);
+    }
+
+    /**
+     * Format to a string, as {@link com.github.dscpsyl.jgrade2.OutputFormatter#format(Grader)} callers do.
+     * @return The JSON.
+     */
+    @Benchmark
+    public String formatToString() {
+        return this.formatter.format(this.grader);
+    }
+
+    /**
+     * Stream to an output stream that discards what it is given, as
+     * writing <code>results.json</code> does.
+     * @throws IOException Never.
+     */
+    @Benchmark
+    public void formatToStream() throws IOException {
+        this.formatter.format(this.grader, OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,52 @@
+#!/usr/bin/env bash
+
+# Measures how long grading examples/gradescope takes from a cold `java -jar` start until results.json is written,
+# without and with a class data sharing archive recorded by `--dump-cds`.
+#
+# usage: startup.sh [jgrade2 all jar] [runs]
+
+set -euo pipefail
+
+here=$(cd "$(dirname "$0")" && pwd)
+root=$(cd "$here/../.." && pwd)
+jar=$(cd "$(dirname "${1:-$root/target/jgrade2-2.0.0-a2-all.jar}")" && pwd)/$(basename "${1:-jgrade2-2.0.0-a2-all.jar}")
+runs=${2:-10}
+
+if [ ! -f "$jar" ]; then
+    echo "no jar at $jar, build it with: mvn package -DskipTests -DskipPitest -Djacoco.skip" >&2
+    exit 2
+fi
+
+work=$(mktemp -d)
+trap 'rm -rf "$work"' EXIT
+
+echo "compiling examples/gradescope into $work/classes"
+javac -cp "$jar" -d "$work/classes" $(find "$root/examples/gradescope/src" -name "*.java")
+cd "$work/classes"
+
+echo "recording $work/jgrade2.jsa"
+java -jar "$jar" --dump-cds "$work/jgrade2.jsa" -c staff.hello.GradeHello --no-output 2>/dev/null
+
+# time_runs <label> [jvm options...]: prints the mean and fastest of $runs runs in milliseconds.
+time_runs() {
+    local label=$1
+    shift
+    local total=0 best=
+    for _ in $(seq "$runs"); do
+        rm -f "$work/results.json"
+        local start end ms
+        start=$(date +%s%N)
+        java "$@" -jar "$jar" -c staff.hello.GradeHello -o "$work/results.json" 2>/dev/null
+        end=$(date +%s%N)
+        [ -s "$work/results.json" ] || { echo "no results written" >&2; exit 1; }
+        ms=$(( (end - start) / 1000000 ))
+        total=$(( total + ms ))
+        if [ -z "$best" ] || [ "$ms" -lt "$best" ]; then
+            best=$ms
+        fi
+    done
+    printf "%-16s mean %5d ms   fastest %5d ms   (%d runs)\n" "$label" $(( total / runs )) "$best" "$runs"
+}
+
+time_runs "without archive"
+time_runs "with archive" -XX:SharedArchiveFile="$work/jgrade2.jsa"
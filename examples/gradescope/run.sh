@@ -3,12 +3,18 @@
 # make cwd the compiled class files
 cd classes
 
+# start from the class data sharing archive recorded by setup.sh, if there is one
+CDS=""
+if [ -f ../lib/jgrade2.jsa ]; then
+    CDS="-XX:SharedArchiveFile=../lib/jgrade2.jsa"
+fi
+
 # invoke the main program of JGrade passing the class GradeHello as the main parameter
 # sending output to the results.json file (or stdout if running locally).
 if [ "$1" = "--local" ]; then
-    java -jar ../lib/jgrade2-2.0.0-a2-all.jar -c staff.hello.GradeHello --pretty-print
+    java $CDS -jar ../lib/jgrade2-2.0.0-a2-all.jar -c staff.hello.GradeHello --pretty-print
 else
-    java -jar ../lib/jgrade2-2.0.0-a2-all.jar -c staff.hello.GradeHello -o /autograder/results/results.json
+    java $CDS -jar ../lib/jgrade2-2.0.0-a2-all.jar -c staff.hello.GradeHello -o /autograder/results/results.json
 fi
 
 # return to original cwd
@@ -2,3 +2,11 @@
 
 # Java 8
 apt-get -y install openjdk-17-jdk
+
+# Grade the skeleton once to record the classes a grading loads, so every run
+# can start from the archive (see run.sh). Grading still works without it.
+cd /autograder/source
+sh compile.sh
+cd classes
+java -jar ../lib/jgrade2-2.0.0-a2-all.jar --dump-cds ../lib/jgrade2.jsa -c staff.hello.GradeHello --no-output || true
+cd ..
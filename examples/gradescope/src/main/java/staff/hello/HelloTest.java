@@ -7,7 +7,7 @@ import org.junit.jupiter.api.Timeout;
 
 import student.hello.Greeting;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 // I like to add this no matter what so if the submission loops,
 // Gradescope doesn't get stuck for more than 10 seconds.
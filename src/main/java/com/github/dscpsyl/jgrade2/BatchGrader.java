@@ -0,0 +1,328 @@
+package com.github.dscpsyl.jgrade2;
+
+import com.github.dscpsyl.jgrade2.gradescope.GradescopeJsonFormatter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+/**
+ * Grades many submissions inside a single JVM. Every subdirectory of the
+ * batch directory is treated as the class root of one submission (the
+ * equivalent of the <code>classes/</code> directory a single run is started
+ * from). Each submission is loaded through its own class loader, graded
+ * against a fresh {@link Grader}, and written to its own results file named
+ * after the submission directory.
+ * <p>
+ *     Each submission's {@link SubmissionClassLoader} is closed once it has
+ *     been graded, so nothing from it is kept once its results are written.
+ *     When the batch is done, the number of classes loaded from submissions
+ *     and unloaded by the JVM is reported along with the time taken.
+ * </p>
+ * <p>
+ *     Submissions are graded on a fixed pool of worker threads. Test output
+ *     is captured per thread, so workers do not see each other's output,
+ *     and every submission runs its tests with the same JUnit launcher
+ *     session so the test engines are only loaded once per batch. With
+ *     {@link #setCompileSources(boolean)}, each submission's sources are
+ *     compiled in memory by one {@link SubmissionCompiler} shared by the
+ *     whole batch.
+ * </p>
+ */
+final class BatchGrader {
+
+    private static final String RESULT_SUFFIX = ".json";
+
+    private final String className;
+    private final Path batchDir;
+    private final Path outputDir;
+    private final int workers;
+    private int prettyPrint;
+    private boolean includeMetrics;
+    private int parallelism;
+    private List<String> staffPackages;
+    private boolean compileSources;
+    private ResultCache cache;
+    private final AtomicLong submissionClasses;
+
+    /**
+     * Create a new BatchGrader.
+     * @param className The name of the class containing annotated methods.
+     * @param batchDir The directory containing one class root per submission.
+     * @param outputDir The directory to write results to, or null to not
+     *                  write any results.
+     * @param workers The number of submissions to grade at the same time.
+     * @throws IllegalArgumentException If the number of workers is not positive.
+     */
+    BatchGrader(String className, Path batchDir, Path outputDir, int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("number of workers must be positive, not " + workers);
+        }
+        this.className = className;
+        this.batchDir = batchDir;
+        this.outputDir = outputDir;
+        this.workers = workers;
+        this.prettyPrint = -1;
+        this.parallelism = 1;
+        this.staffPackages = SubmissionClassLoader.staffPackages(className, List.of());
+        this.submissionClasses = new AtomicLong();
+    }
+
+    /**
+     * Set the pretty-print indent for the results written.
+     * @param prettyPrint The indent, negative to disable pretty-printing.
+     * @see GradescopeJsonFormatter#setPrettyPrint(int)
+     */
+    void setPrettyPrint(int prettyPrint) {
+        this.prettyPrint = prettyPrint;
+    }
+
+    /**
+     * Set whether the results written include the metrics of each test.
+     * @param includeMetrics True to include the metrics.
+     * @see GradescopeJsonFormatter#setIncludeMetrics(boolean)
+     */
+    void setIncludeMetrics(boolean includeMetrics) {
+        this.includeMetrics = includeMetrics;
+    }
+
+    /**
+     * Set how many grade methods of a single submission may run at once.
+     * @param parallelism The maximum number of concurrent grade methods.
+     * @see JGrade2#grade(Grader, Class, int)
+     */
+    void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Set the staff packages loaded from the grader's classpath rather than
+     * from each submission, besides the package of the grading class, which
+     * always is.
+     * @param staffPackages The packages.
+     * @see SubmissionClassLoader#staffPackages(String, List)
+     */
+    void setStaffPackages(List<String> staffPackages) {
+        this.staffPackages = SubmissionClassLoader.staffPackages(this.className, staffPackages);
+    }
+
+    /**
+     * Set whether to compile the Java sources of each submission in memory
+     * before grading it, rather than loading its compiled classes. One
+     * compiler is used for the whole batch.
+     * @param compileSources True to compile the sources.
+     * @see SubmissionCompiler
+     */
+    void setCompileSources(boolean compileSources) {
+        this.compileSources = compileSources;
+    }
+
+    /**
+     * Set a cache to take the results of unchanged submissions from instead
+     * of grading them, and to store new results in. It is only used if
+     * results are written.
+     * @param cache The cache, or null to grade every submission.
+     */
+    void setCache(ResultCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Find the class roots of all submissions in the batch directory.
+     * @return The submission directories, sorted by name.
+     * @throws IOException If the batch directory cannot be listed.
+     */
+    List<Path> findSubmissions() throws IOException {
+        try (Stream<Path> children = Files.list(this.batchDir)) {
+            return children.filter(Files::isDirectory)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Get the file the results for a submission are written to.
+     * @param submission The class root of the submission.
+     * @return The path of the results file.
+     */
+    Path resultFile(Path submission) {
+        return this.outputDir.resolve(submission.getFileName() + RESULT_SUFFIX);
+    }
+
+    /**
+     * Grade every submission in the batch directory.
+     * @return The number of submissions that could not be graded.
+     * @throws IOException If the batch or output directory cannot be accessed.
+     */
+    int run() throws IOException {
+        List<Path> submissions = findSubmissions();
+        if (this.outputDir != null) {
+            Files.createDirectories(this.outputDir);
+        }
+
+        long start = System.currentTimeMillis();
+        ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+        long unloadedBefore = classLoading.getUnloadedClassCount();
+        ExecutorService pool = Executors.newFixedThreadPool(this.workers);
+        int failed = 0;
+        try (LauncherSessionHolder launchers = new LauncherSessionHolder();
+             SubmissionCompiler compiler = new SubmissionCompiler()) {
+            List<Future<?>> graded = new ArrayList<>();
+            for (Path submission : submissions) {
+                graded.add(pool.submit(() -> {
+                    this.gradeSubmission(submission, launchers, compiler);
+                    return null;
+                }));
+            }
+            for (int i = 0; i < submissions.size(); i++) {
+                if (!this.awaitSubmission(submissions.get(i), graded.get(i))) {
+                    failed++;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        System.err.printf("graded %d submissions (%d failed) in %d ms with %d workers\n",
+                submissions.size(), failed, System.currentTimeMillis() - start, this.workers);
+        System.err.printf("loaded %d submission classes, unloaded %d classes, %d submission loaders not yet unloaded\n",
+                this.submissionClasses.get(), classLoading.getUnloadedClassCount() - unloadedBefore,
+                SubmissionClassLoader.getLiveCount());
+        if (this.cache != null && this.outputDir != null) {
+            System.err.println(this.cache.report());
+        }
+        return failed;
+    }
+
+    /**
+     * Get the result of a submission that could not be graded.
+     * @param cause Why grading failed.
+     * @return A grader with a score of zero and the failure as its output.
+     */
+    static Grader failure(Throwable cause) {
+        Grader failure = new Grader();
+        failure.setScore(0);
+        failure.addOutput("The autograder failed to grade this submission:\n" + cause);
+        return failure;
+    }
+
+    /**
+     * Wait for a submission to finish grading. If grading failed, a result
+     * with a score of zero describing the failure is written instead.
+     * @param submission The class root of the submission.
+     * @param graded The pending grading of the submission.
+     * @return True if the submission was graded successfully.
+     * @throws IOException If the fallback result cannot be written.
+     */
+    private boolean awaitSubmission(Path submission, Future<?> graded) throws IOException {
+        try {
+            graded.get();
+            return true;
+        } catch (ExecutionException e) {
+            System.err.printf("failed grading submission %s\n", submission.getFileName());
+            e.getCause().printStackTrace(System.err);
+            this.writeResult(submission, failure(e.getCause()));
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted waiting for " + submission.getFileName(), e);
+        }
+    }
+
+    /**
+     * Load and grade a single submission, writing its results. If there is
+     * a cache, the results are taken from it if the submission has not
+     * changed, and stored in it otherwise.
+     * @param submission The class root of the submission.
+     * @param launchers The holder of the JUnit launcher session shared by
+     *                  every submission in the batch.
+     * @param compiler The compiler shared by every submission in the batch.
+     * @throws IOException If the submission cannot be loaded or the results
+     *                     cannot be written.
+     * @throws ClassNotFoundException If the grading class cannot be found.
+     */
+    private void gradeSubmission(Path submission, LauncherSessionHolder launchers, SubmissionCompiler compiler)
+            throws IOException, ClassNotFoundException {
+        if (this.cache == null || this.outputDir == null) {
+            this.writeResult(submission, this.grade(submission, launchers, compiler));
+            return;
+        }
+
+        String key = this.cache.key(submission, this.className, this.staffPackages,
+                ResultCache.settings(this.prettyPrint, this.includeMetrics, this.staffPackages, this.compileSources));
+        byte[] result = this.cache.get(key, out -> {
+            try {
+                JGrade2.writeResult(this.newFormatter(), this.grade(submission, launchers, compiler), out);
+            } catch (ClassNotFoundException e) {
+                throw new IOException("could not locate class " + this.className, e);
+            }
+        });
+        Files.write(this.resultFile(submission), result);
+    }
+
+    /**
+     * Load and grade a single submission.
+     * @param submission The class root of the submission.
+     * @param launchers The holder of the JUnit launcher session shared by
+     *                  every submission in the batch.
+     * @param compiler The compiler shared by every submission in the batch.
+     * @return The grader used for the submission.
+     * @throws IOException If the submission cannot be loaded.
+     * @throws ClassNotFoundException If the grading class cannot be found.
+     */
+    private Grader grade(Path submission, LauncherSessionHolder launchers, SubmissionCompiler compiler)
+            throws IOException, ClassNotFoundException {
+        Grader grader = new Grader(launchers);
+        if (this.compileSources) {
+            this.submissionClasses.addAndGet(compiler.grade(grader, submission, this.className, this.staffPackages,
+                    this.parallelism));
+            return grader;
+        }
+        try (SubmissionClassLoader loader = new SubmissionClassLoader(submission,
+                BatchGrader.class.getClassLoader(), this.staffPackages)) {
+            loader.grade(grader, this.className, this.parallelism);
+            this.submissionClasses.addAndGet(loader.getDefinedClassCount());
+        }
+        return grader;
+    }
+
+    /**
+     * Create a formatter for the results written.
+     * @return The formatter.
+     */
+    private GradescopeJsonFormatter newFormatter() {
+        GradescopeJsonFormatter formatter = new GradescopeJsonFormatter();
+        formatter.setPrettyPrint(this.prettyPrint);
+        formatter.setIncludeMetrics(this.includeMetrics);
+        return formatter;
+    }
+
+    /**
+     * Write the results for a submission, unless output is disabled.
+     * @param submission The class root of the submission.
+     * @param grader The grader holding the submission's results.
+     * @throws IOException If the results file cannot be written.
+     */
+    private void writeResult(Path submission, Grader grader) throws IOException {
+        if (this.outputDir == null) {
+            return;
+        }
+
+        try (OutputStream out = Files.newOutputStream(this.resultFile(submission))) {
+            JGrade2.writeResult(this.newFormatter(), grader, out);
+        }
+    }
+}
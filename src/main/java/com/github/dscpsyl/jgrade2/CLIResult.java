@@ -51,4 +51,31 @@ public interface CLIResult {
      * @return The exit value of the program that was run.
      */
     int exitValue();
+
+    /**
+     * Whether output from the specified stream was cut off because the
+     * program wrote more than the output limit.
+     * @param stream The {@link STREAM} to check.
+     * @return True if the output was truncated.
+     */
+    default boolean isTruncated(STREAM stream) {
+        return false;
+    }
+
+    /**
+     * Whether the program was killed because it ran longer than its
+     * timeout. The output is whatever it wrote before it was killed.
+     * @return True if the program timed out.
+     */
+    default boolean timedOut() {
+        return false;
+    }
+
+    /**
+     * Get how long the program ran, in wall-clock time.
+     * @return The elapsed time in milliseconds, or -1 if not measured.
+     */
+    default long elapsedMillis() {
+        return -1;
+    }
 }
@@ -4,12 +4,11 @@ import org.junit.jupiter.api.BeforeEach;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -29,6 +28,10 @@ public abstract class CLITester {
         private String stdOutOutput;
         private String stdErrOutput;
         private int exitValue;
+        private boolean stdOutTruncated;
+        private boolean stdErrTruncated;
+        private boolean timedOut;
+        private long elapsedMillis;
 
         /**
          * Create a new ExecutionResult with the given output and exit value.
@@ -40,6 +43,7 @@ public abstract class CLITester {
             this.stdOutOutput = stdOutOutput;
             this.stdErrOutput = stdErrOutput;
             this.exitValue = exitValue;
+            this.elapsedMillis = -1;
         }
 
         /**
@@ -80,12 +84,68 @@ public abstract class CLITester {
             return this.exitValue;
         }
 
+        /**
+         * Whether output from the stream was cut off at the output limit.
+         * @param stream The stream to check.
+         * @return True if the output was truncated.
+         */
+        @Override
+        public boolean isTruncated(STREAM stream) {
+            return stream == STREAM.STDOUT ? this.stdOutTruncated : this.stdErrTruncated;
+        }
+
+        /**
+         * Whether the program was killed for running past its timeout.
+         * @return True if the program timed out.
+         */
+        @Override
+        public boolean timedOut() {
+            return this.timedOut;
+        }
+
+        /**
+         * Get how long the program ran, in wall-clock time.
+         * @return The elapsed time in milliseconds, or -1 if not measured.
+         */
+        @Override
+        public long elapsedMillis() {
+            return this.elapsedMillis;
+        }
+
+        /**
+         * Record the run's timing.
+         * @param timedOut Whether the program was killed for timing out.
+         * @param elapsedMillis How long the program ran, in milliseconds.
+         */
+        void setTiming(boolean timedOut, long elapsedMillis) {
+            this.timedOut = timedOut;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * Record that output from a stream was cut off at the output limit.
+         * @param stream The stream that was truncated.
+         */
+        void setTruncated(STREAM stream) {
+            if (stream == STREAM.STDOUT) {
+                this.stdOutTruncated = true;
+            } else {
+                this.stdErrTruncated = true;
+            }
+        }
+
         /**
          * Dumps the output into System.out. If there is output from stderr,
          * it will be printed after the stdout output.
          */
         void dump() {
+            if (timedOut) {
+                System.out.printf("[timed out after %d ms]\n", elapsedMillis);
+            }
             System.out.println(stdOutOutput);
+            if (stdOutTruncated) {
+                System.out.println("[output truncated]");
+            }
             if (stdErrOutput.length() > 0) {
                 System.out.println("---\nSTD_ERR:");
                 System.out.println(stdErrOutput);
@@ -103,9 +163,25 @@ public abstract class CLITester {
     }
 
 
+    /**
+     * The default for the most bytes of output kept from each of stdout and
+     * stderr of a run (16 MiB).
+     */
+    public static final int DEFAULT_OUTPUT_LIMIT = 16 * 1024 * 1024;
+
+    /**
+     * A timeout meaning the program may run for as long as it likes.
+     */
+    public static final long NO_TIMEOUT = 0;
+
+    /* How long to wait for output from processes that outlived a killed program. */
+    private static final long KILL_GRACE_MILLIS = 1000;
+
     private List<String> command; // Subclassing classes can append to this to add arguments
     private ProcessBuilder builder; // Subclassing classes can edit things from this like redirectErrorStream
     private boolean printOutput; // If true, print the result's output
+    private int outputLimit = DEFAULT_OUTPUT_LIMIT; // The most bytes kept from each stream
+    private long timeoutMillis = NO_TIMEOUT; // The default timeout for each run of the command
 
     /**
      * Get the invocation for the CLI program. {@link #initCommand()} (which
@@ -173,14 +249,55 @@ public abstract class CLITester {
         this.printOutput = to;
     }
 
+    /**
+     * Set the most bytes of output to keep from each of stdout and stderr
+     * when running the command. Output past the limit is read (so the
+     * program does not block) but discarded, and the result reports it as
+     * truncated. Defaults to {@link #DEFAULT_OUTPUT_LIMIT}.
+     * @param bytes The limit in bytes.
+     * @throws IllegalArgumentException If the limit is negative.
+     */
+    public void setOutputLimit(int bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("output limit must not be negative, not " + bytes);
+        }
+        this.outputLimit = bytes;
+    }
+
+    /**
+     * Set the default timeout for each run of the command. A program still
+     * running after the timeout is killed along with every process it
+     * started, and its result reports {@link CLIResult#timedOut()}.
+     * Defaults to {@link #NO_TIMEOUT}.
+     * @param millis The timeout in milliseconds, or {@link #NO_TIMEOUT}.
+     * @throws IllegalArgumentException If the timeout is negative.
+     */
+    public void setTimeoutMillis(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("timeout must not be negative, not " + millis);
+        }
+        this.timeoutMillis = millis;
+    }
+
     /**
      * Run a command with input. See {@link #runCommand()}.
      * @param withInput The input to input to the execution.
      * @return The result of the execution of the program.
      */
     protected CLIResult runCommand(String withInput) {
+        return runCommand(withInput, this.timeoutMillis);
+    }
+
+    /**
+     * Run a command with input and a timeout for this run only, instead of
+     * the default set with {@link #setTimeoutMillis(long)}.
+     * @param withInput The input to input to the execution.
+     * @param timeoutMillis The timeout in milliseconds, or {@link #NO_TIMEOUT}.
+     * @return The result of the execution of the program.
+     */
+    protected CLIResult runCommand(String withInput, long timeoutMillis) {
         this.builder.command(this.command);
-        CLIResult output = executeProcess(this.builder, withInput);
+        CLIResult output = executeProcess(this.builder, withInput, this.outputLimit, timeoutMillis);
         if (printOutput) {
             ((ExecutionResult) output).dump();
         }
@@ -200,32 +317,72 @@ public abstract class CLITester {
     /**
      * Execute a process provided a {@link ProcessBuilder} that has a command
      * set to invoke the process, and a String for input to feed to the
-     * program.
+     * program. Stdout and stderr are read while the program runs, so it
+     * never blocks on a full pipe, and up to
+     * {@link #DEFAULT_OUTPUT_LIMIT} bytes of each are kept.
      * @param builder The {@link ProcessBuilder} to use for the command.
      * @param toWriteIn Input for the program that it reads from stdin.
      * @return The {@link CLIResult} containing the output from the run.
      */
     public static CLIResult executeProcess(ProcessBuilder builder,
                                            String toWriteIn) {
+        return executeProcess(builder, toWriteIn, DEFAULT_OUTPUT_LIMIT);
+    }
+
+    /**
+     * Execute a process like {@link #executeProcess(ProcessBuilder, String)},
+     * keeping at most the given number of bytes from each of stdout and
+     * stderr. Output past the limit is read but discarded, and reported
+     * through {@link CLIResult#isTruncated(CLIResult.STREAM)}.
+     * @param builder The {@link ProcessBuilder} to use for the command.
+     * @param toWriteIn Input for the program that it reads from stdin.
+     * @param outputLimit The most bytes of output to keep from each stream.
+     * @return The {@link CLIResult} containing the output from the run.
+     */
+    public static CLIResult executeProcess(ProcessBuilder builder,
+                                           String toWriteIn, int outputLimit) {
+        return executeProcess(builder, toWriteIn, outputLimit, NO_TIMEOUT);
+    }
+
+    /**
+     * Execute a process like {@link #executeProcess(ProcessBuilder, String, int)},
+     * killing it if it runs longer than the timeout. The process and all of
+     * its descendants are killed, and the result holds the output written
+     * before then and reports {@link CLIResult#timedOut()}. The elapsed
+     * wall-clock time is always reported.
+     * @param builder The {@link ProcessBuilder} to use for the command.
+     * @param toWriteIn Input for the program that it reads from stdin.
+     * @param outputLimit The most bytes of output to keep from each stream.
+     * @param timeoutMillis The timeout in milliseconds, or {@link #NO_TIMEOUT}.
+     * @return The {@link CLIResult} containing the output from the run.
+     */
+    public static CLIResult executeProcess(ProcessBuilder builder,
+                                           String toWriteIn, int outputLimit, long timeoutMillis) {
         try {
+            long start = System.nanoTime();
             Process proc = builder.start();
-            OutputStream driverStdin = proc.getOutputStream();
-            InputStream driverStdout = proc.getInputStream();
-            InputStream driverStderr = proc.getErrorStream();
-
-            // FIXME - Is there a fancier way to do this?
-            if (toWriteIn != null) {
-                BufferedWriter writer = new BufferedWriter(
-                        new OutputStreamWriter(driverStdin));
-                writer.write(toWriteIn);
-                writer.flush();
-                writer.close();
-            }
+            OutputDrainer stdout = OutputDrainer.start(proc.getInputStream(), outputLimit, "cli-tester-stdout");
+            OutputDrainer stderr = OutputDrainer.start(proc.getErrorStream(), outputLimit, "cli-tester-stderr");
+            writeInput(proc, toWriteIn);
 
-            int exitValue = proc.waitFor();
+            boolean timedOut = !awaitExit(proc, timeoutMillis);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (timedOut) {
+                killTree(proc);
+            }
 
-            return new ExecutionResult(getStringFromStream(driverStdout),
-                    getStringFromStream(driverStderr), exitValue);
+            ExecutionResult result = timedOut
+                    ? new ExecutionResult(stdout.await(KILL_GRACE_MILLIS), stderr.await(KILL_GRACE_MILLIS),
+                            proc.exitValue())
+                    : new ExecutionResult(stdout.await(), stderr.await(), proc.exitValue());
+            result.setTiming(timedOut, elapsedMillis);
+            if (stdout.isTruncated()) {
+                result.setTruncated(CLIResult.STREAM.STDOUT);
+            }
+            if (stderr.isTruncated()) {
+                result.setTruncated(CLIResult.STREAM.STDERR);
+            }
+            return result;
 
         } catch (IOException | InterruptedException e) {
             throw new InternalError(e);
@@ -244,14 +401,58 @@ public abstract class CLITester {
     }
 
     /**
-     * Get a String from an InputStream.
-     * @param stream The stream to get the String from.
-     * @return The String from the stream.
-     * @throws IOException If there is an error reading from the stream.
+     * Write the input for a process to its stdin and close it, so the
+     * program sees the end of its input. The input is written on its own
+     * thread, so a program that does not read it cannot block the caller
+     * past its timeout. A program that exits or closes its stdin without
+     * reading all of its input is not an error.
+     * @param proc The running process.
+     * @param toWriteIn The input to write, or null to only close stdin.
+     */
+    private static void writeInput(Process proc, String toWriteIn) {
+        Thread writer = new Thread(() -> {
+            try (BufferedWriter in = new BufferedWriter(new OutputStreamWriter(proc.getOutputStream()))) {
+                if (toWriteIn != null) {
+                    in.write(toWriteIn);
+                }
+            } catch (IOException e) {
+                // The program stopped reading its input, which is up to the program.
+            }
+        }, "cli-tester-stdin");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Wait for a process to exit.
+     * @param proc The running process.
+     * @param timeoutMillis How long to wait in milliseconds, or
+     *                      {@link #NO_TIMEOUT} to wait for as long as it takes.
+     * @return True if the process exited, false if it timed out.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    private static boolean awaitExit(Process proc, long timeoutMillis) throws InterruptedException {
+        if (timeoutMillis == NO_TIMEOUT) {
+            proc.waitFor();
+            return true;
+        }
+        return proc.waitFor(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Forcibly kill a process and every process it started, and wait for
+     * it to exit. The descendants are found before the process is killed,
+     * since they can no longer be found from it afterwards.
+     * @param proc The process to kill.
+     * @throws InterruptedException If interrupted while waiting.
      */
-    private static String getStringFromStream(InputStream stream) throws IOException {
-        byte[] streamBytes = new byte[stream.available()];
-        stream.read(streamBytes, 0, streamBytes.length);
-        return new String(streamBytes);
+    private static void killTree(Process proc) throws InterruptedException {
+        List<ProcessHandle> descendants = new ArrayList<>();
+        proc.descendants().forEach(descendants::add);
+        proc.destroyForcibly();
+        for (ProcessHandle p : descendants) {
+            p.destroyForcibly();
+        }
+        proc.waitFor();
     }
 }
@@ -0,0 +1,204 @@
+package com.github.dscpsyl.jgrade2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Pattern;
+
+
+/**
+ * An on-disk cache of the Checkstyle violations of single files, used by
+ * {@link CheckstyleGrader#setCacheDir(String)}. A file's violations are
+ * stored under a hash of its contents, its path relative to the directory
+ * checked (some checks look at the file or package name), the configuration
+ * and the Checkstyle jar. A file is only checked again when one of those
+ * changes, which for starter code that every submission shares is never.
+ * <p>
+ *     The configuration is hashed by its contents, and each jar on the
+ *     Checkstyle classpath by its file name, size and modification time, so
+ *     upgrading Checkstyle or editing the configuration starts over. Only
+ *     files read by the configuration itself, like a suppressions file, are
+ *     not part of the key; clear the directory when changing those.
+ * </p>
+ * <p>
+ *     Since a key only covers one file, checks that look at other files,
+ *     like JavadocPackage (which looks for the package's
+ *     <code>package-info.java</code>), cannot be cached. Configurations with
+ *     such checks, and those that are not a file this can read, such as the
+ *     Sun checks Checkstyle falls back to, are not cached at all (see
+ *     {@link #canCache(String)}).
+ * </p>
+ */
+final class CheckstyleCache {
+
+    private static final String ENTRY_SUFFIX = ".violations";
+    private static final int FORMAT_VERSION = 1;
+    private static final Pattern CROSS_FILE_CHECKS = Pattern.compile(
+            "name\\s*=\\s*\"(?:[\\w.]*\\.)?(?:JavadocPackage|Translation)(?:Check)?\"");
+
+    private final Path dir;
+    private final byte[] setup;
+    private int hits;
+    private int misses;
+
+    /**
+     * Create a new CheckstyleCache, creating its directory if needed.
+     * @param dir The directory to store violations in.
+     * @param classpath The Checkstyle jar, or several jars separated by
+     *                  {@link File#pathSeparator}.
+     * @param config The configuration file, or null for Checkstyle's default.
+     * @throws IOException If the directory cannot be created or the
+     *                     configuration cannot be read.
+     */
+    CheckstyleCache(Path dir, String classpath, String config) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        MessageDigest md = Digests.newDigest();
+        Digests.update(md, "format " + FORMAT_VERSION);
+        for (String entry : classpath.split(File.pathSeparator)) {
+            Path jar = Paths.get(entry);
+            Digests.update(md, jar.getFileName() + " " + (Files.isRegularFile(jar)
+                    ? Files.size(jar) + " " + Files.getLastModifiedTime(jar).toMillis() : "missing"));
+        }
+        if (config != null && Files.isRegularFile(Paths.get(config))) {
+            md.update(Files.readAllBytes(Paths.get(config)));
+        } else {
+            Digests.update(md, String.valueOf(config));
+        }
+        this.setup = md.digest();
+    }
+
+    /**
+     * Whether the violations of files checked with a configuration can be
+     * cached, that is whether each file's violations depend on that file
+     * alone. They do not if the configuration has checks that look at other
+     * files, or if it is not a file that can be read to tell.
+     * @param config The configuration file, or null for Checkstyle's default.
+     * @return True if the violations can be cached.
+     * @throws IOException If the configuration cannot be read.
+     */
+    static boolean canCache(String config) throws IOException {
+        if (config == null || !Files.isRegularFile(Paths.get(config))) {
+            return false;
+        }
+        return !CROSS_FILE_CHECKS.matcher(Files.readString(Paths.get(config))).find();
+    }
+
+    // <editor-fold desc="accessors">
+
+    /**
+     * Get the number of files whose violations were found in the cache.
+     * @return The number of hits.
+     */
+    int getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Get the number of files that were not in the cache.
+     * @return The number of misses.
+     */
+    int getMisses() {
+        return this.misses;
+    }
+
+    // </editor-fold>
+
+    /**
+     * Get the key of a file.
+     * @param file The file.
+     * @param name The path of the file relative to the directory checked.
+     * @return The key, as a hexadecimal string.
+     * @throws IOException If the file cannot be read.
+     */
+    String key(Path file, String name) throws IOException {
+        MessageDigest md = Digests.newDigest();
+        md.update(this.setup);
+        Digests.update(md, name.replace('\\', '/'));
+        md.update(Files.readAllBytes(file));
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    /**
+     * Get the violations stored for a file.
+     * @param key The key of the file.
+     * @return The violations, or null if the file is not in the cache.
+     * @throws IOException If the stored violations cannot be read.
+     */
+    List<CheckstyleGrader.Violation> get(String key) throws IOException {
+        byte[] stored;
+        try {
+            stored = Files.readAllBytes(this.dir.resolve(key + ENTRY_SUFFIX));
+        } catch (NoSuchFileException e) {
+            this.misses++;
+            return null;
+        }
+        this.hits++;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(stored))) {
+            int count = in.readInt();
+            List<CheckstyleGrader.Violation> violations = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                violations.add(new CheckstyleGrader.Violation(readString(in), readString(in), readString(in),
+                        readString(in)));
+            }
+            return violations;
+        }
+    }
+
+    /**
+     * Store the violations of a file.
+     * @param key The key of the file.
+     * @param violations The violations, empty if the file has none.
+     * @throws IOException If the violations cannot be stored.
+     */
+    void put(String key, List<CheckstyleGrader.Violation> violations) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(violations.size());
+            for (CheckstyleGrader.Violation v : violations) {
+                writeString(out, v.getLine());
+                writeString(out, v.getColumn());
+                writeString(out, v.getMessage());
+                writeString(out, v.getSource());
+            }
+        }
+        Path temp = Files.createTempFile(this.dir, key, ".tmp");
+        Files.write(temp, bytes.toByteArray());
+        Files.move(temp, this.dir.resolve(key + ENTRY_SUFFIX), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read a string that may be null.
+     * @param in The stream to read from.
+     * @return The string.
+     * @throws IOException If reading fails.
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Write a string that may be null.
+     * @param out The stream to write to.
+     * @param s The string.
+     * @throws IOException If writing fails.
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+}
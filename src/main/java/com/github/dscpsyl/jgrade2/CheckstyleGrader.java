@@ -1,31 +1,30 @@
 package com.github.dscpsyl.jgrade2;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-
 import com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import static com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult.VISIBLE;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Class to assist in getting a {@link GradedTestResult} for checkstyle. It
@@ -34,6 +33,18 @@ import java.util.TreeMap;
  * excludes any files with "test" in the name by default (since we don't
  * really require JUnit files be checkstyle compliant). To configure it for
  * specific files the client has to override {@link #isFileToCheck(Path)}.
+ * <p>
+ *     By default every run starts a new JVM for Checkstyle. With
+ *     {@link #setInProcess(boolean)} Checkstyle runs inside the grading JVM
+ *     instead: the jar is loaded once into a class loader of its own and the
+ *     configuration is parsed once, and both are reused by every
+ *     CheckstyleGrader with the same jar and configuration.
+ * </p>
+ * <p>
+ *     With {@link #setCacheDir(String)}, the violations of each file are
+ *     kept on disk (see {@link CheckstyleCache}), and only files that
+ *     changed since they were last checked are passed to Checkstyle.
+ * </p>
  * @version 1.0.0
  */
 public class CheckstyleGrader {
@@ -47,12 +58,18 @@ public class CheckstyleGrader {
     private static final String COL_ATTR = "column";
     private static final String MSG_ATTR = "message";
     private static final String SRC_ATTR = "source";
+    private static final String ROOT_TAG = "checkstyle";
+
+    /* Checkstyle reports never need a DTD or external entities, so they are refused. */
+    private static final XMLInputFactory XML_INPUT_FACTORY = newXmlInputFactory();
 
     private double points;
     private double deduct;
     private String pathToJar;
     private String dirToCheck;
     private String config;
+    private boolean inProcess;
+    private String cacheDir;
 
     private Map<String, Integer> errorTypes;
 
@@ -70,6 +87,8 @@ public class CheckstyleGrader {
         this.pathToJar = pathToJar;
         this.dirToCheck = dirToCheck;
         this.config = null;
+        this.inProcess = false;
+        this.cacheDir = null;
         this.errorTypes = new TreeMap<>();
     }
 
@@ -81,6 +100,33 @@ public class CheckstyleGrader {
         this.config = config;
     }
 
+    /**
+     * Set whether to run Checkstyle inside this JVM rather than starting a
+     * new one for every run. In-process runs load the jar (which may also
+     * be several jars separated by {@link File#pathSeparator}) into a
+     * dedicated class loader. Without a configuration file they use the Sun
+     * checks bundled with Checkstyle.
+     * @param inProcess True to run Checkstyle in this JVM.
+     */
+    public void setInProcess(boolean inProcess) {
+        this.inProcess = inProcess;
+    }
+
+    /**
+     * Set a directory to cache the violations of each file in. Files that
+     * have not changed since they were last checked with the same jar and
+     * configuration are not passed to Checkstyle again; their violations are
+     * read from the cache and merged with those of the files that were
+     * checked. The result and {@link #getErrorTypes()} are the same either
+     * way. The directory can be shared by every submission of an assignment.
+     * Configurations with checks across files, and the default one, are not
+     * cached (see {@link CheckstyleCache#canCache(String)}).
+     * @param cacheDir The directory, or null to check every file on every run.
+     */
+    public void setCacheDir(String cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
     /**
      * Run the graded for a {@link GradedTestResult}. This will run the jar
      * for xml output and parse that output. If a configuration file has been
@@ -91,21 +137,13 @@ public class CheckstyleGrader {
      * @return The generated result.
      */
     public GradedTestResult runForGradedTestResult() {
-        List<String> command = new ArrayList<>(Arrays.asList("java", "-jar",
-                this.pathToJar, "-f", CHECKSTYLE_FORMAT));
-        if (this.config != null) {
-            command.add("-c");
-            command.add(this.config);
-        }
-
         try {
-            Files.walk(Paths.get(dirToCheck))
-                    .filter(CheckstyleGrader::isFileToCheck)
-                    .forEach(path -> command.add(path.toString()));
-            String xmlOutput = CLITester.executeProcess(
-                    new ProcessBuilder(command))
-                    .getOutput(CLIResult.STREAM.STDOUT);
-            return xmlToGradedTestResult(xmlOutput);
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(Paths.get(dirToCheck))) {
+                files = walk.filter(CheckstyleGrader::isFileToCheck).collect(Collectors.toList());
+            }
+            boolean cached = this.cacheDir != null && CheckstyleCache.canCache(this.config);
+            return this.reportToResult(cached ? this.checkCached(files) : this.check(files));
         } catch (InternalError | IOException e) {
             e.printStackTrace();
             e.printStackTrace(System.err);
@@ -145,6 +183,78 @@ public class CheckstyleGrader {
         return s.endsWith(".java") && !s.toLowerCase().contains("test");
     }
 
+    private Map<String, List<Violation>> check(List<Path> files) throws IOException {
+        return this.inProcess ? this.runInProcess(files) : this.runForked(files);
+    }
+
+    private Map<String, List<Violation>> runForked(List<Path> files) throws IOException {
+        List<String> command = new ArrayList<>(Arrays.asList("java", "-jar",
+                this.pathToJar, "-f", CHECKSTYLE_FORMAT));
+        if (this.config != null) {
+            command.add("-c");
+            command.add(this.config);
+        }
+        files.forEach(path -> command.add(path.toString()));
+        Process process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try (InputStream xmlOutput = process.getInputStream()) {
+            return parseReport(xmlOutput);
+        } finally {
+            process.destroy();
+        }
+    }
+
+    private Map<String, List<Violation>> runInProcess(List<Path> files) throws IOException {
+        try (InputStream xmlOutput = InProcessCheckstyle.forConfig(this.pathToJar, this.config)
+                .run(files.stream().map(Path::toFile).collect(Collectors.toList()))) {
+            return parseReport(xmlOutput);
+        }
+    }
+
+    /**
+     * Check only the files that are not in the cache, and store their
+     * violations in it. A file missing from Checkstyle's report is counted
+     * as having no violations, but not stored.
+     * @param files The files to check.
+     * @return The violations of every file, in the order of the files.
+     * @throws IOException If a file or the cache cannot be read, or the cache
+     *                     cannot be written.
+     */
+    private Map<String, List<Violation>> checkCached(List<Path> files) throws IOException {
+        CheckstyleCache cache = new CheckstyleCache(Paths.get(this.cacheDir), this.pathToJar, this.config);
+        Path root = Paths.get(this.dirToCheck);
+        Map<String, List<Violation>> report = new LinkedHashMap<>();
+        Map<Path, String> changed = new LinkedHashMap<>();
+        for (Path file : files) {
+            String key = cache.key(file, root.relativize(file).toString());
+            List<Violation> cached = cache.get(key);
+            if (cached == null) {
+                changed.put(file, key);
+            }
+            report.put(reportName(file), cached);
+        }
+        if (changed.isEmpty()) {
+            return report;
+        }
+
+        Map<String, List<Violation>> checked = new HashMap<>();
+        this.check(new ArrayList<>(changed.keySet())).forEach((name, v) -> checked.put(reportName(Paths.get(name)), v));
+        for (Map.Entry<Path, String> file : changed.entrySet()) {
+            String name = reportName(file.getKey());
+            List<Violation> violations = checked.get(name);
+            if (violations != null) {
+                cache.put(file.getValue(), violations);
+            }
+            report.put(name, violations == null ? List.of() : violations);
+        }
+        return report;
+    }
+
+    private static String reportName(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
     private GradedTestResult initResult() {
         return new GradedTestResult(CHECKSTYLE_NAME, "", this.points, VISIBLE);
     }
@@ -156,15 +266,93 @@ public class CheckstyleGrader {
         return result;
     }
 
-    private GradedTestResult xmlToGradedTestResult(String checkstyleOutput) throws InternalError {
-        String xml = stripNonXml(checkstyleOutput);
-        Document d = getXmlAsDocument(xml);
-        GradedTestResult result = initResult();
-        NodeList filesWithErrors = d.getElementsByTagName(FILE_TAG);
+    private static XMLInputFactory newXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Parse a Checkstyle XML report into the result, counting errors into
+     * {@link #getErrorTypes()}. Package-private so the parsing
+     * can be benchmarked without running Checkstyle.
+     * @param checkstyleOutput The report, possibly preceded by other output.
+     * @return The result with the report as output and the deductions made.
+     * @throws IOException If reading the report fails.
+     */
+    GradedTestResult xmlToGradedTestResult(InputStream checkstyleOutput) throws IOException {
+        return this.reportToResult(parseReport(checkstyleOutput));
+    }
+
+    /**
+     * Parse a Checkstyle XML report.
+     * @param checkstyleOutput The report, possibly preceded by other output.
+     * @return The violations of each file in the report, by the name the
+     *         report gives it, in the order of the report. Files without
+     *         violations map to an empty list.
+     * @throws IOException If reading the report fails.
+     */
+    private static Map<String, List<Violation>> parseReport(InputStream checkstyleOutput) throws IOException {
+        try {
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(skipToXml(checkstyleOutput));
+            try {
+                return parseReport(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new InternalError(e);
+        }
+    }
+
+    private static Map<String, List<Violation>> parseReport(XMLStreamReader reader) throws XMLStreamException {
+        Map<String, List<Violation>> report = new LinkedHashMap<>();
+        List<Violation> fileViolations = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT && ROOT_TAG.equals(reader.getLocalName())) {
+                // Anything after the report, like a summary line, is not XML.
+                break;
+            } else if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+
+            if (FILE_TAG.equals(reader.getLocalName())) {
+                String name = reader.getAttributeValue(null, FILE_NAME_ATTR);
+                fileViolations = report.computeIfAbsent(name == null ? "" : name, k -> new ArrayList<>());
+            } else if (ERROR_TAG.equals(reader.getLocalName())) {
+                if (fileViolations == null) {
+                    fileViolations = report.computeIfAbsent("", k -> new ArrayList<>());
+                }
+                fileViolations.add(new Violation(reader.getAttributeValue(null, LINE_ATTR),
+                        reader.getAttributeValue(null, COL_ATTR),
+                        reader.getAttributeValue(null, MSG_ATTR),
+                        reader.getAttributeValue(null, SRC_ATTR)));
+            }
+        }
+        return report;
+    }
 
+    /**
+     * Turn the violations of each file into the result, counting them into
+     * {@link #getErrorTypes()}.
+     * @param report The violations of each file, by the file's full name.
+     * @return The result with the violations as output and the deductions
+     *         made.
+     */
+    private GradedTestResult reportToResult(Map<String, List<Violation>> report) {
+        GradedTestResult result = initResult();
         int numErrors = 0;
-        for (int i = 0; i < filesWithErrors.getLength(); i++) {
-            numErrors += addOutputForFileNode(result, filesWithErrors.item(i));
+        for (Map.Entry<String, List<Violation>> file : report.entrySet()) {
+            if (file.getValue().isEmpty()) {
+                continue;
+            }
+            result.addOutput(getFileName(file.getKey()) + ":\n");
+            for (Violation violation : file.getValue()) {
+                result.addOutput(this.getOutputForError(violation));
+                numErrors++;
+            }
         }
 
         result.setScore(Math.max(this.points - (numErrors * this.deduct), 0));
@@ -176,67 +364,103 @@ public class CheckstyleGrader {
         return result;
     }
 
-    private static String stripNonXml(String s) {
-        return s.substring(s.indexOf('<'), s.lastIndexOf('>') + 1);
+    private static InputStream skipToXml(InputStream in) throws IOException {
+        PushbackInputStream xml = new PushbackInputStream(in);
+        int b = xml.read();
+        while (b != -1 && b != '<') {
+            b = xml.read();
+        }
+        if (b != -1) {
+            xml.unread(b);
+        }
+        return xml;
     }
 
-    private static Document getXmlAsDocument(String xml) throws InternalError {
-        try {
-            DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            InputSource is = new InputSource();
-            is.setCharacterStream(new StringReader(xml));
-            return builder.parse(is);
-        } catch (ParserConfigurationException | IOException | SAXException e) {
-            throw new InternalError(e);
-        }
+    private static String getFileName(String fullPath) {
+        return fullPath == null ? "" : fullPath.substring(fullPath.lastIndexOf('/') + 1);
     }
 
-    private static String getAttributeValue(String prefix, Node attribute) {
-        return attribute == null ? "" : String.format("%s%s", prefix, attribute.getNodeValue());
+    private static String getAttributeValue(String prefix, String attribute) {
+        return attribute == null ? "" : String.format("%s%s", prefix, attribute);
     }
 
-    private static String getAttributeValue(Node attribute) {
+    private static String getAttributeValue(String attribute) {
         return getAttributeValue("", attribute);
     }
 
-    private String getOutputForErrorNode(NamedNodeMap attributes) {
-        if (attributes == null) {
-            throw new InternalError();
-        }
-        Node lineAttribute = attributes.getNamedItem(LINE_ATTR);
-        Node columnAttribute = attributes.getNamedItem(COL_ATTR);
-        Node messageAttribute = attributes.getNamedItem(MSG_ATTR);
-        String errorTypeAttribute = getAttributeValue(attributes.getNamedItem(SRC_ATTR));
+    private String getOutputForError(Violation error) {
+        String errorTypeAttribute = getAttributeValue(error.getSource());
         if (errorTypeAttribute.contains(".")) {
             String[] split = errorTypeAttribute.split("\\.");
             errorTypeAttribute = split[split.length - 1];
-            if (!this.errorTypes.containsKey(errorTypeAttribute)) {
-                this.errorTypes.put(errorTypeAttribute, 1);
-            } else {
-                this.errorTypes.put(errorTypeAttribute, this.errorTypes.get(errorTypeAttribute) + 1);
-            }
+            this.errorTypes.merge(errorTypeAttribute, 1, Integer::sum);
         }
 
         return String.format("\t%-20s - %s [%s]\n",
-                getAttributeValue("line: ", lineAttribute)
-                + getAttributeValue(", column", columnAttribute),
-                getAttributeValue(messageAttribute),
+                getAttributeValue("line: ", error.getLine())
+                + getAttributeValue(", column", error.getColumn()),
+                getAttributeValue(error.getMessage()),
                 errorTypeAttribute);
     }
 
-    private int addOutputForFileNode(GradedTestResult result, Node elementNode) {
-        String fullPath = elementNode.getAttributes().getNamedItem(FILE_NAME_ATTR).toString();
-        String fileName = fullPath.substring(fullPath.lastIndexOf('/') + 1, fullPath.length() - 1);
-        NodeList errorNodes = ((Element) elementNode).getElementsByTagName(ERROR_TAG);
+    /**
+     * A single violation, with the attributes of its <code>error</code>
+     * element in the Checkstyle report. Any of them may be null.
+     */
+    static final class Violation {
+        private final String line;
+        private final String column;
+        private final String message;
+        private final String source;
+
+        /**
+         * Create a new Violation.
+         * @param line The line of the violation.
+         * @param column The column of the violation.
+         * @param message The message describing the violation.
+         * @param source The class name of the check that found it.
+         */
+        Violation(String line, String column, String message, String source) {
+            this.line = line;
+            this.column = column;
+            this.message = message;
+            this.source = source;
+        }
+
+        // <editor-fold desc="accessors">
+
+        /**
+         * Get the line of the violation.
+         * @return The line.
+         */
+        String getLine() {
+            return this.line;
+        }
+
+        /**
+         * Get the column of the violation.
+         * @return The column.
+         */
+        String getColumn() {
+            return this.column;
+        }
 
-        if (errorNodes.getLength() > 0) {
-            result.addOutput(fileName + ":\n");
+        /**
+         * Get the message describing the violation.
+         * @return The message.
+         */
+        String getMessage() {
+            return this.message;
         }
 
-        for (int i = 0; i < errorNodes.getLength(); i++) {
-            result.addOutput(getOutputForErrorNode(errorNodes.item(i).getAttributes()));
+        /**
+         * Get the class name of the check that found the violation.
+         * @return The source.
+         */
+        String getSource() {
+            return this.source;
         }
 
-        return errorNodes.getLength();
+        // </editor-fold>
     }
 }
@@ -0,0 +1,91 @@
+package com.github.dscpsyl.jgrade2;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Helper class that records a class data sharing (CDS) archive of the
+ * classes a grading run loads. The run is repeated in a new JVM started
+ * with <code>-XX:ArchiveClassesAtExit</code>, with the same classpath and
+ * arguments, which grades and writes its results as usual and then dumps
+ * every class it loaded from the classpath into the archive. A later run
+ * started with <code>-XX:SharedArchiveFile</code> pointing at the archive
+ * maps those classes in instead of loading and verifying them from the jar
+ * again, so it gets to its first result sooner.
+ * <p>
+ *     The archive only works with the same JDK and the same classpath (the
+ *     same jar, at the same path) it was recorded with. If either changes,
+ *     the JVM ignores the archive and starts as if there was none.
+ * </p>
+ */
+final class ClassDataSharing {
+
+    private static final String ARCHIVE_AT_EXIT = "-XX:ArchiveClassesAtExit=";
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private ClassDataSharing() { }
+
+    /**
+     * Get the command of the training run.
+     * @param archive The archive to write.
+     * @param classpath The classpath of the training run. Every entry must
+     *                  be a jar, or the JVM refuses to record the archive.
+     * @param args The arguments to grade with.
+     * @return The command, which starts {@link JGrade2} in a new JVM.
+     */
+    static List<String> trainingCommand(Path archive, String classpath, List<String> args) {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add(ARCHIVE_AT_EXIT + archive.toAbsolutePath());
+        command.add("-cp");
+        command.add(classpath);
+        command.add(JGrade2.class.getName());
+        command.addAll(args);
+        return command;
+    }
+
+    /**
+     * Grade in a new JVM, with the classpath of this one, that writes the
+     * archive when it exits. Its output goes to the output of this JVM.
+     * @param archive The archive to write.
+     * @param args The arguments to grade with.
+     * @throws IOException If the training run could not be started, failed,
+     *                     or was interrupted.
+     */
+    static void dump(Path archive, List<String> args) throws IOException {
+        dump(archive, System.getProperty("java.class.path"), args);
+    }
+
+    /**
+     * Grade in a new JVM that writes the archive when it exits. Its output
+     * goes to the output of this JVM.
+     * @param archive The archive to write.
+     * @param classpath The classpath of the training run.
+     * @param args The arguments to grade with.
+     * @throws IOException If the training run could not be started, failed,
+     *                     or was interrupted.
+     */
+    static void dump(Path archive, String classpath, List<String> args) throws IOException {
+        Process training = new ProcessBuilder(trainingCommand(archive, classpath, args)).inheritIO().start();
+        int exitCode;
+        try {
+            exitCode = training.waitFor();
+        } catch (InterruptedException e) {
+            training.destroy();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted waiting for the training run");
+        }
+        if (exitCode != 0) {
+            throw new IOException("training run exited with code " + exitCode);
+        }
+        System.err.printf("recorded classes to %s, start later runs with -XX:SharedArchiveFile=%s\n",
+                archive, archive);
+    }
+}
@@ -0,0 +1,355 @@
+package com.github.dscpsyl.jgrade2;
+
+import com.github.dscpsyl.jgrade2.gradedtest.BoundedOutput;
+import com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+/**
+ * A {@link Grader} that can be shared by several threads at once, for
+ * example when a grade method runs {@link #runJUnitGradedTests(Class)} for
+ * several suites on its own threads. Results are appended to a lock-free
+ * queue in the order they arrive, output to the Grader's bounded output
+ * buffer, and the score, max score and execution time are updated
+ * atomically.
+ * <p>
+ *     Appending only takes the shared side of a read-write lock, so
+ *     appending threads never wait on each other, except that appending
+ *     output holds the output buffer while its bytes are copied in.
+ *     {@link #snapshot()} takes
+ *     the exclusive side to copy everything into a plain {@link Grader} at
+ *     a single point in time, which is what should be handed to an
+ *     {@link OutputFormatter} while other threads may still be grading.
+ * </p>
+ * <p>
+ *     The {@link GraderStrategy} is applied to one run of results at a
+ *     time, since strategies like {@link DeductiveGraderStrategy} keep state
+ *     between runs.
+ * </p>
+ */
+public class ConcurrentGrader extends Grader {
+    private static final long NOT_SET = -1;
+
+    private final ReadWriteLock snapshotLock;
+    private final Object strategyLock;
+    private final Queue<GradedTestResult> gradedTestResults;
+    private final AtomicReference<Double> score;
+    private final AtomicReference<Double> maxScore;
+    private final AtomicLong executionTime;
+
+    /** Create a new ConcurrentGrader. */
+    public ConcurrentGrader() {
+        this(null);
+    }
+
+    /**
+     * Create a new ConcurrentGrader that runs JUnit tests with a shared
+     * launcher session.
+     * @param launcherSessions The holder of the session to use, or null for
+     *                         the new Grader to hold its own session.
+     * @see Grader#Grader(LauncherSessionHolder)
+     */
+    ConcurrentGrader(LauncherSessionHolder launcherSessions) {
+        super(launcherSessions);
+        this.snapshotLock = new ReentrantReadWriteLock();
+        this.strategyLock = new Object();
+        this.gradedTestResults = new ConcurrentLinkedQueue<>();
+        this.score = new AtomicReference<>();
+        this.maxScore = new AtomicReference<>();
+        this.executionTime = new AtomicLong(NOT_SET);
+    }
+
+    // <editor-fold desc="accessors">
+
+    /**
+     * Has a score set.
+     * @return True if a score was set.
+     */
+    @Override
+    public boolean hasScore() {
+        return this.score.get() != null;
+    }
+
+    /**
+     * Has a max score set.
+     * @return True if max score was set.
+     */
+    @Override
+    public boolean hasMaxScore() {
+        return this.maxScore.get() != null;
+    }
+
+    /**
+     * Has an execution time.
+     * @return True if the Graders has an execution time.
+     */
+    @Override
+    public boolean hasExecutionTime() {
+        return this.executionTime.get() != NOT_SET;
+    }
+
+    /**
+     * Has any {@link GradedTestResult}s.
+     * @return True if the list contains at least one result.
+     */
+    @Override
+    public boolean hasGradedTestResults() {
+        return !this.gradedTestResults.isEmpty();
+    }
+
+    /**
+     * Set the score (student's score) for the Grader.
+     * @param score The score to set.
+     */
+    @Override
+    public void setScore(double score) {
+        this.shared(() -> this.score.set(score));
+        this.markScoreSet();
+    }
+
+    /**
+     * Set the max potential score for the Grader.
+     * @param maxScore The max potential score to set.
+     */
+    @Override
+    public void setMaxScore(double maxScore) {
+        this.shared(() -> this.maxScore.set(maxScore));
+        this.markMaxScoreSet();
+    }
+
+    /**
+     * Atomically add to the score for the Grader. If no score was set yet,
+     * the score becomes the amount added.
+     * @param score The amount to add to the score.
+     */
+    @Override
+    public void addScore(double score) {
+        this.shared(() -> this.score.accumulateAndGet(score, ConcurrentGrader::sum));
+    }
+
+    /**
+     * Atomically add to the max potential score for the Grader. If no max
+     * score was set yet, the max score becomes the amount added.
+     * @param maxScore The amount to add to the max score.
+     */
+    @Override
+    public void addMaxScore(double maxScore) {
+        this.shared(() -> this.maxScore.accumulateAndGet(maxScore, ConcurrentGrader::sum));
+    }
+
+    /**
+     * Set the execution time for the Grader.
+     * @param executionTime The execution time.
+     */
+    @Override
+    public void setExecutionTime(long executionTime) {
+        this.shared(() -> this.executionTime.set(executionTime));
+    }
+
+    /**
+     * Add a {@link GradedTestResult} to the Grader.
+     * @param result The {@link GradedTestResult} to add.
+     */
+    @Override
+    public void addGradedTestResult(GradedTestResult result) {
+        this.shared(() -> this.gradedTestResults.add(result));
+    }
+
+    /**
+     * Add output to the Grader overall.
+     * @param output The string to append to the output.
+     */
+    @Override
+    public void addOutput(String output) {
+        this.shared(() -> super.addOutput(output));
+    }
+
+    /**
+     * Add another Grader's output to the Grader overall.
+     * @param o The output to append.
+     */
+    @Override
+    void addOutput(BoundedOutput o) {
+        this.shared(() -> super.addOutput(o));
+    }
+
+    /**
+     * Get the (student) score for the Grader.
+     * @return The student score.
+     */
+    @Override
+    public double getScore() {
+        return this.score.get();
+    }
+
+    /**
+     * Get the max potential score.
+     * @return The max potential score.
+     */
+    @Override
+    public double getMaxScore() {
+        return this.maxScore.get();
+    }
+
+    /**
+     * Get the execution time.
+     * @return The execution time.
+     */
+    @Override
+    public long getExecutionTime() {
+        return this.executionTime.get();
+    }
+
+    /**
+     * Get a copy of the list of {@link GradedTestResult}s added so far, in
+     * the order they were added.
+     * @return The list of {@link GradedTestResult}s.
+     */
+    @Override
+    public List<GradedTestResult> getGradedTestResults() {
+        return new ArrayList<>(this.gradedTestResults);
+    }
+
+    // </editor-fold>
+
+    /**
+     * Set the strategy to use to grade.
+     * @param s The strategy to set.
+     * @see Grader#setGraderStrategy(GraderStrategy)
+     */
+    @Override
+    public void setGraderStrategy(GraderStrategy s) {
+        synchronized (this.strategyLock) {
+            super.setGraderStrategy(s);
+        }
+    }
+
+    /**
+     * Set the strategy to use to grade the results of one test suite.
+     * @param testSuite The top-level class containing the tests.
+     * @param s The strategy to set.
+     * @see Grader#setGraderStrategy(Class, GraderStrategy)
+     */
+    @Override
+    public void setGraderStrategy(Class<?> testSuite, GraderStrategy s) {
+        synchronized (this.strategyLock) {
+            super.setGraderStrategy(testSuite, s);
+        }
+    }
+
+    /**
+     * Starts (or resumes) the timer for the Grader.
+     */
+    @Override
+    public synchronized void startTimer() {
+        super.startTimer();
+    }
+
+    /**
+     * Stops the timer for the Grader. Can start again after stopping.
+     * @throws IllegalStateException If the timer has not been started.
+     */
+    @Override
+    public synchronized void stopTimer() throws IllegalStateException {
+        super.stopTimer();
+    }
+
+    /**
+     * Copy the current state of the Grader into a plain {@link Grader}.
+     * No result, output or score added by another thread is half-visible in
+     * the copy: it reflects everything added before the snapshot and
+     * nothing after it.
+     * @return The snapshot of this Grader.
+     */
+    public Grader snapshot() {
+        Lock lock = this.snapshotLock.writeLock();
+        lock.lock();
+        try {
+            Grader copy = new Grader();
+            copy.setOutputLimit(this.getOutputLimit());
+            copy.join(this);
+            return copy;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Create a new ConcurrentGrader without results or output that uses the
+     * same strategies and launcher session, and starts from this one's score
+     * and max score.
+     * @return The new Grader.
+     */
+    @Override
+    Grader fork() {
+        Grader child = new ConcurrentGrader(this.getLauncherSessions());
+        synchronized (this.strategyLock) {
+            child.inheritSettings(this);
+        }
+        child.inheritScores(this);
+        return child;
+    }
+
+    /**
+     * Grade the results of a run with the current strategies, one run at a
+     * time, and add them to the Grader.
+     * @param bySuite The results of the run, by suite name.
+     */
+    @Override
+    void addRunResults(Map<String, List<GradedTestResult>> bySuite) {
+        synchronized (this.strategyLock) {
+            super.addRunResults(bySuite);
+        }
+    }
+
+    /**
+     * Set the most bytes of output to keep for the Grader overall. Waits
+     * for appending threads, since the output is copied.
+     * @param limit The limit in bytes.
+     * @see Grader#setOutputLimit(int)
+     */
+    @Override
+    public void setOutputLimit(int limit) {
+        Lock lock = this.snapshotLock.writeLock();
+        lock.lock();
+        try {
+            super.setOutputLimit(limit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Run an update while holding the shared side of the snapshot lock.
+     * @param update The update to run.
+     */
+    private void shared(Runnable update) {
+        Lock lock = this.snapshotLock.readLock();
+        lock.lock();
+        try {
+            update.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add to a possibly unset value.
+     * @param current The current value, or null if not set.
+     * @param amount The amount to add.
+     * @return The new value.
+     */
+    private static Double sum(Double current, Double amount) {
+        return current == null ? amount : current + amount;
+    }
+}
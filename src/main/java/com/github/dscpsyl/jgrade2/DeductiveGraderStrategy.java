@@ -1,19 +1,25 @@
 package com.github.dscpsyl.jgrade2;
 
 import java.util.List;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.function.Predicate;
 
 import com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult;
 
 /**
  * Strategy to grade deductively. This strategy will take a point value,
  * all tests will be worth 0, and failed tests will count negative.
+ * Once failed tests add up to the floor, no further failure can change the
+ * score; with {@link #setSkipRemainingAtFloor(boolean)} the rest of the
+ * suite is then skipped instead of run.
  */
 public class DeductiveGraderStrategy implements GraderStrategy {
 
     private double floor;
     private String sectionName;
     private double startingScore;
-    private double deductedPoints;
+    private volatile double deductedPoints;
+    private volatile boolean skipRemainingAtFloor;
 
     /**
      * Create a new DeductiveGradingStrategy.
@@ -25,6 +31,7 @@ public class DeductiveGraderStrategy implements GraderStrategy {
         this.sectionName = sectionName;
         this.floor = 0;
         this.deductedPoints = 0;
+        this.skipRemainingAtFloor = false;
     }
 
     /**
@@ -35,6 +42,17 @@ public class DeductiveGraderStrategy implements GraderStrategy {
         this.floor = floor;
     }
 
+    /**
+     * Set whether to skip the tests of a suite that have not started yet
+     * once the points of its failed tests reach the floor. They are then
+     * reported as not run, which saves running every test of a submission
+     * that fails most of them. Off by default.
+     * @param skip True to skip the remaining tests at the floor.
+     */
+    public void setSkipRemainingAtFloor(boolean skip) {
+        this.skipRemainingAtFloor = skip;
+    }
+
     /**
      * Get the amount of points deducted from running this.
      * @return The amount of points deducted.
@@ -64,6 +82,27 @@ public class DeductiveGraderStrategy implements GraderStrategy {
         l.add(baseScore);
     }
 
+    /**
+     * Keeps count of the points the failed tests of a suite will deduct, on
+     * top of what was already deducted, to skip the rest of the suite once
+     * they reach the floor if {@link #setSkipRemainingAtFloor(boolean)} is
+     * set. Each suite of each run keeps its own count.
+     * @return What returns false once the remaining tests should be skipped.
+     */
+    @Override
+    public Predicate<GradedTestResult> startSuite() {
+        if (!this.skipRemainingAtFloor) {
+            return r -> true;
+        }
+        DoubleAdder pending = new DoubleAdder();
+        return r -> {
+            if (!r.passed()) {
+                pending.add(r.getPoints());
+            }
+            return this.deductedPoints + pending.sum() < potentialDeductions();
+        };
+    }
+
     /**
      * Deduct points from a GradedTestResult.
      * @param r The GradedTestResult to deduct from.
@@ -0,0 +1,43 @@
+package com.github.dscpsyl.jgrade2;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+
+/**
+ * Helper class for the hashes the on-disk caches are keyed by (see
+ * {@link ResultCache} and {@link CheckstyleCache}).
+ */
+final class Digests {
+
+    private static final String DIGEST = "SHA-256";
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Digests() { }
+
+    /**
+     * Create a new digest for keys.
+     * @return The digest.
+     */
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST);
+        } catch (NoSuchAlgorithmException e) {
+            throw new InternalError(DIGEST + " is required of every Java platform", e);
+        }
+    }
+
+    /**
+     * Add a string to a digest, followed by a separator so that consecutive
+     * strings cannot run together.
+     * @param md The digest.
+     * @param s The string.
+     */
+    static void update(MessageDigest md, String s) {
+        md.update(s.getBytes(StandardCharsets.UTF_8));
+        md.update((byte) 0);
+    }
+}
@@ -9,7 +9,9 @@ import java.lang.annotation.Target;
  * Annotation for any method to grade when the jar is run as an executable.
  * Just annotate a method with @Grade; make sure the method takes exactly one
  * parameter of type Grader. That Grader object will be the same one used for
- * all methods within that class.
+ * all methods within that class, except when the @Grade methods are run with
+ * <code>--parallel</code>: each then gets its own Grader whose results are
+ * combined into the shared one, in method name order, once they all finish.
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.METHOD)
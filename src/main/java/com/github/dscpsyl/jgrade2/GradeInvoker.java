@@ -0,0 +1,83 @@
+package com.github.dscpsyl.jgrade2;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * Helper class that invokes the grade methods of a grading class in their
+ * phases, as planned by {@link ReflectGrade#gradePlan(Class)}. All
+ * {@link BeforeGrading} methods run first and all {@link AfterGrading}
+ * methods run last. The {@link Grade} methods in between can optionally be
+ * run concurrently.
+ */
+final class GradeInvoker {
+
+    private static final int GRADE_PHASE = 1;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private GradeInvoker() { }
+
+    /**
+     * Invoke every phase of grade methods in order. If the parallelism is
+     * greater than one, the {@link Grade} methods run concurrently on up to
+     * that many threads, each against its own {@link Grader#fork()} of the
+     * grader. The forks are joined back in method order once every
+     * {@link Grade} method has finished, so the results come out in the same
+     * order as a sequential run.
+     * @param o The instance of the class being graded.
+     * @param grader The grader to pass to the methods.
+     * @param plan The grade plan of the class being graded.
+     * @param parallelism The maximum number of grade methods to run at once.
+     */
+    static void invokePhases(Object o, Grader grader, GradePlan plan, int parallelism) {
+        List<List<MethodHandle>> phases = plan.getPhases();
+        for (int i = 0; i < phases.size(); i++) {
+            List<MethodHandle> phase = phases.get(i);
+            if (i == GRADE_PHASE && parallelism > 1 && phase.size() > 1) {
+                invokeConcurrently(o, grader, phase, parallelism);
+            } else {
+                for (MethodHandle m : phase) {
+                    GradePlan.invoke(m, o, grader);
+                }
+            }
+        }
+    }
+
+    /**
+     * Invokes the grade methods concurrently, each with its own fork of the
+     * grader, and joins the forks back in order.
+     * @param o The instance of the class being graded.
+     * @param grader The grader to join the results into.
+     * @param methods The grade methods to invoke.
+     * @param parallelism The maximum number of methods to run at once.
+     */
+    private static void invokeConcurrently(Object o, Grader grader, List<MethodHandle> methods,
+                                           int parallelism) {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, methods.size()));
+        try {
+            List<Future<Grader>> forks = new ArrayList<>();
+            for (MethodHandle m : methods) {
+                Grader fork = grader.fork();
+                forks.add(pool.submit(() -> GradePlan.invoke(m, o, fork), fork));
+            }
+            for (Future<Grader> fork : forks) {
+                grader.join(fork.get());
+            }
+        } catch (ExecutionException e) {
+            throw new InternalError(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalError(e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.github.dscpsyl.jgrade2;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * The grade methods of a grading class, validated and bound once so the
+ * class can be graded any number of times without looking them up again.
+ * Each method is bound to a {@link MethodHandle} of type
+ * <code>(Object, Grader)void</code> that takes the instance being graded
+ * and the {@link Grader}, and reports (but otherwise ignores) anything the
+ * method throws, as {@link GradeInvoker} always has. The handles are
+ * invoked exactly (see {@link #invoke(MethodHandle, Object, Grader)}), with
+ * no reflective call, proxy or argument array in between.
+ * <p>
+ *     Plans are built by {@link ReflectGrade#gradePlan(Class)}, which keeps
+ *     one per class for as long as the class is loaded.
+ * </p>
+ */
+final class GradePlan {
+
+    /** The type of every bound grade method. */
+    static final MethodType STEP_TYPE = MethodType.methodType(void.class, Object.class, Grader.class);
+
+    private static final MethodHandle REPORT;
+
+    static {
+        try {
+            REPORT = MethodHandles.lookup().findStatic(GradePlan.class, "report",
+                    MethodType.methodType(void.class, Method.class, Throwable.class, Object.class, Grader.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new InternalError(e);
+        }
+    }
+
+    /**
+     * Invokes a handle exactly, declared to throw only <code>X</code>
+     * rather than the {@link Throwable} of
+     * {@link MethodHandle#invokeExact(Object...)}.
+     * @param <X> What the invocation is declared to throw.
+     */
+    @FunctionalInterface
+    private interface Invoker<X extends Throwable> {
+        void invoke(MethodHandle step, Object o, Grader grader) throws X;
+    }
+
+    private static final Invoker<Throwable> EXACT = (step, o, grader) -> {
+        step.invokeExact(o, grader);
+    };
+
+    private final List<List<Method>> phaseMethods;
+    private final List<Method> methods;
+    private final List<List<MethodHandle>> phases;
+
+    /**
+     * Create a new GradePlan, binding every method.
+     * @param phaseMethods The valid grade methods of the class, in phases
+     *                     in the order they run.
+     */
+    GradePlan(List<List<Method>> phaseMethods) {
+        List<List<Method>> p = new ArrayList<>();
+        List<Method> m = new ArrayList<>();
+        List<List<MethodHandle>> bound = new ArrayList<>();
+        for (List<Method> phase : phaseMethods) {
+            List<MethodHandle> steps = new ArrayList<>();
+            for (Method method : phase) {
+                steps.add(bind(method));
+            }
+            p.add(Collections.unmodifiableList(new ArrayList<>(phase)));
+            m.addAll(phase);
+            bound.add(Collections.unmodifiableList(steps));
+        }
+        this.phaseMethods = Collections.unmodifiableList(p);
+        this.methods = Collections.unmodifiableList(m);
+        this.phases = Collections.unmodifiableList(bound);
+    }
+
+    // <editor-fold desc="accessors">
+
+    /**
+     * Get the grade methods in the order they run.
+     * @return The methods.
+     */
+    List<Method> getMethods() {
+        return this.methods;
+    }
+
+    /**
+     * Get the grade methods grouped into phases.
+     * @return The methods of each phase.
+     * @see ReflectGrade#graderPhases(Class)
+     */
+    List<List<Method>> getPhaseMethods() {
+        return this.phaseMethods;
+    }
+
+    /**
+     * Get the bound grade methods grouped into phases, in the same order as
+     * {@link #getPhaseMethods()}. Each is of type {@link #STEP_TYPE}, taking
+     * the instance being graded and the grader to pass to the method.
+     * @return The bound methods of each phase.
+     */
+    List<List<MethodHandle>> getPhases() {
+        return this.phases;
+    }
+
+    // </editor-fold>
+
+    /**
+     * Invoke a bound grade method.
+     * @param step The bound method, one of {@link #getPhases()}.
+     * @param o The instance of the class being graded.
+     * @param grader The grader to pass to the method.
+     */
+    @SuppressWarnings("unchecked")
+    static void invoke(MethodHandle step, Object o, Grader grader) {
+        // Bound methods report whatever the method throws themselves, so
+        // nothing checked can get past the handle.
+        ((Invoker<RuntimeException>) (Invoker<?>) EXACT).invoke(step, o, grader);
+    }
+
+    /**
+     * Bind a grade method. Access is checked as {@link Method#invoke} would
+     * check it from outside the grading class, and a method that cannot be
+     * accessed is bound to a report of why.
+     * @param m The method.
+     * @return The bound method, of type {@link #STEP_TYPE}.
+     */
+    private static MethodHandle bind(Method m) {
+        try {
+            return MethodHandles.catchException(MethodHandles.publicLookup().unreflect(m).asType(STEP_TYPE),
+                    Throwable.class, MethodHandles.insertArguments(REPORT, 0, m));
+        } catch (IllegalAccessException e) {
+            return MethodHandles.insertArguments(REPORT, 0, m, e);
+        }
+    }
+
+    /**
+     * Report a grade method that failed.
+     * @param m The method.
+     * @param t What it threw, or why it could not be invoked.
+     * @param o The instance of the class being graded.
+     * @param grader The grader passed to the method.
+     */
+    private static void report(Method m, Throwable t, Object o, Grader grader) {
+        System.err.printf("failed invoking method %s\n", m.getName());
+        t.printStackTrace(System.err);
+    }
+}
@@ -1,6 +1,10 @@
 package com.github.dscpsyl.jgrade2;
 
 import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClasspathRoots;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectPackage;
+
+import org.junit.platform.engine.DiscoverySelector;
 
 import org.junit.platform.launcher.Launcher;
 import org.junit.platform.launcher.LauncherDiscoveryRequest;
@@ -8,13 +12,23 @@ import org.junit.platform.launcher.LauncherSession;
 
 import org.junit.platform.launcher.TestPlan;
 import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
-import org.junit.platform.launcher.core.LauncherFactory;
 
+import com.github.dscpsyl.jgrade2.gradedtest.BoundedOutput;
 import com.github.dscpsyl.jgrade2.gradedtest.GradedTestListener;
 import com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult;
+import com.github.dscpsyl.jgrade2.gradedtest.GradedTestSkip;
+import com.github.dscpsyl.jgrade2.gradedtest.GradedTestTimeout;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 
 /**
@@ -22,9 +36,21 @@ import java.util.List;
  * {@link GradedTestResult}s, a total score, a total max score, any output
  * relevant to the entire submission, and a timer feature for timing execution
  * time. Is Observable to {@link OutputFormatter}s.
+ * <p>
+ *     Output is kept up to a limit, both the Grader's own and that of each
+ *     test it runs, so that a submission printing without end cannot exhaust
+ *     the heap. Past the limit the head and tail of the output are kept (see
+ *     {@link BoundedOutput}).
+ * </p>
+ * <p>
+ *     The first call to {@link #runJUnitGradedTests(Class)} opens a JUnit
+ *     {@link LauncherSession}, which loads the test engines once and is then
+ *     reused for every later suite. Close the Grader when done grading to
+ *     release it.
+ * </p>
  * @see OutputFormatter
  */
-public class Grader {
+public class Grader implements AutoCloseable {
     private static final int NOT_SET = -1;
 
     /**
@@ -39,19 +65,43 @@ public class Grader {
     }
 
     private GraderStrategy graderStrategy;
+    private Map<String, GraderStrategy> suiteStrategies;
     private List<GradedTestResult> gradedTestResults;
     private long startTime;
     private long executionTime;
     private Double score;
     private Double maxScore;
-    private StringBuilder output;
+    private Double forkedScore;
+    private Double forkedMaxScore;
+    private boolean scoreSet;
+    private boolean maxScoreSet;
+    private volatile BoundedOutput output;
+    private volatile int testOutputLimit;
+    private volatile long defaultTimeoutMillis;
+    private final LauncherSessionHolder launcherSessions;
+    private final boolean ownsLauncherSessions;
 
     /** Create a new Grader. */
     public Grader() {
+        this(null);
+    }
+
+    /**
+     * Create a new Grader that runs JUnit tests with a shared launcher
+     * session instead of holding its own. Whoever created the holder closes
+     * it; closing this Grader does not.
+     * @param launcherSessions The holder of the session to use, or null for
+     *                         the new Grader to hold its own session.
+     */
+    Grader(LauncherSessionHolder launcherSessions) {
         this.gradedTestResults = new ArrayList<>();
         this.executionTime = NOT_SET;
-        this.output = new StringBuilder();
+        this.output = new BoundedOutput(BoundedOutput.DEFAULT_LIMIT);
+        this.testOutputLimit = BoundedOutput.DEFAULT_LIMIT;
         this.graderStrategy = new DefaultGraderStrategy();
+        this.suiteStrategies = new ConcurrentHashMap<>();
+        this.ownsLauncherSessions = launcherSessions == null;
+        this.launcherSessions = this.ownsLauncherSessions ? new LauncherSessionHolder() : launcherSessions;
     }
 
     // <editor-fold desc="accessors">
@@ -93,7 +143,7 @@ public class Grader {
      * @return True if there is any output to include.
      */
     public boolean hasOutput() {
-        return this.output.length() > 0;
+        return !this.output.isEmpty();
     }
 
     /**
@@ -102,6 +152,7 @@ public class Grader {
      */
     public void setScore(double score) {
         this.score = score;
+        this.markScoreSet();
     }
 
     /**
@@ -110,6 +161,25 @@ public class Grader {
      */
     public void setMaxScore(double maxScore) {
         this.maxScore = maxScore;
+        this.markMaxScoreSet();
+    }
+
+    /**
+     * Add to the score for the Grader. If no score was set yet, the score
+     * becomes the amount added.
+     * @param score The amount to add to the score.
+     */
+    public void addScore(double score) {
+        this.score = this.hasScore() ? this.score + score : score;
+    }
+
+    /**
+     * Add to the max potential score for the Grader. If no max score was set
+     * yet, the max score becomes the amount added.
+     * @param maxScore The amount to add to the max score.
+     */
+    public void addMaxScore(double maxScore) {
+        this.maxScore = this.hasMaxScore() ? this.maxScore + maxScore : maxScore;
     }
 
     /**
@@ -136,6 +206,15 @@ public class Grader {
         this.output.append(output);
     }
 
+    /**
+     * Add another Grader's output to the Grader overall, counting what it
+     * dropped as dropped here.
+     * @param o The output to append.
+     */
+    void addOutput(BoundedOutput o) {
+        this.output.append(o);
+    }
+
     /**
      * Get the (student) score for the Grader.
      * @return The student score.
@@ -176,6 +255,15 @@ public class Grader {
         return this.output.toString();
     }
 
+    /**
+     * Get the number of bytes of the Grader's own output that were dropped
+     * because they were past the limit.
+     * @return The number of bytes, or 0 if nothing was dropped.
+     */
+    public long getDroppedOutputBytes() {
+        return this.output.getDroppedBytes();
+    }
+
     // </editor-fold>
 
     /**
@@ -188,6 +276,207 @@ public class Grader {
         this.graderStrategy = s;
     }
 
+    /**
+     * Set the strategy to use to grade the results of one test suite,
+     * instead of the strategy set by {@link #setGraderStrategy(GraderStrategy)}.
+     * When several suites run together, for example with
+     * {@link #runJUnitGradedTests(Class[])}, the results of each suite are
+     * still graded separately, each by its own strategy.
+     * @param testSuite The top-level class containing the tests.
+     * @param s The strategy to set.
+     */
+    public void setGraderStrategy(Class<?> testSuite, GraderStrategy s) {
+        this.suiteStrategies.put(testSuite.getName(), s);
+    }
+
+    /**
+     * Set the time limit for every {@link com.github.dscpsyl.jgrade2.gradedtest.GradedTest}
+     * run by this Grader that does not set its own
+     * {@link com.github.dscpsyl.jgrade2.gradedtest.GradedTest#timeoutMillis()}.
+     * A test that runs past its limit is stopped and fails with no points,
+     * and the remaining tests run without waiting for it.
+     * @param timeoutMillis The time limit in milliseconds, or zero for none
+     *                      (the default).
+     * @throws IllegalArgumentException If the time limit is negative.
+     */
+    public void setDefaultTimeoutMillis(long timeoutMillis) {
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("timeout must not be negative, not " + timeoutMillis);
+        }
+        this.defaultTimeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Get the time limit for graded tests that do not set their own.
+     * @return The time limit in milliseconds, or zero for none.
+     */
+    public long getDefaultTimeoutMillis() {
+        return this.defaultTimeoutMillis;
+    }
+
+    /**
+     * Set the most bytes of output to keep for the Grader overall (not
+     * counting the output of its tests). Output already added is kept as
+     * far as it fits.
+     * @param limit The limit in bytes. Defaults to {@link BoundedOutput#DEFAULT_LIMIT}.
+     * @throws IllegalArgumentException If the limit is negative.
+     */
+    public void setOutputLimit(int limit) {
+        BoundedOutput bounded = new BoundedOutput(limit);
+        bounded.append(this.output);
+        this.output = bounded;
+    }
+
+    /**
+     * Get the most bytes of output kept for the Grader overall.
+     * @return The limit in bytes.
+     */
+    public int getOutputLimit() {
+        return this.output.getLimit();
+    }
+
+    /**
+     * Set the most bytes of output to keep for each graded test this Grader
+     * runs from now on.
+     * @param limit The limit in bytes. Defaults to {@link BoundedOutput#DEFAULT_LIMIT}.
+     * @throws IllegalArgumentException If the limit is negative.
+     */
+    public void setTestOutputLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("output limit must not be negative");
+        }
+        this.testOutputLimit = limit;
+    }
+
+    /**
+     * Get the most bytes of output kept for each graded test.
+     * @return The limit in bytes.
+     */
+    public int getTestOutputLimit() {
+        return this.testOutputLimit;
+    }
+
+    /**
+     * Get the strategy currently used to grade.
+     * @return The strategy.
+     */
+    GraderStrategy getGraderStrategy() {
+        return this.graderStrategy;
+    }
+
+    /**
+     * Create a new Grader without results or output that uses the same
+     * {@link GraderStrategy}, default test time limit, output limits and
+     * launcher session as this one, and starts from its score and max score.
+     * Used to give concurrently running grade methods their own Grader,
+     * which is later combined back with {@link #join(Grader)}.
+     * @return The new Grader.
+     */
+    Grader fork() {
+        Grader child = new Grader(this.launcherSessions);
+        child.inheritSettings(this);
+        child.inheritScores(this);
+        return child;
+    }
+
+    /**
+     * Start from the score and max score of another Grader, remembering
+     * them so that {@link #join(Grader)} only adds what changed since.
+     * @param parent The Grader to take the scores from.
+     */
+    void inheritScores(Grader parent) {
+        if (parent.hasScore()) {
+            this.forkedScore = parent.getScore();
+            this.setScore(this.forkedScore);
+        }
+        if (parent.hasMaxScore()) {
+            this.forkedMaxScore = parent.getMaxScore();
+            this.setMaxScore(this.forkedMaxScore);
+        }
+        this.scoreSet = false;
+        this.maxScoreSet = false;
+    }
+
+    /**
+     * Remember that the score was replaced rather than added to, so that
+     * {@link #join(Grader)} replaces the score it is joined into as well.
+     */
+    void markScoreSet() {
+        this.scoreSet = true;
+    }
+
+    /**
+     * Remember that the max score was replaced rather than added to, so
+     * that {@link #join(Grader)} replaces the max score it is joined into as
+     * well.
+     */
+    void markMaxScoreSet() {
+        this.maxScoreSet = true;
+    }
+
+    /**
+     * Use the same strategies as another Grader, including the strategies
+     * set for particular suites, and the same default test time limit and
+     * output limits.
+     * @param parent The Grader to take the settings from.
+     */
+    void inheritSettings(Grader parent) {
+        this.setDefaultTimeoutMillis(parent.getDefaultTimeoutMillis());
+        this.setOutputLimit(parent.getOutputLimit());
+        this.setTestOutputLimit(parent.getTestOutputLimit());
+        this.setGraderStrategy(parent.getGraderStrategy());
+        for (Map.Entry<String, GraderStrategy> e : parent.suiteStrategies.entrySet()) {
+            this.suiteStrategies.put(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Combine the contents of a Grader created by {@link #fork()} into this
+     * one as if the work had been done on this Grader directly: results and
+     * output are appended, and the amounts the child's score, max score and
+     * execution time changed by since it was forked are added to this
+     * one's. A score or max score the child set with
+     * {@link #setScore(double)} or {@link #setMaxScore(double)} replaces
+     * this one's instead, along with whatever the child added after setting
+     * it. Joining the forks of several grade methods in method order then
+     * gives the same totals as running the methods one after another, as
+     * long as no method reads the score another one changes. Changes to the
+     * child's strategy are not carried over.
+     * @param child The Grader to combine into this one.
+     */
+    void join(Grader child) {
+        for (GradedTestResult r : child.getGradedTestResults()) {
+            this.addGradedTestResult(r);
+        }
+        if (child.hasOutput()) {
+            this.addOutput(child.output);
+        }
+        if (child.scoreSet) {
+            this.setScore(child.getScore());
+        } else if (child.hasScore()) {
+            this.addScore(changeSince(child.getScore(), child.forkedScore));
+        }
+        if (child.maxScoreSet) {
+            this.setMaxScore(child.getMaxScore());
+        } else if (child.hasMaxScore()) {
+            this.addMaxScore(changeSince(child.getMaxScore(), child.forkedMaxScore));
+        }
+        if (child.hasExecutionTime()) {
+            this.setExecutionTime(this.hasExecutionTime()
+                    ? this.getExecutionTime() + child.getExecutionTime() : child.getExecutionTime());
+        }
+    }
+
+    /**
+     * Get how much a score changed since a fork.
+     * @param score The score now.
+     * @param forked The score when forked, or null if there was none.
+     * @return The change.
+     */
+    private static double changeSince(double score, Double forked) {
+        return forked == null ? score : score - forked;
+    }
+
     /**
      * Starts (or resumes) the timer for the Grader.
      */
@@ -217,22 +506,162 @@ public class Grader {
      * @param testSuite The class containing the tests.
      */
     public void runJUnitGradedTests(Class<?> testSuite) {
-        // Wrap the testSuite into something that JUnit can run.
-        LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request()
-                .selectors(selectClass(testSuite))
-                .build();
+        this.runJUnitGradedTests(testSuite, null);
+    }
 
-        GradedTestListener listener = new GradedTestListener();
+    /**
+     * Runs JUnit tests like {@link #runJUnitGradedTests(Class)}, but with
+     * the JUnit Platform's parallel execution turned on so independent
+     * tests run concurrently. The results are still added in the order the
+     * tests appear in the suite, regardless of which finishes first.
+     * @param testSuite The class containing the tests.
+     * @param parallelism The parallel execution settings to use, or null
+     *                    to run the tests one at a time.
+     */
+    public void runJUnitGradedTests(Class<?> testSuite, JUnitParallelism parallelism) {
+        this.runSelected(Collections.singletonList(testSuite),
+                Collections.singletonList(selectClass(testSuite)), parallelism);
+    }
 
-        // Create a new laucher session, attach listener and execute.
-        LauncherSession session = LauncherFactory.openSession();
-        Launcher launcher = session.getLauncher();
+    /**
+     * Runs the JUnit tests of several suites in a single discovery and
+     * execution pass, rather than calling {@link #runJUnitGradedTests(Class)}
+     * for each. The results of each suite are still graded separately by
+     * that suite's {@link GraderStrategy} (see
+     * {@link #setGraderStrategy(Class, GraderStrategy)}), and are added
+     * suite by suite in the order the suites are given.
+     * @param testSuites The classes containing the tests.
+     */
+    public void runJUnitGradedTests(Class<?>... testSuites) {
+        List<Class<?>> suites = new ArrayList<>();
+        List<DiscoverySelector> selectors = new ArrayList<>();
+        for (Class<?> testSuite : testSuites) {
+            suites.add(testSuite);
+            selectors.add(selectClass(testSuite));
+        }
+        this.runSelected(suites, selectors, null);
+    }
+
+    /**
+     * Runs the JUnit tests of every test class in a package and its
+     * subpackages in a single pass. Each top-level test class is a suite,
+     * graded separately as with {@link #runJUnitGradedTests(Class[])}, and
+     * suites are added in order of class name.
+     * Classes are found and loaded through the current thread's context
+     * class loader.
+     * @param packageName The fully qualified name of the package.
+     */
+    public void runJUnitGradedTests(String packageName) {
+        this.runSelected(Collections.emptyList(), Collections.singletonList(selectPackage(packageName)), null);
+    }
+
+    /**
+     * Runs the JUnit tests of every test class under a classpath root (a
+     * directory of compiled classes) in a single pass. Each top-level test
+     * class is a suite, graded separately as with
+     * {@link #runJUnitGradedTests(Class[])}, and suites are added in order
+     * of class name. The classes must be loadable
+     * through the current thread's context class loader.
+     * @param classpathRoot The directory of compiled classes.
+     */
+    public void runJUnitGradedTests(Path classpathRoot) {
+        this.runSelected(Collections.emptyList(),
+                selectClasspathRoots(Collections.singleton(classpathRoot)), null);
+    }
+
+    /**
+     * Discover and execute everything selected in one pass, then grade the
+     * results of each suite and add them to the Grader.
+     * @param suites The suites that were explicitly selected. They are
+     *               graded (in this order) even if they had no results, and
+     *               any other suite that was found is graded after them in
+     *               order of name.
+     * @param selectors What to discover.
+     * @param parallelism The parallel execution settings to use, or null
+     *                    to run the tests one at a time.
+     */
+    private void runSelected(List<Class<?>> suites, List<? extends DiscoverySelector> selectors,
+                             JUnitParallelism parallelism) {
+        // Wrap the selected tests into something that JUnit can run.
+        LauncherDiscoveryRequestBuilder builder = LauncherDiscoveryRequestBuilder.request()
+                .selectors(selectors);
+        if (parallelism != null) {
+            builder.configurationParameters(parallelism.toConfigurationParameters());
+        }
+        if (this.defaultTimeoutMillis > 0) {
+            builder.configurationParameter(GradedTestTimeout.DEFAULT_TIMEOUT_PROPERTY_NAME,
+                    Long.toString(this.defaultTimeoutMillis));
+        }
+        GradedTestListener listener = new GradedTestListener(this.testOutputLimit);
+        Map<String, GraderStrategy> strategies = new HashMap<>(this.suiteStrategies);
+        GraderStrategy fallback = this.graderStrategy;
+        Map<String, Predicate<GradedTestResult>> streams = new ConcurrentHashMap<>();
+        listener.setOnResult((suite, r) -> streams.computeIfAbsent(suite,
+                s -> strategies.getOrDefault(s, fallback).startSuite()).test(r));
+        builder.configurationParameter(GradedTestSkip.RUN_ID_PROPERTY_NAME, listener.getRunId());
+        LauncherDiscoveryRequest request = builder.build();
+
+        // Attach listener and execute with the shared launcher session.
+        Launcher launcher = this.getLauncherSession().getLauncher();
         TestPlan testPlan = launcher.discover(request);
         launcher.execute(testPlan, listener);
 
         // Get the results from the listener, grade them, and add them to the Grader.
-        List<GradedTestResult> results = listener.getGradedTestResults();
-        this.graderStrategy.grade(results);
-        this.gradedTestResults.addAll(results);
+        Map<String, List<GradedTestResult>> bySuite = new LinkedHashMap<>();
+        for (Class<?> testSuite : suites) {
+            bySuite.put(testSuite.getName(), new ArrayList<>());
+        }
+        Map<String, List<GradedTestResult>> discovered = new TreeMap<>(listener.getGradedTestResultsBySuite());
+        for (Map.Entry<String, List<GradedTestResult>> e : discovered.entrySet()) {
+            bySuite.computeIfAbsent(e.getKey(), k -> new ArrayList<>()).addAll(e.getValue());
+        }
+        this.addRunResults(bySuite);
+    }
+
+    /**
+     * Get the holder of the launcher session this Grader runs tests with,
+     * which it shares with the Graders forked from it.
+     * @return The holder.
+     */
+    LauncherSessionHolder getLauncherSessions() {
+        return this.launcherSessions;
+    }
+
+    /**
+     * Get the launcher session this Grader runs tests with, opening it if
+     * needed.
+     * @return The open launcher session.
+     */
+    LauncherSession getLauncherSession() {
+        return this.launcherSessions.open();
+    }
+
+    /**
+     * Closes the JUnit launcher session held by this Grader, if any. A
+     * session shared with the Grader (see {@link #Grader(LauncherSessionHolder)})
+     * is left open. The results stay available, and running more tests
+     * opens a new session.
+     */
+    @Override
+    public void close() {
+        if (this.ownsLauncherSessions) {
+            this.launcherSessions.close();
+        }
+    }
+
+    /**
+     * Grade the results of a run of tests, suite by suite, with each
+     * suite's {@link GraderStrategy} (or the Grader's own if the suite has
+     * none) and add them to the Grader.
+     * @param bySuite The results of the run, by suite name.
+     */
+    void addRunResults(Map<String, List<GradedTestResult>> bySuite) {
+        for (Map.Entry<String, List<GradedTestResult>> e : bySuite.entrySet()) {
+            List<GradedTestResult> results = e.getValue();
+            this.suiteStrategies.getOrDefault(e.getKey(), this.graderStrategy).grade(results);
+            for (GradedTestResult r : results) {
+                this.addGradedTestResult(r);
+            }
+        }
     }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.github.dscpsyl.jgrade2;
 
 import java.util.List;
+import java.util.function.Predicate;
 
 import com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult;
 
@@ -19,4 +20,26 @@ public interface GraderStrategy {
      *          in the case of the default strategy).
      */
     void grade(List<GradedTestResult> l);
+
+    /**
+     * Start looking at the results of one suite in one run of tests as soon
+     * as each test finishes, while the rest of the suite may still be
+     * running, to decide whether the rest is worth running. Every result
+     * still goes to {@link #grade(List)} afterwards, so the results should
+     * not be changed here.
+     * <p>
+     *     This is called once for every suite of every run that has graded
+     *     tests, so anything kept between results belongs to that suite and
+     *     run alone, even when the same strategy grades several suites or
+     *     runs at once. The predicate returned may be called from several
+     *     threads at once when tests run in parallel.
+     * </p>
+     * @return What to call with each result as soon as its test finishes.
+     *         It returns true to keep running the suite (the default), false
+     *         to skip its tests that have not started yet. Those are graded
+     *         as failed with no points and marked as not run.
+     */
+    default Predicate<GradedTestResult> startSuite() {
+        return r -> true;
+    }
 }
@@ -0,0 +1,260 @@
+package com.github.dscpsyl.jgrade2;
+
+import com.github.dscpsyl.jgrade2.gradescope.GradescopeJsonFormatter;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+
+/**
+ * Grades submissions sent to it over a Unix domain socket, for as long as
+ * it runs. Unlike starting a new JVM for every submission, the JUnit test
+ * engines, the staff classes on the classpath and the code the JIT compiled
+ * stay loaded between requests.
+ * <p>
+ *     A request is a single line of JSON with the class root of the
+ *     submission and the command line arguments to grade it with, for
+ *     example <code>{"submission": "/autograder/source/classes", "args":
+ *     ["-c", "staff.hello.GradeHello", "--pretty-print"]}</code>. The
+ *     arguments are those of a single run (see {@link JGrade2}), and the
+ *     submission is loaded through its own {@link SubmissionClassLoader}.
+ *     The response is the formatted result, followed by a line separator,
+ *     after which the server closes the connection. If the submission cannot
+ *     be graded, the response is a result with a score of zero saying why.
+ *     A result is only sent once it is complete, so a client never gets part
+ *     of one followed by the failure.
+ * </p>
+ * <p>
+ *     Requests are read and answered on up to
+ *     {@value #CONNECTIONS_PER_WORKER} threads per worker, and graded on a
+ *     fixed number of workers; requests beyond that wait their turn, and
+ *     connections beyond that wait to be accepted. The
+ *     workers share one JUnit launcher session and, for requests that
+ *     compile their sources, one {@link SubmissionCompiler}.
+ * </p>
+ */
+final class GradingServer implements AutoCloseable {
+
+    private static final String SUBMISSION_KEY = "submission";
+    private static final String ARGS_KEY = "args";
+    private static final int CONNECTIONS_PER_WORKER = 4;
+
+    private final Path socket;
+    private final ExecutorService connections;
+    private final Semaphore connectionSlots;
+    private final ExecutorService workers;
+    private final LauncherSessionHolder launchers;
+    private final SubmissionCompiler compiler;
+    private final ServerSocketChannel server;
+
+    /**
+     * Create a new GradingServer listening on a socket. A file left at the
+     * socket's path by a server that did not shut down is replaced.
+     * @param socket The path of the socket.
+     * @param workers The number of submissions to grade at the same time.
+     * @throws IOException If the socket cannot be bound.
+     * @throws IllegalArgumentException If the number of workers is not positive.
+     */
+    GradingServer(Path socket, int workers) throws IOException {
+        if (workers < 1) {
+            throw new IllegalArgumentException("number of workers must be positive, not " + workers);
+        }
+        this.socket = socket;
+        Files.deleteIfExists(socket);
+        this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        this.server.bind(UnixDomainSocketAddress.of(socket));
+        this.connections = Executors.newFixedThreadPool(workers * CONNECTIONS_PER_WORKER);
+        this.connectionSlots = new Semaphore(workers * CONNECTIONS_PER_WORKER);
+        this.workers = Executors.newFixedThreadPool(workers);
+        this.launchers = new LauncherSessionHolder();
+        this.compiler = new SubmissionCompiler();
+    }
+
+    /**
+     * Send a request to a grading server and copy its response to a stream.
+     * @param socket The path of the server's socket.
+     * @param submission The class root of the submission.
+     * @param args The command line arguments to grade the submission with.
+     * @param out The stream to copy the response to. It is not closed.
+     * @throws IOException If the server cannot be reached.
+     */
+    static void request(Path socket, Path submission, List<String> args, OutputStream out) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            OutputStream toServer = Channels.newOutputStream(channel);
+            toServer.write((Request.encode(submission, args) + "\n").getBytes(StandardCharsets.UTF_8));
+            toServer.flush();
+            channel.shutdownOutput();
+            Channels.newInputStream(channel).transferTo(out);
+            out.flush();
+        }
+    }
+
+    /**
+     * Accept requests until the server is closed or the thread is
+     * interrupted. A connection is only accepted once a connection thread
+     * is free for it.
+     * @throws IOException If accepting a connection fails.
+     */
+    void serve() throws IOException {
+        System.err.printf("serving grading requests on %s\n", this.socket);
+        while (true) {
+            SocketChannel client;
+            try {
+                this.connectionSlots.acquire();
+                client = this.server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            this.connections.execute(() -> {
+                try {
+                    this.respond(client);
+                } finally {
+                    this.connectionSlots.release();
+                }
+            });
+        }
+    }
+
+    /**
+     * Stop accepting requests, and remove the socket. Requests being
+     * graded are abandoned.
+     */
+    @Override
+    public void close() {
+        try {
+            this.server.close();
+            Files.deleteIfExists(this.socket);
+        } catch (IOException e) {
+            System.err.printf("failed removing socket %s\n", this.socket);
+            e.printStackTrace(System.err);
+        }
+        this.connections.shutdownNow();
+        this.workers.shutdownNow();
+        this.launchers.close();
+        try {
+            this.compiler.close();
+        } catch (IOException e) {
+            System.err.println("failed closing the compiler's file managers");
+            e.printStackTrace(System.err);
+        }
+    }
+
+    /**
+     * Read a request from a client, grade it on a worker, and answer with
+     * the result. The result is kept until it is complete, and replaced by
+     * the failure if grading fails part way.
+     * @param client The connection to the client.
+     */
+    private void respond(SocketChannel client) {
+        try (client) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Throwable failure = null;
+            try {
+                Request request = Request.read(Channels.newInputStream(client));
+                this.workers.submit(() -> {
+                    Grader grader = new Grader(this.launchers);
+                    JGrade2.gradeRequest(grader, this.compiler, request.args, request.submission, out);
+                    return null;
+                }).get();
+            } catch (JSONException e) {
+                failure = e;
+            } catch (ExecutionException e) {
+                failure = e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = e;
+            }
+            if (failure != null) {
+                out.reset();
+                JGrade2.writeResult(new GradescopeJsonFormatter(), BatchGrader.failure(failure), out);
+            }
+            out.writeTo(Channels.newOutputStream(client));
+        } catch (IOException e) {
+            System.err.println("failed answering a grading request");
+            e.printStackTrace(System.err);
+        }
+    }
+
+    /**
+     * A request to grade a submission, as sent over the socket.
+     */
+    private static final class Request {
+        private final Path submission;
+        private final List<String> args;
+
+        /**
+         * Create a new Request.
+         * @param submission The class root of the submission.
+         * @param args The command line arguments to grade it with.
+         */
+        private Request(Path submission, List<String> args) {
+            this.submission = submission;
+            this.args = args;
+        }
+
+        /**
+         * Encode a request as a single line of JSON.
+         * @param submission The class root of the submission.
+         * @param args The command line arguments to grade it with.
+         * @return The request, without a line separator.
+         */
+        static String encode(Path submission, List<String> args) {
+            JSONObject request = new JSONObject();
+            try {
+                request.put(SUBMISSION_KEY, submission.toAbsolutePath().toString());
+                request.put(ARGS_KEY, new JSONArray(args));
+            } catch (JSONException e) {
+                throw new InternalError(e);
+            }
+            return request.toString();
+        }
+
+        /**
+         * Read the first line a client sent.
+         * @param in The stream from the client.
+         * @return The request.
+         * @throws IOException If reading fails.
+         * @throws JSONException If the line is not a valid request.
+         */
+        static Request read(InputStream in) throws IOException, JSONException {
+            String line = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)).readLine();
+            if (line == null) {
+                throw new JSONException("empty request");
+            }
+            JSONObject request = new JSONObject(line);
+            List<String> args = new ArrayList<>();
+            JSONArray array = request.getJSONArray(ARGS_KEY);
+            for (int i = 0; i < array.length(); i++) {
+                args.add(array.getString(i));
+            }
+            return new Request(Paths.get(request.getString(SUBMISSION_KEY)), args);
+        }
+    }
+}
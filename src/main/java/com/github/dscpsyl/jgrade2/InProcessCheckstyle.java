@@ -0,0 +1,178 @@
+package com.github.dscpsyl.jgrade2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Runs Checkstyle inside the current JVM. The Checkstyle jar is loaded into
+ * a class loader of its own, once per JVM, so neither its classes nor its
+ * dependencies can clash with those of the grader or a submission. A
+ * checker is configured once per configuration file and reused for every
+ * run after that. Checkstyle is not a dependency of jGrade2, so it is driven
+ * entirely through reflection.
+ * <p>
+ *     Every run reports through Checkstyle's own XML logger, so the output is
+ *     the same as that of <code>java -jar checkstyle.jar -f xml</code>. A
+ *     checker checks one set of files at a time; runs of the same
+ *     configuration from several threads wait for each other.
+ * </p>
+ */
+final class InProcessCheckstyle {
+
+    private static final String PACKAGE = "com.puppycrawl.tools.checkstyle.";
+    private static final String DEFAULT_CONFIG = "/sun_checks.xml";
+    private static final String NO_CLOSE = "NONE";
+
+    private static final Map<String, URLClassLoader> LOADERS = new ConcurrentHashMap<>();
+    private static final Map<String, InProcessCheckstyle> CHECKERS = new ConcurrentHashMap<>();
+
+    private final Object checker;
+    private final Method process;
+    private final Method addListener;
+    private final Method removeListener;
+    private final Constructor<?> xmlLogger;
+    private final Object noClose;
+
+    /**
+     * Create a new InProcessCheckstyle. Use {@link #forConfig(String, String)}.
+     * @param loader The class loader Checkstyle was loaded into.
+     * @param config The configuration file or resource to configure the
+     *               checker with.
+     * @throws ReflectiveOperationException If Checkstyle could not be loaded
+     *                                      or configured.
+     */
+    private InProcessCheckstyle(ClassLoader loader, String config) throws ReflectiveOperationException {
+        Class<?> checkerClass = loader.loadClass(PACKAGE + "Checker");
+        Class<?> resolverClass = loader.loadClass(PACKAGE + "PropertyResolver");
+        Class<?> listenerClass = loader.loadClass(PACKAGE + "api.AuditListener");
+        Object properties = loader.loadClass(PACKAGE + "PropertiesExpander")
+                .getConstructor(Properties.class)
+                .newInstance(System.getProperties());
+        Object configuration = loader.loadClass(PACKAGE + "ConfigurationLoader")
+                .getMethod("loadConfiguration", String.class, resolverClass)
+                .invoke(null, config, properties);
+
+        this.checker = checkerClass.getConstructor().newInstance();
+        checkerClass.getMethod("setModuleClassLoader", ClassLoader.class).invoke(this.checker, loader);
+        checkerClass.getMethod("configure", loader.loadClass(PACKAGE + "api.Configuration"))
+                .invoke(this.checker, configuration);
+        this.process = checkerClass.getMethod("process", List.class);
+        this.addListener = checkerClass.getMethod("addListener", listenerClass);
+        this.removeListener = checkerClass.getMethod("removeListener", listenerClass);
+
+        // The options enum moved between Checkstyle versions, so take it from the constructor.
+        this.xmlLogger = findXmlLoggerConstructor(loader.loadClass(PACKAGE + "XMLLogger"));
+        this.noClose = this.xmlLogger.getParameterTypes()[1].getField(NO_CLOSE).get(null);
+    }
+
+    /**
+     * Get the checker for a configuration, loading Checkstyle and
+     * configuring the checker the first time it is asked for.
+     * @param classpath The Checkstyle jar, or several jars separated by
+     *                  {@link File#pathSeparator}.
+     * @param config The configuration file, or null to use the Sun checks
+     *               bundled with Checkstyle.
+     * @return The checker.
+     * @throws InternalError If Checkstyle could not be loaded or configured.
+     */
+    static InProcessCheckstyle forConfig(String classpath, String config) {
+        String resolved = config == null ? DEFAULT_CONFIG : config;
+        return CHECKERS.computeIfAbsent(classpath + File.pathSeparator + resolved, key -> {
+            try {
+                return new InProcessCheckstyle(LOADERS.computeIfAbsent(classpath, InProcessCheckstyle::newLoader),
+                        resolved);
+            } catch (ReflectiveOperationException e) {
+                throw failure(e);
+            }
+        });
+    }
+
+    /**
+     * Check files.
+     * @param files The files to check.
+     * @return The UTF-8 encoded XML report, as written by <code>-f xml</code>.
+     * @throws InternalError If Checkstyle failed to run.
+     */
+    synchronized InputStream run(List<File> files) {
+        ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        try {
+            Object logger = this.xmlLogger.newInstance(xml, this.noClose);
+            this.addListener.invoke(this.checker, logger);
+            try {
+                this.process.invoke(this.checker, files);
+            } finally {
+                this.removeListener.invoke(this.checker, logger);
+            }
+        } catch (ReflectiveOperationException e) {
+            throw failure(e);
+        }
+        return new ByteArrayInputStream(xml.toByteArray());
+    }
+
+    /**
+     * Create the class loader for a Checkstyle class path. Its parent is the
+     * platform class loader, so nothing on the application class path is
+     * visible to Checkstyle.
+     * @param classpath The Checkstyle jar, or several jars separated by
+     *                  {@link File#pathSeparator}.
+     * @return The class loader.
+     * @throws InternalError If an entry of the class path is not a valid path.
+     */
+    private static URLClassLoader newLoader(String classpath) {
+        String[] entries = classpath.split(File.pathSeparator);
+        URL[] urls = new URL[entries.length];
+        try {
+            for (int i = 0; i < entries.length; i++) {
+                urls[i] = Paths.get(entries[i]).toUri().toURL();
+            }
+        } catch (MalformedURLException e) {
+            throw new InternalError(e);
+        }
+        return new URLClassLoader("checkstyle", urls, ClassLoader.getPlatformClassLoader());
+    }
+
+    /**
+     * Find the <code>XMLLogger(OutputStream, OutputStreamOptions)</code>
+     * constructor.
+     * @param loggerClass The XMLLogger class.
+     * @return The constructor.
+     * @throws NoSuchMethodException If there is no such constructor.
+     */
+    private static Constructor<?> findXmlLoggerConstructor(Class<?> loggerClass) throws NoSuchMethodException {
+        for (Constructor<?> constructor : loggerClass.getConstructors()) {
+            Class<?>[] parameters = constructor.getParameterTypes();
+            if (parameters.length == 2 && parameters[0] == OutputStream.class && parameters[1].isEnum()) {
+                return constructor;
+            }
+        }
+        throw new NoSuchMethodException(loggerClass.getName() + "(OutputStream, OutputStreamOptions)");
+    }
+
+    /**
+     * Wrap a reflection failure, unwrapping the exception Checkstyle threw
+     * if there is one.
+     * @param e The failure.
+     * @return The error to throw.
+     */
+    private static InternalError failure(ReflectiveOperationException e) {
+        if (e instanceof InvocationTargetException) {
+            return new InternalError(e.getCause());
+        }
+        return new InternalError(e);
+    }
+}
@@ -1,7 +1,6 @@
 package com.github.dscpsyl.jgrade2;
 
 import org.apache.commons.cli.CommandLine;
-import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Option;
@@ -10,11 +9,14 @@ import org.apache.commons.cli.ParseException;
 
 import com.github.dscpsyl.jgrade2.gradescope.GradescopeJsonFormatter;
 
-import java.io.FileNotFoundException;
-import java.io.PrintStream;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.net.MalformedURLException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
@@ -29,22 +31,82 @@ import java.net.MalformedURLException;
  * is specified, output will just be written to standard out. The
  * <code>--no-output</code> flag can be used to not produce any output.
  *
+ * With <code>--batch</code>, every subdirectory of the given directory is
+ * graded as its own submission inside this one JVM (see {@link BatchGrader}).
+ * In that mode the <code>-o</code> destination is the directory to write one
+ * results file per submission to, defaulting to the batch directory itself.
+ *
+ * With <code>--parallel</code>, the {@link Grade} methods of the class are run
+ * concurrently between the {@link BeforeGrading} and {@link AfterGrading}
+ * methods. The output is the same order as when they are run one at a time.
+ *
+ * With <code>--dump-cds</code>, the grading is run in a new JVM that records
+ * the classes it loads into a class data sharing archive when it exits (see
+ * {@link ClassDataSharing}). Later runs started with
+ * <code>-XX:SharedArchiveFile</code> set to the archive start faster.
+ *
+ * With <code>--serve</code>, the program keeps running and grades the
+ * requests sent to it over a Unix domain socket (see {@link GradingServer}),
+ * up to <code>--workers</code> at once. With <code>--connect</code>, the
+ * current directory is graded by the server on that socket instead of in
+ * this JVM, and the results are written as if it had been graded here.
+ *
+ * With <code>--cache</code>, results are kept in a directory and looked up
+ * by a hash of the submission's classes, the staff classes and the settings
+ * (see {@link ResultCache}), so a submission that has not changed since it
+ * was last graded gets its stored result without being graded again.
+ *
+ * With <code>--compile</code>, the Java sources under the current directory
+ * (or each submission's directory in batch mode) are compiled in memory
+ * first (see {@link SubmissionCompiler}), and the compiler's errors and
+ * warnings are added as a graded test. If they do not compile, nothing is
+ * graded.
+ *
+ * The class to grade and the submission are loaded from the current directory
+ * (or each submission's directory in batch mode) through a
+ * {@link SubmissionClassLoader}, which prefers the submission's classes to
+ * those on the classpath except for jGrade2, its libraries, the package of
+ * the class to grade and the packages given with <code>--parent-first</code>.
+ *
  * The help/usage message is the following:
  * <code> <br>
  *    usage: jgrade<br>
+ *         --batch directory          grade every submission class root in the
+ *                                    directory<br>
+ *         --cache directory          reuse results of unchanged submissions from
+ *                                    this directory, and store new ones in it<br>
+ *         --cache-size megabytes     most megabytes of results to keep in the
+ *                                    cache (default 256)<br>
  *      -c,--classname arg            the class containing annotated methods to grade<br>
+ *         --compile                  compile the submission's Java sources in
+ *                                    memory before grading them<br>
+ *         --connect socket           have the server on the socket grade the
+ *                                    current directory<br>
+ *         --dump-cds file            grade in a new JVM that records the classes it
+ *                                    loads to a class data sharing archive<br>
  *      -f,--format output-format     specify output, one of 'json' (default) or 'txt'<br>
  *      -h,--help<br>
+ *         --metrics                  include each test's wall time, CPU time and
+ *                                    allocated bytes (when format is json)<br>
  *         --no-output                don't produce any output (if user overriding)<br>
  *      -o destination                save output to another file (if not specified,
  *                                    prints to standard out)<br>
+ *         --parallel threads         run @Grade methods concurrently on up to this
+ *                                    many threads<br>
+ *         --parent-first packages    comma-separated staff packages to load from
+ *                                    the classpath instead of the submission<br>
  *         --pretty-print             pretty-print output (when format is json)<br>
+ *         --serve socket             serve grading requests on a Unix domain
+ *                                    socket, grading up to --workers at once<br>
  *      -v,--version<br>
+ *         --workers count            number of submissions to grade at once in
+ *                                    batch or serve mode (default 1)<br>
  * </code>
  */
 public final class JGrade2 {
 
-    private static final String VERSION = "2.0.0-a2";
+    /** The version of jGrade2. */
+    static final String VERSION = "2.0.0-a2";
 
     private static final String CLASS_OPT = "classname";
     private static final String HELP_OPT = "help";
@@ -55,13 +117,32 @@ public final class JGrade2 {
     private static final String FORMAT_OPT = "format";
     private static final String FORMAT_ARG = "output-format";
     private static final String PP_OPT = "pretty-print";
+    private static final String METRICS_OPT = "metrics";
     private static final String JSON_VAL = "json";
     private static final String TXT_VAL = "txt";
     private static final String DEFAULT_FORMAT = JSON_VAL;
+    private static final String BATCH_OPT = "batch";
+    private static final String BATCH_ARG = "directory";
+    private static final String WORKERS_OPT = "workers";
+    private static final String WORKERS_ARG = "count";
+    private static final int DEFAULT_WORKERS = 1;
+    private static final String PARALLEL_OPT = "parallel";
+    private static final String PARALLEL_ARG = "threads";
+    private static final String PARENT_FIRST_OPT = "parent-first";
+    private static final String PARENT_FIRST_ARG = "packages";
+    private static final String DUMP_CDS_OPT = "dump-cds";
+    private static final String DUMP_CDS_ARG = "file";
+    private static final String SERVE_OPT = "serve";
+    private static final String CONNECT_OPT = "connect";
+    private static final String SOCKET_ARG = "socket";
+    private static final String COMPILE_OPT = "compile";
+    private static final String CACHE_OPT = "cache";
+    private static final String CACHE_ARG = "directory";
+    private static final String CACHE_SIZE_OPT = "cache-size";
+    private static final String MEGABYTES_ARG = "megabytes";
+    private static final long MEGABYTE = 1024 * 1024;
 
 
-    private static GradescopeJsonFormatter formatter;
-
     /**
      * Private constructor to prevent instantiation.
      */
@@ -90,36 +171,48 @@ public final class JGrade2 {
     /**
      * Outputs the result of the grading if set by the user
      * @param grader The grader to output.
+     * @param formatter The formatter to use, or null for no output.
      * @param line The command line arguments.
      */
-    private static void outputResult(Grader grader, CommandLine line) {
-        if (line.hasOption(NO_OUTPUT_OPT)) {
+    private static void outputResult(Grader grader, GradescopeJsonFormatter formatter, CommandLine line) {
+        if (line.hasOption(NO_OUTPUT_OPT) || formatter == null) {
             return;
         }
 
-        PrintStream out = System.out;
-        if (line.hasOption(OUTPUT_OPT)) {
-            try {
-                out = new PrintStream(line.getOptionValue(OUTPUT_OPT));
-            } catch (FileNotFoundException e) {
-                fatal("error printing output to file", e);
+        try {
+            if (line.hasOption(OUTPUT_OPT)) {
+                try (OutputStream out = Files.newOutputStream(Paths.get(line.getOptionValue(OUTPUT_OPT)))) {
+                    writeResult(formatter, grader, out);
+                }
+            } else {
+                writeResult(formatter, grader, System.out);
             }
+        } catch (IOException e) {
+            fatal("error printing output to file", e);
         }
+    }
 
-        if (formatter != null) {
-            out.println(formatter.format(grader));
-        }
+    /**
+     * Streams the formatted result of the grading, followed by a line
+     * separator, to an output stream. The stream is not closed.
+     * @param f The formatter to use.
+     * @param grader The grader to output.
+     * @param out The stream to write to.
+     * @throws IOException If writing to the stream fails.
+     */
+    static void writeResult(OutputFormatter f, Grader grader, OutputStream out) throws IOException {
+        f.format(grader, out);
+        out.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+        out.flush();
     }
 
     /**
-     * Initializes the grader based on the command line arguments.
+     * Initializes the formatter based on the command line arguments.
      * @param line The command line arguments.
-     * @return The initialized grader.
+     * @return The initialized formatter, or null if there is no output.
      */
-    private static Grader initGrader(CommandLine line) {
-        formatter = null;
-
-        Grader grader = new Grader();
+    private static GradescopeJsonFormatter initFormatter(CommandLine line) {
+        GradescopeJsonFormatter formatter = null;
         if (line.hasOption(FORMAT_OPT) && !line.getOptionValue(FORMAT_OPT).equals(DEFAULT_FORMAT)) {
             String val = line.getOptionValue(FORMAT_OPT);
             switch (val) {
@@ -139,24 +232,82 @@ public final class JGrade2 {
             formatter.setPrettyPrint(2);
         }
 
-        return grader;
+        if (line.hasOption(METRICS_OPT)) {
+            if (formatter == null) {
+                throw new IllegalArgumentException("metrics without json formatting");
+            }
+            formatter.setIncludeMetrics(true);
+        }
+
+        return formatter;
+    }
+
+    /**
+     * Gets the value of an option that takes a number.
+     * @param line The command line arguments.
+     * @param opt The option to get the value of.
+     * @param defaultValue The value to use if the option is not present.
+     * @return The value of the option.
+     */
+    private static int getIntOption(CommandLine line, String opt, int defaultValue) {
+        if (!line.hasOption(opt)) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(line.getOptionValue(opt));
+        } catch (NumberFormatException e) {
+            fatal("invalid number for " + opt + ": " + line.getOptionValue(opt), e);
+            throw new InternalError("getIntOption::unreachable statement - system should have exited");
+        }
+    }
+
+    /**
+     * Grades every submission in the batch directory.
+     * @param line The command line arguments.
+     */
+    private static void gradeBatch(CommandLine line) {
+        Path batchDir = Paths.get(line.getOptionValue(BATCH_OPT));
+        Path outputDir = null;
+        if (!line.hasOption(NO_OUTPUT_OPT)) {
+            outputDir = line.hasOption(OUTPUT_OPT) ? Paths.get(line.getOptionValue(OUTPUT_OPT)) : batchDir;
+        }
+
+        int workers = getIntOption(line, WORKERS_OPT, DEFAULT_WORKERS);
+        BatchGrader batch = new BatchGrader(line.getOptionValue(CLASS_OPT), batchDir, outputDir, workers);
+        batch.setParallelism(getIntOption(line, PARALLEL_OPT, 1));
+        if (line.hasOption(PP_OPT)) {
+            batch.setPrettyPrint(2);
+        }
+        batch.setIncludeMetrics(line.hasOption(METRICS_OPT));
+        batch.setStaffPackages(getStaffPackages(line));
+        batch.setCompileSources(line.hasOption(COMPILE_OPT));
+
+        try {
+            if (line.hasOption(CACHE_OPT)) {
+                batch.setCache(newCache(line));
+            }
+            batch.run();
+        } catch (IOException e) {
+            fatal("could not grade batch directory " + batchDir, e);
+        }
     }
 
     /**
-     * Grades the class.
+     * Grades the class. If the submission lacks a {@link RequiredClass} of
+     * it, the class is not even instantiated, and the grader gets a single
+     * result saying what is missing instead.
      * @param grader The grader to use.
      * @param c The class to grade.
+     * @param parallelism The maximum number of {@link Grade} methods to run
+     *                    at once.
+     * @see GradeInvoker#invokePhases(Object, Grader, GradePlan, int)
      */
-    private static void grade(Grader grader, Class<?> c) {
-        Object o = instantiateClass(c);
-        for (Method m : ReflectGrade.graderMethods(c)) {
-            try {
-                m.invoke(o, grader);
-            } catch (IllegalAccessException | InvocationTargetException e) {
-                System.err.printf("failed invoking method %s\n", m.getName());
-                e.printStackTrace(System.err);
-            }
+    static void grade(Grader grader, Class<?> c, int parallelism) {
+        if (!RequirementCheck.check(c, grader)) {
+            return;
         }
+        Object o = instantiateClass(c);
+        GradeInvoker.invokePhases(o, grader, ReflectGrade.gradePlan(c), parallelism);
     }
 
     /**
@@ -167,24 +318,257 @@ public final class JGrade2 {
     private static Object instantiateClass(Class<?> c) {
         try {
             return c.getConstructor().newInstance();
-        } catch (IllegalAccessException | InstantiationException
-                | NoSuchMethodException | InvocationTargetException e) {
+        } catch (ReflectiveOperationException e) {
             fatal("could not invoke constructor of " + c.getName(), e);
             throw new InternalError("instantiateClass::unreachable statement - system should have exited");
         }
     }
 
     /**
-     * Gets the class to grade.
-     * @param className The name of the class to grade.
-     * @return The class to grade.
+     * Grades in a training run that records a class data sharing archive.
+     * @param line The command line arguments.
+     * @param args The command line arguments as given, which the training
+     *             run is started with, except for the archive option.
+     */
+    private static void dumpCds(CommandLine line, String[] args) {
+        try {
+            ClassDataSharing.dump(Paths.get(line.getOptionValue(DUMP_CDS_OPT)), argsWithout(args, "--" + DUMP_CDS_OPT));
+        } catch (IOException e) {
+            fatal("could not record a class data sharing archive", e);
+        }
+    }
+
+    /**
+     * Grades a submission for a request to a {@link GradingServer}. The
+     * arguments are the same as for a single run, except that the output
+     * is always written to the stream.
+     * @param grader The grader for the request, which shares the server's
+     *               JUnit launcher session.
+     * @param compiler The compiler shared by every request, for requests
+     *                 that compile their sources.
+     * @param args The command line arguments of the request.
+     * @param root The class root of the submission.
+     * @param out The stream to write the result to.
+     * @throws IOException If the submission cannot be loaded or the result
+     *                     cannot be written.
      */
-    private static Class<?> getClassToGrade(String className) {
+    static void gradeRequest(Grader grader, SubmissionCompiler compiler, List<String> args, Path root,
+                             OutputStream out) throws IOException {
+        CommandLine line = null;
         try {
-            return ReflectGrade.load(className);
-        } catch (MalformedURLException | ClassNotFoundException e) {
+            line = readCommandLine(args.toArray(new String[0]));
+        } catch (ParseException e) {
+            fatal("could not parse request arguments", e);
+        }
+        assert line != null;
+        if (!line.hasOption(CLASS_OPT)) {
+            fatal("missing required class flag", new ParseException("missing required class flag"));
+        }
+
+        GradescopeJsonFormatter formatter = initFormatter(line);
+        gradeSubmission(grader, line, root, compiler);
+        if (formatter != null) {
+            writeResult(formatter, grader, out);
+        }
+    }
+
+    /**
+     * Serves grading requests until the process is stopped.
+     * @param line The command line arguments.
+     */
+    private static void serve(CommandLine line) {
+        String socket = line.getOptionValue(SERVE_OPT);
+        try (GradingServer server = new GradingServer(Paths.get(socket), getIntOption(line, WORKERS_OPT,
+                DEFAULT_WORKERS))) {
+            server.serve();
+        } catch (IOException e) {
+            fatal("could not serve grading requests on " + socket, e);
+        }
+    }
+
+    /**
+     * Has a grading server grade the current directory, and outputs the
+     * result it sends back like a single run would.
+     * @param line The command line arguments.
+     * @param args The command line arguments as given, which are sent with
+     *             the request, except for the socket and the destination.
+     */
+    private static void connect(CommandLine line, String[] args) {
+        String socket = line.getOptionValue(CONNECT_OPT);
+        List<String> request = argsWithout(args, "--" + CONNECT_OPT, "-" + OUTPUT_OPT);
+        try {
+            if (line.hasOption(OUTPUT_OPT)) {
+                try (OutputStream out = Files.newOutputStream(Paths.get(line.getOptionValue(OUTPUT_OPT)))) {
+                    GradingServer.request(Paths.get(socket), Paths.get(""), request, out);
+                }
+            } else {
+                GradingServer.request(Paths.get(socket), Paths.get(""), request, System.out);
+            }
+        } catch (IOException e) {
+            fatal("could not be graded by the grading server on " + socket, e);
+        }
+    }
+
+    /**
+     * Gets command line arguments without some of the options that take a
+     * value, such as to pass the rest on to another run.
+     * @param args The command line arguments.
+     * @param options The options to leave out with their values, written as
+     *                on the command line (like <code>--batch</code> or
+     *                <code>-o</code>).
+     * @return The remaining arguments.
+     */
+    static List<String> argsWithout(String[] args, String... options) {
+        List<String> remaining = new ArrayList<>();
+        boolean isValue = false;
+        for (String arg : args) {
+            if (!isValue && !isOption(arg, options)) {
+                remaining.add(arg);
+            }
+            isValue = !isValue && List.of(options).contains(arg);
+        }
+        return remaining;
+    }
+
+    /**
+     * Whether a command line argument is one of the options, on its own or
+     * with its value attached (<code>--option=value</code>, or
+     * <code>-ovalue</code> for a short option).
+     * @param arg The argument.
+     * @param options The options, written as on the command line.
+     * @return True if the argument is one of the options.
+     */
+    private static boolean isOption(String arg, String... options) {
+        for (String option : options) {
+            boolean isShort = !option.startsWith("--");
+            if (arg.equals(option) || arg.startsWith(option + "=")
+                    || isShort && arg.startsWith(option) && !arg.startsWith("--")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the staff packages to load from the classpath: the package of the
+     * class to grade, and those given with <code>--parent-first</code>.
+     * @param line The command line arguments.
+     * @return The packages.
+     */
+    private static List<String> getStaffPackages(CommandLine line) {
+        List<String> packages = new ArrayList<>();
+        if (line.hasOption(PARENT_FIRST_OPT)) {
+            for (String pkg : line.getOptionValue(PARENT_FIRST_OPT).split(",")) {
+                if (!pkg.isBlank()) {
+                    packages.add(pkg.trim());
+                }
+            }
+        }
+        return SubmissionClassLoader.staffPackages(line.getOptionValue(CLASS_OPT), packages);
+    }
+
+    /**
+     * Creates the result cache given on the command line.
+     * @param line The command line arguments.
+     * @return The cache.
+     * @throws IOException If the cache directory cannot be created.
+     */
+    private static ResultCache newCache(CommandLine line) throws IOException {
+        long megabytes = getIntOption(line, CACHE_SIZE_OPT, (int) (ResultCache.DEFAULT_MAX_BYTES / MEGABYTE));
+        return new ResultCache(Paths.get(line.getOptionValue(CACHE_OPT)), megabytes * MEGABYTE);
+    }
+
+    /**
+     * Grades the class in the current directory unless its result is in the
+     * result cache, and outputs the result.
+     * @param line The command line arguments.
+     */
+    private static void gradeCached(CommandLine line) {
+        GradescopeJsonFormatter formatter = initFormatter(line);
+        if (formatter == null) {
+            fatal("--cache needs Gradescope JSON output", new ParseException("cache without output"));
+        }
+
+        try {
+            ResultCache cache = newCache(line);
+            List<String> staffPackages = getStaffPackages(line);
+            String key = cache.key(Paths.get(""), line.getOptionValue(CLASS_OPT), staffPackages,
+                    ResultCache.settings(line.hasOption(PP_OPT) ? 2 : -1, line.hasOption(METRICS_OPT), staffPackages,
+                            line.hasOption(COMPILE_OPT)));
+            byte[] result = cache.get(key, out -> {
+                try (Grader grader = new Grader()) {
+                    gradeCurrentDirectory(grader, line);
+                    writeResult(formatter, grader, out);
+                }
+            });
+            if (line.hasOption(OUTPUT_OPT)) {
+                Files.write(Paths.get(line.getOptionValue(OUTPUT_OPT)), result);
+            } else {
+                System.out.write(result);
+                System.out.flush();
+            }
+            System.err.println(cache.report());
+        } catch (IOException e) {
+            fatal("error grading with the result cache", e);
+        }
+    }
+
+    /**
+     * Grades the class in the current directory and outputs the result,
+     * through the result cache if there is one.
+     * @param line The command line arguments.
+     */
+    private static void gradeOnce(CommandLine line) {
+        if (line.hasOption(CACHE_OPT)) {
+            gradeCached(line);
+            return;
+        }
+
+        GradescopeJsonFormatter formatter = initFormatter(line);
+        try (Grader grader = new Grader()) {
+            gradeCurrentDirectory(grader, line);
+            outputResult(grader, formatter, line);
+        }
+    }
+
+    /**
+     * Grades the class in the current directory.
+     * @param grader The grader to use.
+     * @param line The command line arguments.
+     */
+    private static void gradeCurrentDirectory(Grader grader, CommandLine line) {
+        try (SubmissionCompiler compiler = new SubmissionCompiler()) {
+            gradeSubmission(grader, line, Paths.get(""), compiler);
+        } catch (IOException e) {
+            fatal("could not load classes from the current directory", e);
+        }
+    }
+
+    /**
+     * Grades the class in a submission, compiling the submission's sources
+     * first if asked to.
+     * @param grader The grader to use.
+     * @param line The command line arguments.
+     * @param root The directory of the submission.
+     * @param compiler The compiler to use if the sources are compiled.
+     * @throws IOException If the submission cannot be loaded.
+     */
+    private static void gradeSubmission(Grader grader, CommandLine line, Path root, SubmissionCompiler compiler)
+            throws IOException {
+        String className = line.getOptionValue(CLASS_OPT);
+        List<String> staffPackages = getStaffPackages(line);
+        int parallelism = getIntOption(line, PARALLEL_OPT, 1);
+        try {
+            if (line.hasOption(COMPILE_OPT)) {
+                compiler.grade(grader, root, className, staffPackages, parallelism);
+                return;
+            }
+            try (SubmissionClassLoader loader = new SubmissionClassLoader(root, JGrade2.class.getClassLoader(),
+                    staffPackages)) {
+                loader.grade(grader, className, parallelism);
+            }
+        } catch (ClassNotFoundException e) {
             fatal("could not locate class " + className, e);
-            throw new InternalError("getClassToGrade::unreachable statement - system should have exited");
         }
     }
 
@@ -202,6 +586,9 @@ public final class JGrade2 {
         options.addOption(Option.builder().longOpt(PP_OPT)
                 .desc("pretty-print output (when format is json)")
                 .build());
+        options.addOption(Option.builder().longOpt(METRICS_OPT)
+                .desc("include each test's wall time, CPU time and allocated bytes (when format is json)")
+                .build());
         options.addOption(Option.builder().longOpt(NO_OUTPUT_OPT)
                 .desc("don't produce any output (if user overriding)")
                 .build());
@@ -214,6 +601,54 @@ public final class JGrade2 {
                 .desc("the class containing annotated methods to grade")
                 .hasArg()
                 .build());
+        options.addOption(Option.builder().longOpt(BATCH_OPT)
+                .desc("grade every submission class root in the directory")
+                .hasArg(true)
+                .argName(BATCH_ARG)
+                .build());
+        options.addOption(Option.builder().longOpt(WORKERS_OPT)
+                .desc("number of submissions to grade at once in batch or serve mode (default 1)")
+                .hasArg(true)
+                .argName(WORKERS_ARG)
+                .build());
+        options.addOption(Option.builder().longOpt(PARALLEL_OPT)
+                .desc("run @Grade methods concurrently on up to this many threads")
+                .hasArg(true)
+                .argName(PARALLEL_ARG)
+                .build());
+        options.addOption(Option.builder().longOpt(PARENT_FIRST_OPT)
+                .desc("comma-separated staff packages to load from the classpath instead of the submission")
+                .hasArg(true)
+                .argName(PARENT_FIRST_ARG)
+                .build());
+        options.addOption(Option.builder().longOpt(DUMP_CDS_OPT)
+                .desc("grade in a new JVM that records the classes it loads to a class data sharing archive")
+                .hasArg(true)
+                .argName(DUMP_CDS_ARG)
+                .build());
+        options.addOption(Option.builder().longOpt(SERVE_OPT)
+                .desc("serve grading requests on a Unix domain socket, grading up to --workers at once")
+                .hasArg(true)
+                .argName(SOCKET_ARG)
+                .build());
+        options.addOption(Option.builder().longOpt(CONNECT_OPT)
+                .desc("have the server on the socket grade the current directory")
+                .hasArg(true)
+                .argName(SOCKET_ARG)
+                .build());
+        options.addOption(Option.builder().longOpt(COMPILE_OPT)
+                .desc("compile the submission's Java sources in memory before grading them")
+                .build());
+        options.addOption(Option.builder().longOpt(CACHE_OPT)
+                .desc("reuse results of unchanged submissions from this directory, and store new ones in it")
+                .hasArg(true)
+                .argName(CACHE_ARG)
+                .build());
+        options.addOption(Option.builder().longOpt(CACHE_SIZE_OPT)
+                .desc("most megabytes of results to keep in the cache (default 256)")
+                .hasArg(true)
+                .argName(MEGABYTES_ARG)
+                .build());
         options.addOption(Option.builder("h").longOpt(HELP_OPT).build());
         options.addOption(Option.builder("v").longOpt(VERSION_OPT).build());
         return options;
@@ -225,8 +660,7 @@ public final class JGrade2 {
      * @return The parsed command line arguments.
      */
     private static CommandLine readCommandLine(String[] args) throws ParseException {
-        CommandLineParser parser = new DefaultParser();
-        return parser.parse(getOptions(), args, false);
+        return new DefaultParser().parse(getOptions(), args, false);
     }
 
     /**
@@ -247,13 +681,18 @@ public final class JGrade2 {
             usage();
         } else if (line.hasOption(VERSION_OPT)) {
             System.out.println(VERSION);
+        } else if (line.hasOption(SERVE_OPT)) {
+            serve(line);
+        } else if (line.hasOption(CONNECT_OPT)) {
+            connect(line, args);
         } else if (!line.hasOption(CLASS_OPT)) {
             fatal("missing required class flag", new ParseException("missing required class flag"));
+        } else if (line.hasOption(DUMP_CDS_OPT)) {
+            dumpCds(line, args);
+        } else if (line.hasOption(BATCH_OPT)) {
+            gradeBatch(line);
         } else {
-            Grader grader = initGrader(line);
-            Class<?> c = getClassToGrade(line.getOptionValue(CLASS_OPT));
-            grade(grader, c);
-            outputResult(grader, line);
+            gradeOnce(line);
         }
     }
 }
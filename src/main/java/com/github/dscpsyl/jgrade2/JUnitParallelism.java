@@ -0,0 +1,122 @@
+package com.github.dscpsyl.jgrade2;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Settings for running the tests of a suite concurrently with the JUnit
+ * Platform's parallel execution, for use with
+ * {@link Grader#runJUnitGradedTests(Class, JUnitParallelism)}. When used,
+ * every test class and test method runs concurrently unless it opts out
+ * with JUnit's own <code>@Execution(SAME_THREAD)</code> or
+ * <code>@ResourceLock</code> annotations.
+ * <p>
+ *     Use {@link #fixed(int)} for an exact number of threads, or
+ *     {@link #dynamic(double)} for a number of threads relative to the
+ *     number of available processors. Tests that mostly wait (on I/O, on
+ *     a process, or on a timeout) benefit from more threads than there are
+ *     processors.
+ * </p>
+ */
+public final class JUnitParallelism {
+
+    /**
+     * The strategies JUnit can use to decide how many threads to use.
+     */
+    public enum Strategy {
+        /**
+         * A fixed number of threads.
+         */
+        FIXED,
+
+        /**
+         * A number of threads that is a factor of the available processors.
+         */
+        DYNAMIC;
+    }
+
+    private static final String ENABLED = "junit.jupiter.execution.parallel.enabled";
+    private static final String MODE_DEFAULT = "junit.jupiter.execution.parallel.mode.default";
+    private static final String MODE_CLASSES_DEFAULT = "junit.jupiter.execution.parallel.mode.classes.default";
+    private static final String CONFIG_STRATEGY = "junit.jupiter.execution.parallel.config.strategy";
+    private static final String FIXED_PARALLELISM = "junit.jupiter.execution.parallel.config.fixed.parallelism";
+    private static final String DYNAMIC_FACTOR = "junit.jupiter.execution.parallel.config.dynamic.factor";
+    private static final String CONCURRENT = "concurrent";
+
+    private final Strategy strategy;
+    private final double parallelism;
+
+    /**
+     * Create new parallelism settings.
+     * @param strategy The strategy to use.
+     * @param parallelism The number of threads for {@link Strategy#FIXED},
+     *                    or the factor to multiply the available processors
+     *                    by for {@link Strategy#DYNAMIC}.
+     * @throws IllegalArgumentException If the parallelism is not positive.
+     */
+    private JUnitParallelism(Strategy strategy, double parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive, not " + parallelism);
+        }
+        this.strategy = strategy;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Run tests on a fixed number of threads.
+     * @param threads The number of threads.
+     * @return The settings.
+     * @throws IllegalArgumentException If the number of threads is not positive.
+     */
+    public static JUnitParallelism fixed(int threads) {
+        return new JUnitParallelism(Strategy.FIXED, threads);
+    }
+
+    /**
+     * Run tests on a number of threads relative to the number of available
+     * processors.
+     * @param factor The factor to multiply the number of processors by.
+     * @return The settings.
+     * @throws IllegalArgumentException If the factor is not positive.
+     */
+    public static JUnitParallelism dynamic(double factor) {
+        return new JUnitParallelism(Strategy.DYNAMIC, factor);
+    }
+
+    /**
+     * Get the strategy used.
+     * @return The strategy.
+     */
+    public Strategy getStrategy() {
+        return this.strategy;
+    }
+
+    /**
+     * Get the number of threads for {@link Strategy#FIXED}, or the factor
+     * for {@link Strategy#DYNAMIC}.
+     * @return The parallelism.
+     */
+    public double getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * Get the JUnit Platform configuration parameters for these settings.
+     * @return The configuration parameters to add to a discovery request.
+     */
+    Map<String, String> toConfigurationParameters() {
+        Map<String, String> params = new HashMap<>();
+        params.put(ENABLED, "true");
+        params.put(MODE_DEFAULT, CONCURRENT);
+        params.put(MODE_CLASSES_DEFAULT, CONCURRENT);
+        if (this.strategy == Strategy.FIXED) {
+            params.put(CONFIG_STRATEGY, "fixed");
+            params.put(FIXED_PARALLELISM, Integer.toString((int) this.parallelism));
+        } else {
+            params.put(CONFIG_STRATEGY, "dynamic");
+            params.put(DYNAMIC_FACTOR, Double.toString(this.parallelism));
+        }
+        return params;
+    }
+}
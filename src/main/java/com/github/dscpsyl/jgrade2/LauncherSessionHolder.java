@@ -0,0 +1,46 @@
+package com.github.dscpsyl.jgrade2;
+
+import org.junit.platform.launcher.LauncherSession;
+import org.junit.platform.launcher.core.LauncherFactory;
+
+
+/**
+ * Holds a JUnit {@link LauncherSession} for any number of {@link Grader}s
+ * to run their tests with, so the test engines are loaded only once. The
+ * session is opened by the first {@link #open()} and released by
+ * {@link #close()}, after which the next {@link #open()} opens a new one.
+ * <p>
+ *     A {@link Grader} created on its own holds its own session and closes
+ *     it when the Grader is closed. {@link BatchGrader} and
+ *     {@link GradingServer} instead hold one session for every submission
+ *     they grade, and close it when they are done.
+ * </p>
+ */
+final class LauncherSessionHolder implements AutoCloseable {
+
+    private LauncherSession session;
+
+    /**
+     * Get the session, opening it if it is not open yet. Test plans cannot
+     * be executed more than once, so only the session (and the engines it
+     * loaded) is kept between suites.
+     * @return The open session.
+     */
+    synchronized LauncherSession open() {
+        if (this.session == null) {
+            this.session = LauncherFactory.openSession();
+        }
+        return this.session;
+    }
+
+    /**
+     * Closes the session, if it is open.
+     */
+    @Override
+    public synchronized void close() {
+        if (this.session != null) {
+            this.session.close();
+            this.session = null;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.dscpsyl.jgrade2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * Reads a stream of a running process to its end on a background thread,
+ * so the process never blocks on a full pipe. What is read is kept in a
+ * buffer that grows as needed up to a limit; anything past the limit is
+ * still read but thrown away, and the drainer remembers that the output
+ * was truncated.
+ * <p>
+ *     A stream can stay open after the process that wrote to it was
+ *     killed, if a process it started kept the stream and survived.
+ *     {@link #await(long)} gives up waiting on such a stream.
+ * </p>
+ */
+final class OutputDrainer {
+    private static final int CHUNK_SIZE = 8192;
+
+    private final InputStream stream;
+    private final int limit;
+    private final ByteArrayOutputStream buffer;
+    private final Thread thread;
+    private volatile boolean truncated;
+    private IOException failure;
+
+    /**
+     * Create a new OutputDrainer. Use {@link #start(InputStream, int, String)}.
+     * @param stream The stream to drain.
+     * @param limit The most bytes to keep.
+     * @param name The name of the thread draining the stream.
+     */
+    private OutputDrainer(InputStream stream, int limit, String name) {
+        this.stream = stream;
+        this.limit = limit;
+        this.buffer = new ByteArrayOutputStream();
+        this.thread = new Thread(this::drain, name);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Start draining a stream on a new thread.
+     * @param stream The stream to drain.
+     * @param limit The most bytes to keep.
+     * @param name The name of the thread draining the stream.
+     * @return The running drainer.
+     */
+    static OutputDrainer start(InputStream stream, int limit, String name) {
+        OutputDrainer drainer = new OutputDrainer(stream, limit, name);
+        drainer.thread.start();
+        return drainer;
+    }
+
+    /**
+     * Wait for the stream to end and get everything that was kept.
+     * @return The output, decoded with the platform's default charset.
+     * @throws IOException If reading the stream failed.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    String await() throws IOException, InterruptedException {
+        this.thread.join();
+        if (this.failure != null) {
+            throw this.failure;
+        }
+        return this.buffer.toString();
+    }
+
+    /**
+     * Wait a limited time for the stream to end, and get everything that
+     * was kept. If the stream is still open after waiting, the output so
+     * far is returned and counted as truncated.
+     * @param millis How long to wait, in milliseconds.
+     * @return The output, decoded with the platform's default charset.
+     * @throws IOException If reading the stream failed.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    String await(long millis) throws IOException, InterruptedException {
+        this.thread.join(Math.max(millis, 1));
+        if (this.thread.isAlive()) {
+            this.truncated = true;
+            return this.buffer.toString();
+        }
+        return this.await();
+    }
+
+    /**
+     * Whether any output was thrown away because it was past the limit.
+     * Only meaningful after {@link #await()} returns.
+     * @return True if the output was truncated.
+     */
+    boolean isTruncated() {
+        return this.truncated;
+    }
+
+    /**
+     * Read the stream until it ends, keeping up to the limit.
+     */
+    private void drain() {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        try {
+            int read = this.stream.read(chunk);
+            while (read != -1) {
+                int keep = Math.min(read, this.limit - this.buffer.size());
+                this.buffer.write(chunk, 0, keep);
+                if (keep < read) {
+                    this.truncated = true;
+                }
+                read = this.stream.read(chunk);
+            }
+        } catch (IOException e) {
+            this.failure = e;
+        }
+    }
+}
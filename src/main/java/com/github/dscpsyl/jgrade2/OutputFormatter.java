@@ -1,5 +1,9 @@
 package com.github.dscpsyl.jgrade2;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
 /**
  * A formatter that formats data of a {@link Grader} to produce output.
  */
@@ -11,4 +15,19 @@ public interface OutputFormatter {
      * @return The formatted output.
      */
     String format(Grader grader);
+
+    /**
+     * Write the formatted output of the grader to a stream, encoded as UTF-8.
+     * By default this writes the result of {@link #format(Grader)};
+     * formatters that can produce their output incrementally should
+     * override it to avoid building the whole output in memory. The stream
+     * is flushed but not closed.
+     * @param grader The grader observing.
+     * @param out The stream to write the formatted output to.
+     * @throws IOException If writing to the stream fails.
+     */
+    default void format(Grader grader, OutputStream out) throws IOException {
+        out.write(this.format(grader).getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
 }
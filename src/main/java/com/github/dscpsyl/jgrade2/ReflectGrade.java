@@ -2,10 +2,6 @@ package com.github.dscpsyl.jgrade2;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLClassLoader;
-import java.nio.file.FileSystems;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.SortedMap;
@@ -21,29 +17,23 @@ import java.util.TreeMap;
  */
 final class ReflectGrade {
 
+    private static final ClassValue<GradePlan> PLANS = new ClassValue<>() {
+        /**
+         * Collect and bind the grade methods of a class not seen before.
+         * @param type The class.
+         * @return The plan for the class.
+         */
+        @Override
+        protected GradePlan computeValue(Class<?> type) {
+            return new GradePlan(collectGradeMethods(type).toPhaseList());
+        }
+    };
+
     /**
      * Private constructor to prevent instantiation.
      */
     private ReflectGrade() { }
 
-    /**
-     * Load a class from the current directory. The loader is not closed as the resource is
-     * still necessary for the rest of jGrade2 to uitilize.
-     * <p>
-     * Method is borrowed from <a href="https://github.com/phf/jb">https://github.com/phf/jb</a>.
-     *
-     * @param className The name of the class to load.
-     * @return The class object.
-     * @throws ClassNotFoundException If the class cannot be found.
-     * @throws MalformedURLException If the URL is malformed.
-     *
-     */
-    static Class<?> load(String className) throws ClassNotFoundException, MalformedURLException {
-        URL url = FileSystems.getDefault().getPath("").toUri().toURL();
-        URLClassLoader loader = new URLClassLoader(new URL[]{url});
-        return loader.loadClass(className);
-    }
-
     /**
      * A helper class to hold the three types of grade methods.
      */
@@ -62,14 +52,15 @@ final class ReflectGrade {
         }
 
         /**
-         * Convert the maps to a list of methods.
-         * @return The list of methods.
+         * Convert the maps to a list of phases, each phase being the list of
+         * methods for one of the annotations in the order they are run.
+         * @return The list of phases.
          */
-        List<Method> toMethodList() {
-            List<Method> l = new ArrayList<>();
-            l.addAll(beforeGradeMethods.values());
-            l.addAll(gradeMethods.values());
-            l.addAll(doneGradeMethods.values());
+        List<List<Method>> toPhaseList() {
+            List<List<Method>> l = new ArrayList<>();
+            l.add(new ArrayList<>(beforeGradeMethods.values()));
+            l.add(new ArrayList<>(gradeMethods.values()));
+            l.add(new ArrayList<>(doneGradeMethods.values()));
             return l;
         }
     }
@@ -133,16 +124,50 @@ final class ReflectGrade {
         return false;
     }
 
+    /**
+     * Get the grade plan of the class. The grade methods are collected and
+     * bound the first time a class is asked for, and the plan is kept with
+     * the class, so it is dropped once the class (and its loader) is no
+     * longer used. Warnings about invalid grade methods are therefore only
+     * printed the first time.
+     * @param c The class to get the grade plan of.
+     * @return The grade plan.
+     */
+    static GradePlan gradePlan(Class<?> c) {
+        return PLANS.get(c);
+    }
+
     /**
      * Get the list of grade methods from the class.
      * @param c The class to get the grade methods from.
-     * @return The list of grade methods.
+     * @return The list of grade methods, which cannot be modified.
      */
     static List<Method> graderMethods(Class<?> c) {
+        return gradePlan(c).getMethods();
+    }
+
+    /**
+     * Get the grade methods from the class grouped into phases: first the
+     * {@link BeforeGrading} methods, then the {@link Grade} methods, and
+     * last the {@link AfterGrading} methods. Within a phase methods are in
+     * the same order as {@link #graderMethods(Class)}.
+     * @param c The class to get the grade methods from.
+     * @return The list of the three phases, which cannot be modified.
+     */
+    static List<List<Method>> graderPhases(Class<?> c) {
+        return gradePlan(c).getPhaseMethods();
+    }
+
+    /**
+     * Collect the valid grade methods of the class.
+     * @param c The class to get the grade methods from.
+     * @return The grade methods sorted by annotation and name.
+     */
+    private static GradeMethods collectGradeMethods(Class<?> c) {
         GradeMethods gradeMethods = new GradeMethods();
         for (Method m: c.getMethods()) {
             addIfValid(gradeMethods, m);
         }
-        return gradeMethods.toMethodList();
+        return gradeMethods;
     }
 }
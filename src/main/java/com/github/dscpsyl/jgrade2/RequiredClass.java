@@ -0,0 +1,40 @@
+package com.github.dscpsyl.jgrade2;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation for a grading class declaring a class the submission must
+ * have, and optionally methods that class must have. Before any
+ * {@link BeforeGrading} or {@link Grade} method runs, every required class
+ * is looked up and checked with reflection. If one is missing, or lacks a
+ * method, nothing is graded; instead the grader gets a score of zero and a
+ * single result saying what is missing, rather than every test failing on
+ * its own with a <code>NoClassDefFoundError</code>.
+ *
+ * Methods are given as Java signatures, such as
+ * <code>"String greet(String)"</code> or
+ * <code>"public static void main(String[] args)"</code>. Types may be simple
+ * or fully qualified names, parameter names and generic type arguments are
+ * ignored, and the only modifiers checked are <code>public</code> and
+ * <code>static</code>. Inherited public methods count.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Repeatable(RequiredClasses.class)
+public @interface RequiredClass {
+    /**
+     * The binary name of the class, like <code>student.hello.Hello</code>.
+     * @return The name of the class.
+     */
+    String value();
+
+    /**
+     * The signatures of the methods the class must have.
+     * @return The signatures of the methods.
+     */
+    String[] methods() default {};
+}
@@ -0,0 +1,20 @@
+package com.github.dscpsyl.jgrade2;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Container for repeated {@link RequiredClass} annotations on a grading
+ * class. There is no need to use it directly.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface RequiredClasses {
+    /**
+     * The required classes.
+     * @return The required classes.
+     */
+    RequiredClass[] value();
+}
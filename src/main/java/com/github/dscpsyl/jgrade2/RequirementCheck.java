@@ -0,0 +1,197 @@
+package com.github.dscpsyl.jgrade2;
+
+import com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult;
+
+import static com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult.VISIBLE;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Helper class that checks the {@link RequiredClass} annotations of a
+ * grading class against a submission, before anything is graded. Classes
+ * are looked up through the current thread's context class loader (the
+ * submission's, while grading through a {@link SubmissionClassLoader}),
+ * without initializing them, so no code of the submission runs.
+ */
+final class RequirementCheck {
+
+    /** The name of the result added when a requirement is not met. */
+    static final String RESULT_NAME = "Required classes and methods";
+
+    private static final Pattern SIGNATURE = Pattern.compile(
+            "\\s*((?:\\w+\\s+)*)([\\w.$\\[\\]]+)\\s+([\\w$]+)\\s*\\((.*)\\)\\s*");
+    private static final Pattern TYPE_ARGUMENTS = Pattern.compile("<[^<>]*>");
+    private static final String STATIC = "static";
+    private static final String PUBLIC = "public";
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private RequirementCheck() { }
+
+    /**
+     * Check the requirements of a grading class. If any is not met, the
+     * grader's score is set to zero and a failed result listing what is
+     * missing is added to it.
+     * @param gradingClass The grading class.
+     * @param grader The grader to report to.
+     * @return True if every requirement is met and grading can go ahead.
+     * @throws IllegalArgumentException If a method signature is not valid.
+     */
+    static boolean check(Class<?> gradingClass, Grader grader) {
+        List<String> problems = findProblems(gradingClass);
+        if (problems.isEmpty()) {
+            return true;
+        }
+
+        GradedTestResult result = new GradedTestResult(RESULT_NAME, "", 0.0, VISIBLE);
+        result.setPassed(false);
+        result.addOutput("The submission is missing required classes or methods, so it was not graded:\n");
+        for (String problem : problems) {
+            result.addOutput("  - " + problem + "\n");
+        }
+        grader.addGradedTestResult(result);
+        grader.setScore(0);
+        return false;
+    }
+
+    /**
+     * Find every requirement of a grading class that is not met.
+     * @param gradingClass The grading class.
+     * @return A description of each problem, empty if there are none.
+     * @throws IllegalArgumentException If a method signature is not valid.
+     */
+    static List<String> findProblems(Class<?> gradingClass) {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if (loader == null) {
+            loader = gradingClass.getClassLoader();
+        }
+        List<String> problems = new ArrayList<>();
+        for (RequiredClass required : gradingClass.getAnnotationsByType(RequiredClass.class)) {
+            List<Method> methods;
+            try {
+                Class<?> c = Class.forName(required.value(), false, loader);
+                methods = required.methods().length == 0 ? List.of() : methodsOf(c);
+            } catch (ClassNotFoundException e) {
+                problems.add("missing class " + required.value());
+                continue;
+            } catch (LinkageError e) {
+                problems.add("class " + required.value() + " could not be loaded: " + e);
+                continue;
+            }
+            for (String signature : required.methods()) {
+                if (!hasMethod(methods, signature)) {
+                    problems.add("class " + required.value() + " is missing method " + signature.trim());
+                }
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Get the declared and public methods of a class.
+     * @param c The class.
+     * @return Its methods.
+     * @throws LinkageError If a type its methods refer to cannot be loaded.
+     */
+    private static List<Method> methodsOf(Class<?> c) {
+        List<Method> methods = new ArrayList<>(Arrays.asList(c.getDeclaredMethods()));
+        methods.addAll(Arrays.asList(c.getMethods()));
+        return methods;
+    }
+
+    /**
+     * Whether a class has a method with a signature.
+     * @param methods The methods of the class.
+     * @param signature The signature.
+     * @return True if one of the methods matches.
+     * @throws IllegalArgumentException If the signature is not valid.
+     */
+    private static boolean hasMethod(List<Method> methods, String signature) {
+        Matcher m = SIGNATURE.matcher(eraseTypeArguments(signature).replace("...", "[]"));
+        if (!m.matches()) {
+            throw new IllegalArgumentException("invalid method signature: " + signature);
+        }
+        List<String> modifiers = Arrays.asList(m.group(1).trim().split("\\s+"));
+        List<String> parameters = new ArrayList<>();
+        for (String parameter : m.group(4).split(",")) {
+            if (!parameter.isBlank()) {
+                parameters.add(parameter.trim().split("\\s+")[0]);
+            }
+        }
+
+        for (Method method : methods) {
+            if (method.getName().equals(m.group(3)) && isType(method.getReturnType(), m.group(2))
+                    && hasParameters(method, parameters) && hasModifiers(method, modifiers)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove the generic type arguments from a signature, however deeply
+     * they are nested.
+     * @param signature The signature.
+     * @return The signature without type arguments.
+     */
+    private static String eraseTypeArguments(String signature) {
+        String erased = signature;
+        String previous;
+        do {
+            previous = erased;
+            erased = TYPE_ARGUMENTS.matcher(previous).replaceAll("");
+        } while (!erased.equals(previous));
+        return erased;
+    }
+
+    /**
+     * Whether a method has the modifiers a signature requires.
+     * @param method The method.
+     * @param modifiers The modifiers of the signature.
+     * @return True if the method is static and public where required.
+     */
+    private static boolean hasModifiers(Method method, List<String> modifiers) {
+        return (!modifiers.contains(STATIC) || Modifier.isStatic(method.getModifiers()))
+                && (!modifiers.contains(PUBLIC) || Modifier.isPublic(method.getModifiers()));
+    }
+
+    /**
+     * Whether the parameters of a method have some types.
+     * @param method The method.
+     * @param parameters The names of the types.
+     * @return True if the method has exactly those parameter types.
+     */
+    private static boolean hasParameters(Method method, List<String> parameters) {
+        Class<?>[] types = method.getParameterTypes();
+        if (types.length != parameters.size()) {
+            return false;
+        }
+        for (int i = 0; i < types.length; i++) {
+            if (!isType(types[i], parameters.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether a type has a name, given as its binary, canonical or simple
+     * name, or with only some of its enclosing packages and classes.
+     * @param type The type.
+     * @param name The name.
+     * @return True if the name refers to the type.
+     */
+    private static boolean isType(Class<?> type, String name) {
+        String canonical = type.getCanonicalName();
+        return name.equals(type.getName()) || canonical != null
+                && (canonical.equals(name) || canonical.endsWith("." + name));
+    }
+}
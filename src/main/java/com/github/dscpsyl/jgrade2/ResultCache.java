@@ -0,0 +1,350 @@
+package com.github.dscpsyl.jgrade2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+/**
+ * An on-disk cache of formatted results, so that a submission that has
+ * already been graded is not graded again. Results are stored in a
+ * directory, one file per result, named after its key. The key is a hash of
+ * everything the result depends on (see {@link #key(Path, String, List,
+ * List)}), so a submission is only graded again when its classes, the staff
+ * classes or the settings change.
+ * <p>
+ *     The directory is kept under a size limit by removing the results used
+ *     least recently, going by the time each file was last written or read.
+ *     Several runs, or the workers of a batch, can share a directory.
+ * </p>
+ */
+final class ResultCache {
+
+    /** The default size limit, in bytes. */
+    static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final String RESULT_SUFFIX = ".json";
+    private static final String CLASS_SUFFIX = ".class";
+    private static final String SOURCE_SUFFIX = ".java";
+
+    private final Path dir;
+    private final long maxBytes;
+    private final Map<String, byte[]> jarDigests;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+
+    /**
+     * A result to cache, written when it is not in the cache yet.
+     */
+    @FunctionalInterface
+    interface Result {
+        /**
+         * Grade and write the formatted result.
+         * @param out The stream to write the result to.
+         * @throws IOException If writing the result fails.
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Create a new ResultCache, creating its directory if needed.
+     * @param dir The directory to store results in.
+     * @param maxBytes The most bytes of results to keep.
+     * @throws IOException If the directory cannot be created.
+     * @throws IllegalArgumentException If the size limit is not positive.
+     */
+    ResultCache(Path dir, long maxBytes) throws IOException {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("cache size must be positive, not " + maxBytes);
+        }
+        this.dir = Files.createDirectories(dir);
+        this.maxBytes = maxBytes;
+        this.jarDigests = new ConcurrentHashMap<>();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.evictions = new AtomicLong();
+    }
+
+    /**
+     * Get the settings, besides the classes graded, that change a result.
+     * @param prettyPrint The pretty-print indent, negative if disabled.
+     * @param includeMetrics Whether the metrics of each test are included.
+     * @param staffPackages The staff packages loaded from the classpath.
+     * @param compileSources Whether the submission's sources are compiled.
+     * @return The settings, to pass to {@link #key(Path, String, List, List)}.
+     */
+    static List<String> settings(int prettyPrint, boolean includeMetrics, List<String> staffPackages,
+                                 boolean compileSources) {
+        return List.of("pretty-print=" + Math.max(prettyPrint, -1), "metrics=" + includeMetrics,
+                "parent-first=" + String.join(",", staffPackages), "compile=" + compileSources);
+    }
+
+    // <editor-fold desc="accessors">
+
+    /**
+     * Get the number of results found in the cache.
+     * @return The number of hits.
+     */
+    long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Get the number of results that were not in the cache.
+     * @return The number of misses.
+     */
+    long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Get the number of results removed to stay under the size limit.
+     * @return The number of evictions.
+     */
+    long getEvictions() {
+        return this.evictions.get();
+    }
+
+    // </editor-fold>
+
+    /**
+     * Get a summary of how the cache was used.
+     * @return A single line with the hits, misses and evictions.
+     */
+    String report() {
+        return String.format("result cache %s: %d hits, %d misses, %d evicted",
+                this.dir, this.getHits(), this.getMisses(), this.getEvictions());
+    }
+
+    /**
+     * Get the key of a submission's result. It is a hash of the jGrade2
+     * version, the settings, the name of the grading class, every class and
+     * source file under the submission's class root, and the staff classes.
+     * The staff classes are every class file under the class root the
+     * grading class is loaded from, in any package, or the whole jar if the
+     * grading class is loaded from one. That way a fix to a staff helper or
+     * test suite in another package also changes the key.
+     * @param submission The class root of the submission.
+     * @param className The name of the grading class.
+     * @param staffPackages The staff packages loaded from the classpath.
+     * @param settings The other settings that change the result, see
+     *                 {@link #settings(int, boolean, List, boolean)}.
+     * @return The key, as a hexadecimal string.
+     * @throws IOException If a class file cannot be read.
+     */
+    String key(Path submission, String className, List<String> staffPackages, List<String> settings)
+            throws IOException {
+        MessageDigest md = Digests.newDigest();
+        Digests.update(md, "jgrade2 " + JGrade2.VERSION);
+        for (String setting : settings) {
+            Digests.update(md, setting);
+        }
+        Digests.update(md, className);
+        digestFiles(md, submission, Integer.MAX_VALUE, CLASS_SUFFIX, SOURCE_SUFFIX);
+        URL gradingClass;
+        try (SubmissionClassLoader loader = new SubmissionClassLoader(submission, ResultCache.class.getClassLoader(),
+                staffPackages)) {
+            gradingClass = loader.getResource(className.replace('.', '/') + CLASS_SUFFIX);
+        }
+        if (gradingClass != null) {
+            md.update(this.staffDigest(gradingClass, className));
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    /**
+     * Get a result from the cache, or grade it and store it if it is not
+     * there. A result is only stored if grading completes.
+     * @param key The key of the result.
+     * @param result Writes the result on a miss.
+     * @return The formatted result.
+     * @throws IOException If the result cannot be read, written or stored.
+     */
+    byte[] get(String key, Result result) throws IOException {
+        Path file = this.dir.resolve(key + RESULT_SUFFIX);
+        try {
+            byte[] cached = Files.readAllBytes(file);
+            this.hits.incrementAndGet();
+            touch(file);
+            return cached;
+        } catch (NoSuchFileException e) {
+            this.misses.incrementAndGet();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        result.writeTo(out);
+        byte[] graded = out.toByteArray();
+        Path temp = Files.createTempFile(this.dir, key, ".tmp");
+        Files.write(temp, graded);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.evict();
+        return graded;
+    }
+
+    /**
+     * Remove the results used least recently until the cache is under its
+     * size limit.
+     * @throws IOException If the directory cannot be listed.
+     */
+    private synchronized void evict() throws IOException {
+        List<Path> results;
+        try (Stream<Path> files = Files.list(this.dir)) {
+            results = files.filter(f -> f.getFileName().toString().endsWith(RESULT_SUFFIX))
+                    .collect(Collectors.toList());
+        }
+        Map<Path, FileTime> times = new HashMap<>();
+        long total = 0;
+        for (Path result : results) {
+            times.put(result, Files.getLastModifiedTime(result));
+            total += Files.size(result);
+        }
+        results.sort(Comparator.comparing(times::get));
+        for (Path result : results) {
+            if (total <= this.maxBytes) {
+                return;
+            }
+            total -= Files.size(result);
+            if (Files.deleteIfExists(result)) {
+                this.evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Mark a result as just used. Nothing happens if it was removed in the
+     * meantime.
+     * @param file The result's file.
+     * @throws IOException If the time cannot be set.
+     */
+    private static void touch(Path file) throws IOException {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            System.err.printf("result %s was evicted while being read\n", file.getFileName());
+        }
+    }
+
+    /**
+     * Get the digest of the staff classes of a grading class. The digest of
+     * a jar is only computed again when its size or modification time
+     * changes.
+     * @param gradingClass Where the grading class's class file is.
+     * @param className The name of the grading class.
+     * @return The digest.
+     * @throws IOException If the classes cannot be read.
+     */
+    byte[] staffDigest(URL gradingClass, String className) throws IOException {
+        MessageDigest md = Digests.newDigest();
+        URLConnection connection = gradingClass.openConnection();
+        if (connection instanceof JarURLConnection) {
+            URL jar = ((JarURLConnection) connection).getJarFileURL();
+            String version = jar.toString();
+            if ("file".equals(jar.getProtocol())) {
+                Path file = toPath(jar);
+                version += " " + Files.size(file) + " " + Files.getLastModifiedTime(file).toMillis();
+            }
+            byte[] digest = this.jarDigests.get(version);
+            if (digest == null) {
+                MessageDigest jarMd = Digests.newDigest();
+                try (InputStream in = jar.openStream()) {
+                    jarMd.update(in.readAllBytes());
+                }
+                digest = jarMd.digest();
+                this.jarDigests.put(version, digest);
+            }
+            md.update(digest);
+        } else if ("file".equals(gradingClass.getProtocol())) {
+            Path root = toPath(gradingClass).getParent();
+            for (int i = className.split("\\.").length; i > 1 && root != null; i--) {
+                root = root.getParent();
+            }
+            if (root != null) {
+                digestFiles(md, root, Integer.MAX_VALUE, CLASS_SUFFIX);
+            }
+        } else {
+            try (InputStream in = connection.getInputStream()) {
+                md.update(in.readAllBytes());
+            }
+        }
+        return md.digest();
+    }
+
+    /**
+     * Get the file a URL refers to.
+     * @param url The URL, with the <code>file</code> protocol.
+     * @return The file.
+     * @throws IOException If the URL is not a valid file URL.
+     */
+    private static Path toPath(URL url) throws IOException {
+        try {
+            return Paths.get(url.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("invalid location of grading class " + url, e);
+        }
+    }
+
+    /**
+     * Add the files under a directory, down to some depth, to a digest, each
+     * with its path relative to the directory. Nothing is added if the
+     * directory does not exist.
+     * @param md The digest.
+     * @param root The directory.
+     * @param depth The number of levels of directories to look in.
+     * @param suffixes The endings of the names of the files to add.
+     * @throws IOException If a file cannot be read.
+     */
+    private static void digestFiles(MessageDigest md, Path root, int depth, String... suffixes) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        List<Path> matching;
+        try (Stream<Path> files = Files.walk(root, depth)) {
+            matching = files.filter(f -> hasSuffix(f, suffixes))
+                    .filter(Files::isRegularFile)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path file : matching) {
+            Digests.update(md, root.relativize(file).toString().replace('\\', '/'));
+            md.update(Files.readAllBytes(file));
+        }
+    }
+
+    /**
+     * Whether the name of a file ends with one of some suffixes.
+     * @param file The file.
+     * @param suffixes The suffixes.
+     * @return True if it ends with one of them.
+     */
+    private static boolean hasSuffix(Path file, String... suffixes) {
+        String name = String.valueOf(file.getFileName());
+        for (String suffix : suffixes) {
+            if (name.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,243 @@
+package com.github.dscpsyl.jgrade2;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * The class loader a submission is graded in, rooted at the submission's
+ * class root. Classes are looked for in the submission first, so its own
+ * copy of a class is used even if the grader's classpath has one by the same
+ * name. Classes of the JDK, jGrade2, JUnit and the other libraries jGrade2
+ * uses, and of any staff packages given, always come from the parent
+ * instead, so the grader, the tests and the submission all share them.
+ * {@link #staffPackages(String, List)} adds the package of the grading class
+ * to those, so a submission cannot replace the grader with its own copy.
+ * <p>
+ *     The submission's classes can also be given as bytecode compiled in
+ *     memory (see {@link SubmissionCompiler}), which is looked in before the
+ *     class root.
+ * </p>
+ * <p>
+ *     The loader should be closed once grading has finished, which releases
+ *     its open files. Once nothing refers to it or to a class it loaded, the
+ *     loader and its classes can be unloaded; {@link #getLiveCount()} counts
+ *     the loaders that have not been yet, to check that grading many
+ *     submissions does not leak them.
+ * </p>
+ */
+final class SubmissionClassLoader extends URLClassLoader {
+
+    /** The packages always loaded from the parent. */
+    static final List<String> DEFAULT_PARENT_FIRST = List.of(
+            "java.", "javax.", "jdk.", "sun.", "com.sun.", "org.w3c.", "org.xml.",
+            "com.github.dscpsyl.jgrade2.", "org.junit.", "org.opentest4j.", "org.apiguardian.",
+            "org.json.", "org.apache.commons.cli.");
+
+    private static final char NESTED = '$';
+    private static final Set<Reference<SubmissionClassLoader>> LIVE = ConcurrentHashMap.newKeySet();
+    private static final ReferenceQueue<SubmissionClassLoader> COLLECTED = new ReferenceQueue<>();
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private final List<String> parentFirst;
+    private final Map<String, byte[]> compiled;
+    private final AtomicInteger definedClasses;
+
+    /**
+     * Create a new SubmissionClassLoader.
+     * @param root The directory containing the submission's compiled classes.
+     * @param parent The loader of the grader, which the classes of jGrade2,
+     *               its libraries and the staff packages are loaded from.
+     * @param staffPackages Packages that should also be loaded from the
+     *                      parent, such as those of the grading class and
+     *                      tests. Subpackages are included. A class name
+     *                      ending with <code>$</code> stands for that class
+     *                      and its nested classes.
+     * @throws MalformedURLException If the root cannot be converted to a URL.
+     * @see #staffPackages(String, List)
+     */
+    SubmissionClassLoader(Path root, ClassLoader parent, List<String> staffPackages) throws MalformedURLException {
+        this(root, Map.of(), parent, staffPackages);
+    }
+
+    /**
+     * Create a new SubmissionClassLoader for a submission compiled in memory.
+     * @param root The directory of the submission, for its other classes
+     *             and resources.
+     * @param compiled The bytecode of the submission's compiled classes, by
+     *                 binary name.
+     * @param parent The loader of the grader, which the classes of jGrade2,
+     *               its libraries and the staff packages are loaded from.
+     * @param staffPackages Packages that should also be loaded from the
+     *                      parent. Subpackages are included.
+     * @throws MalformedURLException If the root cannot be converted to a URL.
+     */
+    SubmissionClassLoader(Path root, Map<String, byte[]> compiled, ClassLoader parent, List<String> staffPackages)
+            throws MalformedURLException {
+        super(new URL[]{root.toAbsolutePath().toUri().toURL()}, parent);
+        this.compiled = Map.copyOf(compiled);
+        List<String> p = new ArrayList<>(DEFAULT_PARENT_FIRST);
+        for (String pkg : staffPackages) {
+            p.add(pkg.endsWith(".") || pkg.charAt(pkg.length() - 1) == NESTED ? pkg : pkg + ".");
+        }
+        this.parentFirst = Collections.unmodifiableList(p);
+        this.definedClasses = new AtomicInteger();
+        LIVE.add(new WeakReference<>(this, COLLECTED));
+    }
+
+    /**
+     * Get the staff packages to load from the parent when grading a class:
+     * the package of the grading class, which holds the grader and usually
+     * its tests, followed by any others given. A grading class in the
+     * unnamed package only brings itself and its nested classes, since the
+     * submission's classes are usually in that package too.
+     * @param gradingClass The binary name of the grading class.
+     * @param others Other staff packages.
+     * @return The packages, without repeats.
+     */
+    static List<String> staffPackages(String gradingClass, List<String> others) {
+        int dot = gradingClass.lastIndexOf('.');
+        Set<String> packages = new LinkedHashSet<>();
+        packages.add(dot < 0 ? gradingClass + NESTED : gradingClass.substring(0, dot));
+        packages.addAll(others);
+        return List.copyOf(packages);
+    }
+
+    /**
+     * Get the number of loaders created that have not been unloaded yet,
+     * whether they are still in use or only waiting for garbage collection.
+     * @return The number of loaders.
+     */
+    static int getLiveCount() {
+        Reference<? extends SubmissionClassLoader> collected = COLLECTED.poll();
+        while (collected != null) {
+            LIVE.remove(collected);
+            collected = COLLECTED.poll();
+        }
+        return LIVE.size();
+    }
+
+    // <editor-fold desc="accessors">
+
+    /**
+     * Get the packages loaded from the parent.
+     * @return The package prefixes, each ending with a dot, or with a
+     *         <code>$</code> for a class and its nested classes.
+     */
+    List<String> getParentFirst() {
+        return this.parentFirst;
+    }
+
+    /**
+     * Get the number of classes this loader defined from the submission.
+     * @return The number of classes.
+     */
+    int getDefinedClassCount() {
+        return this.definedClasses.get();
+    }
+
+    // </editor-fold>
+
+    /**
+     * Whether a class is always loaded from the parent.
+     * @param name The binary name of the class.
+     * @return True if it is in one of the parent-first packages, or is one
+     *         of the parent-first classes.
+     */
+    boolean isParentFirst(String name) {
+        for (String prefix : this.parentFirst) {
+            if (name.startsWith(prefix) || prefix.charAt(prefix.length() - 1) == NESTED
+                    && isClassOrFile(name, prefix.substring(0, prefix.length() - 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether a name is that of a class in the unnamed package, or of a file
+     * next to it named after it, such as its class file.
+     * @param name The binary name of a class, or the name of a resource.
+     * @param className The name of the class.
+     * @return True if the name is the class's or one of its files'.
+     */
+    private static boolean isClassOrFile(String name, String className) {
+        return name.equals(className) || name.startsWith(className + ".");
+    }
+
+    /**
+     * Load a class of the submission and grade it. While grading, this is
+     * the context class loader, so that package and classpath root selection
+     * find the submission's classes.
+     * @param grader The grader to use.
+     * @param className The name of the class to grade.
+     * @param parallelism The maximum number of {@link Grade} methods to run
+     *                    at once.
+     * @throws ClassNotFoundException If the class cannot be found.
+     * @see JGrade2#grade(Grader, Class, int)
+     */
+    void grade(Grader grader, String className, int parallelism) throws ClassNotFoundException {
+        Thread current = Thread.currentThread();
+        ClassLoader context = current.getContextClassLoader();
+        try {
+            current.setContextClassLoader(this);
+            JGrade2.grade(grader, this.loadClass(className), parallelism);
+        } finally {
+            current.setContextClassLoader(context);
+        }
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        if (this.isParentFirst(name)) {
+            return super.loadClass(name, resolve);
+        }
+        synchronized (this.getClassLoadingLock(name)) {
+            Class<?> c = this.findLoadedClass(name);
+            if (c == null) {
+                try {
+                    c = this.findClass(name);
+                } catch (ClassNotFoundException e) {
+                    c = this.getParent().loadClass(name);
+                }
+            }
+            if (resolve) {
+                this.resolveClass(c);
+            }
+            return c;
+        }
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        byte[] bytecode = this.compiled.get(name);
+        Class<?> c = bytecode != null ? this.defineClass(name, bytecode, 0, bytecode.length) : super.findClass(name);
+        this.definedClasses.incrementAndGet();
+        return c;
+    }
+
+    @Override
+    public URL getResource(String name) {
+        if (this.isParentFirst(name.replace('/', '.'))) {
+            return super.getResource(name);
+        }
+        URL url = this.findResource(name);
+        return url != null ? url : super.getResource(name);
+    }
+}
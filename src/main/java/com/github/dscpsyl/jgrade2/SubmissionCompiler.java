@@ -0,0 +1,312 @@
+package com.github.dscpsyl.jgrade2;
+
+import com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import static com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult.VISIBLE;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+/**
+ * Compiles the Java sources of submissions inside the grading JVM, with the
+ * compiler of the JDK it runs on, instead of running <code>javac</code>
+ * first. Compiled classes are kept in memory and loaded straight from there
+ * by a {@link SubmissionClassLoader}; nothing is written to disk. What the
+ * compiler reported becomes a {@link GradedTestResult} worth no points, so
+ * students see their compile errors in the results.
+ * <p>
+ *     The compiler and its file managers are kept between submissions, so
+ *     the JDK's and the classpath's jars are only opened and indexed once.
+ *     Submissions can be compiled from several threads at once; each
+ *     compilation borrows a file manager no other thread is using.
+ * </p>
+ * <p>
+ *     Classes compiled in memory are not in any directory or jar, so
+ *     {@link Grader#runJUnitGradedTests(String)} and
+ *     {@link Grader#runJUnitGradedTests(Path)} cannot find them; select
+ *     test classes by class instead.
+ * </p>
+ */
+final class SubmissionCompiler implements AutoCloseable {
+
+    /** The name of the result for compiling a submission. */
+    static final String COMPILATION_TEST_NAME = "Compilation";
+
+    private static final String SOURCE_SUFFIX = ".java";
+
+    private JavaCompiler compiler;
+    private final Queue<StandardJavaFileManager> fileManagers;
+
+    /**
+     * Create a new SubmissionCompiler using the system Java compiler. The
+     * compiler is only looked up once something is compiled.
+     */
+    SubmissionCompiler() {
+        this.compiler = null;
+        this.fileManagers = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Compile every Java source file under a directory. The directory
+     * itself and the grader's classpath are the classpath of the
+     * compilation, so sources can use jGrade2, JUnit, and staff classes.
+     * @param root The directory of the sources.
+     * @return The classes compiled and the compiler's diagnostics.
+     * @throws IOException If the sources cannot be listed.
+     * @throws IllegalStateException If no Java compiler is available, which
+     *                               is the case when running on a JRE.
+     */
+    Compilation compile(Path root) throws IOException {
+        JavaCompiler javac = this.getCompiler();
+        List<Path> sources;
+        try (Stream<Path> files = Files.walk(root)) {
+            sources = files.filter(f -> f.getFileName().toString().endsWith(SOURCE_SUFFIX))
+                    .filter(Files::isRegularFile)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        if (sources.isEmpty()) {
+            return new Compilation(root, 0, true, Map.of(), List.of());
+        }
+
+        StandardJavaFileManager fileManager = this.fileManagers.poll();
+        if (fileManager == null) {
+            fileManager = javac.getStandardFileManager(null, Locale.ROOT, StandardCharsets.UTF_8);
+        }
+        try {
+            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+            MemoryFileManager memory = new MemoryFileManager(fileManager);
+            List<String> options = List.of("-classpath",
+                    root.toAbsolutePath() + File.pathSeparator + System.getProperty("java.class.path"),
+                    "-proc:none", "-encoding", StandardCharsets.UTF_8.name());
+            boolean compiled = javac.getTask(null, memory, diagnostics, options, null,
+                    fileManager.getJavaFileObjectsFromPaths(sources)).call();
+            return new Compilation(root, sources.size(), compiled, memory.getClasses(),
+                    diagnostics.getDiagnostics());
+        } finally {
+            this.fileManagers.add(fileManager);
+        }
+    }
+
+    /**
+     * Get the system Java compiler, looking it up the first time.
+     * @return The compiler.
+     * @throws IllegalStateException If there is no Java compiler.
+     */
+    private synchronized JavaCompiler getCompiler() {
+        if (this.compiler == null) {
+            this.compiler = ToolProvider.getSystemJavaCompiler();
+            if (this.compiler == null) {
+                throw new IllegalStateException("no Java compiler available, run jGrade2 on a JDK to compile sources");
+            }
+        }
+        return this.compiler;
+    }
+
+    /**
+     * Compile a submission and add the result of compiling it to a grader.
+     * If it compiled, grade a class of it in a {@link SubmissionClassLoader}
+     * that loads the compiled classes from memory and anything else from the
+     * submission directory.
+     * @param grader The grader to use.
+     * @param root The directory of the submission's sources.
+     * @param className The name of the class to grade.
+     * @param staffPackages The staff packages loaded from the classpath.
+     * @param parallelism The maximum number of {@link Grade} methods to run
+     *                    at once.
+     * @return The number of classes loaded from the submission, zero if it
+     *         did not compile.
+     * @throws IOException If the sources cannot be listed.
+     * @throws ClassNotFoundException If the class cannot be found.
+     */
+    int grade(Grader grader, Path root, String className, List<String> staffPackages, int parallelism)
+            throws IOException, ClassNotFoundException {
+        Compilation compilation = this.compile(root);
+        grader.addGradedTestResult(compilation.toGradedTestResult());
+        if (!compilation.succeeded()) {
+            return 0;
+        }
+        try (SubmissionClassLoader loader = new SubmissionClassLoader(root, compilation.getClasses(),
+                SubmissionCompiler.class.getClassLoader(), staffPackages)) {
+            loader.grade(grader, className, parallelism);
+            return loader.getDefinedClassCount();
+        }
+    }
+
+    /**
+     * Close the file managers kept between compilations.
+     * @throws IOException If a file manager fails to close.
+     */
+    @Override
+    public void close() throws IOException {
+        StandardJavaFileManager fileManager = this.fileManagers.poll();
+        while (fileManager != null) {
+            fileManager.close();
+            fileManager = this.fileManagers.poll();
+        }
+    }
+
+    /**
+     * The outcome of compiling a submission.
+     */
+    static final class Compilation {
+        private final Path root;
+        private final int sourceCount;
+        private final boolean succeeded;
+        private final Map<String, byte[]> classes;
+        private final List<Diagnostic<? extends JavaFileObject>> diagnostics;
+
+        /**
+         * Create a new Compilation.
+         * @param root The directory of the sources.
+         * @param sourceCount The number of source files compiled.
+         * @param succeeded Whether compiling succeeded.
+         * @param classes The bytecode of each class compiled, by binary name.
+         * @param diagnostics What the compiler reported.
+         */
+        Compilation(Path root, int sourceCount, boolean succeeded, Map<String, byte[]> classes,
+                    List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+            this.root = root;
+            this.sourceCount = sourceCount;
+            this.succeeded = succeeded;
+            this.classes = Collections.unmodifiableMap(classes);
+            this.diagnostics = List.copyOf(diagnostics);
+        }
+
+        // <editor-fold desc="accessors">
+
+        /**
+         * Whether compiling succeeded. It can succeed with warnings.
+         * @return True if there were no errors.
+         */
+        boolean succeeded() {
+            return this.succeeded;
+        }
+
+        /**
+         * Get the compiled classes.
+         * @return The bytecode of each class, by binary name.
+         */
+        Map<String, byte[]> getClasses() {
+            return this.classes;
+        }
+
+        /**
+         * Get what the compiler reported.
+         * @return The errors, warnings and notes, in the order reported.
+         */
+        List<Diagnostic<? extends JavaFileObject>> getDiagnostics() {
+            return this.diagnostics;
+        }
+
+        // </editor-fold>
+
+        /**
+         * Get the result of compiling, worth no points. It passes if compiling
+         * succeeded, and its output has what the compiler reported like
+         * <code>javac</code> prints it, with paths relative to the sources.
+         * @return The result.
+         */
+        GradedTestResult toGradedTestResult() {
+            GradedTestResult result = new GradedTestResult(COMPILATION_TEST_NAME, "", 0.0, VISIBLE);
+            result.setPassed(this.succeeded);
+            for (Diagnostic<? extends JavaFileObject> d : this.diagnostics) {
+                result.addOutput(this.format(d));
+            }
+            if (this.diagnostics.isEmpty()) {
+                result.addOutput(String.format("Compiled %d source files.", this.sourceCount));
+            }
+            return result;
+        }
+
+        /**
+         * Format a diagnostic like <code>javac</code> does.
+         * @param d The diagnostic.
+         * @return The formatted diagnostic, ending with a line separator.
+         */
+        private String format(Diagnostic<? extends JavaFileObject> d) {
+            String kind = d.getKind() == Diagnostic.Kind.MANDATORY_WARNING ? "warning"
+                    : d.getKind().name().toLowerCase(Locale.ROOT);
+            String message = kind + ": " + d.getMessage(Locale.ROOT) + "\n";
+            if (d.getSource() == null) {
+                return message;
+            }
+            Path source = Path.of(d.getSource().toUri());
+            Path name = source.startsWith(this.root.toAbsolutePath()) ? this.root.toAbsolutePath().relativize(source)
+                    : source.getFileName();
+            return String.format("%s:%d: %s", name, d.getLineNumber(), message);
+        }
+    }
+
+    /**
+     * A file manager that keeps the class files the compiler writes in
+     * memory, and hands everything else to the standard file manager.
+     */
+    private static final class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        private final Map<String, byte[]> classes;
+
+        /**
+         * Create a new MemoryFileManager.
+         * @param fileManager The standard file manager.
+         */
+        MemoryFileManager(StandardJavaFileManager fileManager) {
+            super(fileManager);
+            this.classes = new ConcurrentHashMap<>();
+        }
+
+        /**
+         * Get the class files written.
+         * @return The bytecode of each class, by binary name.
+         */
+        Map<String, byte[]> getClasses() {
+            return this.classes;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                   FileObject sibling) throws IOException {
+            if (location != StandardLocation.CLASS_OUTPUT || kind != JavaFileObject.Kind.CLASS) {
+                return super.getJavaFileForOutput(location, className, kind, sibling);
+            }
+            URI uri = URI.create("memory:///" + className.replace('.', '/') + kind.extension);
+            return new SimpleJavaFileObject(uri, kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    return new ByteArrayOutputStream() {
+                        @Override
+                        public void close() {
+                            MemoryFileManager.this.classes.put(className, this.toByteArray());
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
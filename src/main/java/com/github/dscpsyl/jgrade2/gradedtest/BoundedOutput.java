@@ -0,0 +1,320 @@
+package com.github.dscpsyl.jgrade2.gradedtest;
+
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Output that is kept up to a limit. The first half of the limit holds the
+ * head of the output and the second half its tail; once both are full,
+ * every byte written pushes the oldest byte of the tail out. The bytes in
+ * between are counted but not kept, and {@link #toString()} puts a
+ * <code>[... N bytes truncated ...]</code> line in their place, so a test
+ * that prints in an endless loop cannot exhaust the heap but its first and
+ * last output are still there to read.
+ * <p>
+ *     Memory is taken in chunks as output arrives, so short output stays
+ *     small no matter the limit, and a chunk is never copied or grown once
+ *     it has been taken. Safe to write to from several threads.
+ * </p>
+ */
+public final class BoundedOutput extends OutputStream {
+
+    /** The limit used when none is given: 1 MiB. */
+    public static final int DEFAULT_LIMIT = 1024 * 1024;
+
+    private static final int MIN_CHUNK_SIZE = 64;
+    private static final int MAX_CHUNK_SIZE = 8192;
+
+    private final int limit;
+    private final Charset charset;
+    private final int headCapacity;
+    private final int tailCapacity;
+
+    private final List<byte[]> headChunks;
+    private int headSize;
+    private int lastChunkSize;
+    private boolean headClosed;
+
+    private final byte[][] tailChunks;
+    private int tailStart;
+    private int tailSize;
+
+    private long droppedBytes;
+
+    /**
+     * Create a new BoundedOutput of UTF-8 text.
+     * @param limit The most bytes to keep.
+     * @throws IllegalArgumentException If the limit is negative.
+     */
+    public BoundedOutput(int limit) {
+        this(limit, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Create a new BoundedOutput.
+     * @param limit The most bytes to keep.
+     * @param charset The charset of the bytes written, used to decode them
+     *                and to encode appended strings.
+     * @throws IllegalArgumentException If the limit is negative.
+     */
+    public BoundedOutput(int limit, Charset charset) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("output limit must not be negative");
+        }
+        this.limit = limit;
+        this.charset = charset;
+        this.tailCapacity = limit / 2;
+        this.headCapacity = limit - this.tailCapacity;
+        this.headChunks = new ArrayList<>();
+        this.tailChunks = new byte[(this.tailCapacity + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE][];
+    }
+
+    // <editor-fold desc="accessors">
+
+    /**
+     * Get the most bytes this keeps.
+     * @return The limit.
+     */
+    public int getLimit() {
+        return this.limit;
+    }
+
+    /**
+     * Get the charset of the output.
+     * @return The charset.
+     */
+    public Charset getCharset() {
+        return this.charset;
+    }
+
+    /**
+     * Get the number of bytes that were written but not kept.
+     * @return The number of bytes dropped.
+     */
+    public synchronized long getDroppedBytes() {
+        return this.droppedBytes;
+    }
+
+    /**
+     * Whether any output was dropped.
+     * @return True if the output was truncated.
+     */
+    public synchronized boolean isTruncated() {
+        return this.droppedBytes > 0;
+    }
+
+    /**
+     * Whether nothing has been written, kept or not.
+     * @return True if there is no output.
+     */
+    public synchronized boolean isEmpty() {
+        return this.headSize == 0 && this.tailSize == 0 && this.droppedBytes == 0;
+    }
+
+    // </editor-fold>
+
+    @Override
+    public void write(int b) {
+        this.write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        int toHead = this.headClosed ? 0 : Math.min(len, this.headCapacity - this.headSize);
+        this.writeHead(b, off, toHead);
+        this.writeTail(b, off + toHead, len - toHead);
+    }
+
+    /**
+     * Append a string, encoded with the charset of this output.
+     * @param s The string to append.
+     */
+    public void append(String s) {
+        byte[] bytes = s.getBytes(this.charset);
+        this.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Append everything another output kept, with the bytes it dropped
+     * counted as dropped here too, so the result reads as if everything
+     * written to the other had been written to this one.
+     * @param other The output to append.
+     */
+    public void append(BoundedOutput other) {
+        byte[] head;
+        byte[] tail;
+        long dropped;
+        synchronized (other) {
+            head = other.head();
+            tail = other.tail();
+            dropped = other.droppedBytes;
+        }
+        if (!other.charset.equals(this.charset)) {
+            head = new String(head, other.charset).getBytes(this.charset);
+            tail = new String(tail, other.charset).getBytes(this.charset);
+        }
+        synchronized (this) {
+            this.write(head, 0, head.length);
+            if (dropped > 0) {
+                this.skip(dropped);
+            }
+            this.write(tail, 0, tail.length);
+        }
+    }
+
+    /**
+     * Get the output kept, with a line saying how much was dropped in place
+     * of what was dropped.
+     * @return The output, decoded with the charset of this output.
+     */
+    @Override
+    public synchronized String toString() {
+        if (this.droppedBytes == 0) {
+            // Nothing is missing, so a character may span the head and the tail.
+            byte[] all = this.head();
+            if (this.tailSize > 0) {
+                all = Arrays.copyOf(all, this.headSize + this.tailSize);
+                System.arraycopy(this.tail(), 0, all, this.headSize, this.tailSize);
+            }
+            return new String(all, this.charset);
+        }
+        return new String(this.head(), this.charset)
+                + "\n[... " + this.droppedBytes + " bytes truncated ...]\n"
+                + new String(this.tail(), this.charset);
+    }
+
+    /**
+     * Write to the end of the head, taking new chunks as needed. The caller
+     * makes sure the head has room.
+     * @param b The bytes.
+     * @param off Where the bytes to write start.
+     * @param len How many bytes to write.
+     */
+    private void writeHead(byte[] b, int off, int len) {
+        int written = 0;
+        while (written < len) {
+            if (this.headChunks.isEmpty() || this.lastChunkSize == this.lastChunk().length) {
+                int size = this.headChunks.isEmpty() ? MIN_CHUNK_SIZE : this.lastChunk().length * 2;
+                size = Math.min(Math.min(size, MAX_CHUNK_SIZE), this.headCapacity - this.headSize);
+                this.headChunks.add(new byte[Math.max(size, len - written)]);
+                this.lastChunkSize = 0;
+            }
+            int n = Math.min(len - written, this.lastChunk().length - this.lastChunkSize);
+            System.arraycopy(b, off + written, this.lastChunk(), this.lastChunkSize, n);
+            this.lastChunkSize += n;
+            this.headSize += n;
+            written += n;
+        }
+    }
+
+    /**
+     * Write to the end of the tail, dropping its oldest bytes to make room.
+     * @param b The bytes.
+     * @param off Where the bytes to write start.
+     * @param len How many bytes to write.
+     */
+    private void writeTail(byte[] b, int off, int len) {
+        if (len == 0) {
+            return;
+        }
+        int start = off;
+        int length = len;
+        if (length >= this.tailCapacity) {
+            // Everything in the tail, and the start of these bytes, is pushed out.
+            this.droppedBytes += this.tailSize + length - this.tailCapacity;
+            start += length - this.tailCapacity;
+            length = this.tailCapacity;
+            this.tailStart = 0;
+            this.tailSize = 0;
+        }
+        int overflow = this.tailSize + length - this.tailCapacity;
+        if (overflow > 0) {
+            this.droppedBytes += overflow;
+            this.tailStart = (this.tailStart + overflow) % this.tailCapacity;
+            this.tailSize -= overflow;
+        }
+        int position = (this.tailStart + this.tailSize) % Math.max(this.tailCapacity, 1);
+        int written = 0;
+        while (written < length) {
+            byte[] chunk = this.tailChunk(position / MAX_CHUNK_SIZE);
+            int n = Math.min(length - written,
+                    Math.min(chunk.length - position % MAX_CHUNK_SIZE, this.tailCapacity - position));
+            System.arraycopy(b, start + written, chunk, position % MAX_CHUNK_SIZE, n);
+            written += n;
+            position = (position + n) % this.tailCapacity;
+        }
+        this.tailSize += length;
+    }
+
+    /**
+     * Count bytes as written but dropped. Nothing more goes to the head
+     * after a gap, and what was in the tail is dropped too, since it no
+     * longer ends the output.
+     * @param n The number of bytes.
+     */
+    private void skip(long n) {
+        this.headClosed = true;
+        this.droppedBytes += this.tailSize + n;
+        this.tailStart = 0;
+        this.tailSize = 0;
+    }
+
+    /**
+     * Get the chunk of the head being written to.
+     * @return The last chunk.
+     */
+    private byte[] lastChunk() {
+        return this.headChunks.get(this.headChunks.size() - 1);
+    }
+
+    /**
+     * Get a chunk of the tail, taking it if it was not needed yet.
+     * @param index The index of the chunk.
+     * @return The chunk.
+     */
+    private byte[] tailChunk(int index) {
+        if (this.tailChunks[index] == null) {
+            this.tailChunks[index] = new byte[Math.min(MAX_CHUNK_SIZE, this.tailCapacity - index * MAX_CHUNK_SIZE)];
+        }
+        return this.tailChunks[index];
+    }
+
+    /**
+     * Copy the head out.
+     * @return The bytes of the head.
+     */
+    private byte[] head() {
+        byte[] head = new byte[this.headSize];
+        int copied = 0;
+        for (byte[] chunk : this.headChunks) {
+            int n = Math.min(chunk.length, this.headSize - copied);
+            System.arraycopy(chunk, 0, head, copied, n);
+            copied += n;
+        }
+        return head;
+    }
+
+    /**
+     * Copy the tail out, oldest byte first.
+     * @return The bytes of the tail.
+     */
+    private byte[] tail() {
+        byte[] tail = new byte[this.tailSize];
+        int position = this.tailStart;
+        int copied = 0;
+        while (copied < this.tailSize) {
+            byte[] chunk = this.tailChunks[position / MAX_CHUNK_SIZE];
+            int n = Math.min(this.tailSize - copied,
+                    Math.min(chunk.length - position % MAX_CHUNK_SIZE, this.tailCapacity - position));
+            System.arraycopy(chunk, position % MAX_CHUNK_SIZE, tail, copied, n);
+            copied += n;
+            position = (position + n) % this.tailCapacity;
+        }
+        return tail;
+    }
+}
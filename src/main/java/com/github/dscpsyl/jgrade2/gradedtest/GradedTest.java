@@ -1,5 +1,7 @@
 package com.github.dscpsyl.jgrade2.gradedtest;
 
+import org.junit.jupiter.api.extension.ExtendWith;
+
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -14,9 +16,18 @@ import java.lang.annotation.Target;
  * for the question number (default ""), a double for the number of points the
  * test is worth(defaults to 1.0), and a String for the visibility of the test
  * (defaults to "visible").
+ *
+ * A test may also be given a time limit in milliseconds (default none, or
+ * the suite-wide default if one is configured). A test that runs past its
+ * limit is stopped and fails with no points, see {@link GradedTestTimeout}.
+ *
+ * A test that has not started when its suite is stopped, for example by a
+ * grader strategy that has seen enough failures, is skipped and reported as
+ * not run, see {@link GradedTestSkip}.
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Target({ElementType.METHOD})
+@ExtendWith({GradedTestTimeout.class, GradedTestSkip.class})
 public @interface GradedTest {
     /**
      * The name of the test.
@@ -41,4 +52,12 @@ public @interface GradedTest {
      * @return The visibility level of the test.
      */
     String visibility() default GradedTestResult.DEFAULT_VISIBILITY;
+
+    /**
+     * The time limit of the test in milliseconds. Zero (the default) uses
+     * the suite-wide default set with
+     * {@value GradedTestTimeout#DEFAULT_TIMEOUT_PROPERTY_NAME}, if any.
+     * @return The time limit of the test in milliseconds.
+     */
+    long timeoutMillis() default 0;
 }
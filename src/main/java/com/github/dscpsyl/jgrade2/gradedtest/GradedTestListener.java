@@ -3,6 +3,7 @@ package com.github.dscpsyl.jgrade2.gradedtest;
 import org.junit.platform.engine.TestExecutionResult;
 import org.junit.platform.engine.TestSource;
 import org.junit.platform.engine.reporting.ReportEntry;
+import org.junit.platform.engine.support.descriptor.ClassSource;
 import org.junit.platform.engine.support.descriptor.MethodSource;
 import org.junit.platform.launcher.TestExecutionListener;
 import org.junit.platform.launcher.TestIdentifier;
@@ -10,12 +11,18 @@ import org.junit.platform.launcher.TestPlan;
 
 import org.junit.platform.commons.PreconditionViolationException;
 
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
 
 
 
@@ -23,31 +30,102 @@ import java.util.Optional;
  * A class that extends a JUnit {@link TestExecutionListener} to check for unit test
  * methods annotated with the {@link GradedTest} annotation. It builds up a
  * list of {@link GradedTestResult}s, one for each method with the annotation.
- * Captures anything printed to standard out during the test run and adds it
- * to the output of the {@link GradedTestResult}.
+ * Captures anything printed to standard out or standard error during the
+ * test run and adds it to the output of the {@link GradedTestResult}, and
+ * measures what each test cost (see {@link GradedTestResult#getWallTimeNanos()}).
  * <p>
- *     Note: Not thread-safe. In order to set the score of a result it relies
- *     on the assumption that the test that just finished was the one that
- *     also most recently started (for annotated methods).
+ *     Callbacks may arrive from several threads at once when the JUnit
+ *     Platform runs tests in parallel. Each test's state is tracked by its
+ *     unique id rather than by assuming the test that just finished was the
+ *     one that most recently started, and results are returned in the order
+ *     the tests appear in the {@link TestPlan} rather than the order they
+ *     finished in. Output is routed to the test running on the thread that
+ *     wrote it (or a thread that test started) rather than by swapping
+ *     <code>System.out</code> for each test, so concurrently running tests
+ *     do not see each other's output.
+ * </p>
+ * <p>
+ *     When a run selects several test classes, each result also remembers
+ *     the suite (top-level test class) it came from, so the results can be
+ *     graded separately per suite with {@link #getGradedTestResultsBySuite()}.
+ * </p>
+ * <p>
+ *     Each result can also be handed on as soon as its test finishes (see
+ *     {@link #setOnResult(BiPredicate)}), which can stop the rest of its
+ *     suite from running. The tests skipped that way still get a result,
+ *     with no points, marked as not run.
  * </p>
  */
 public class GradedTestListener implements TestExecutionListener {
 
-    private List<GradedTestResult> gradedTestResults;
-    private int numFailedGradedTests;
-    private ByteArrayOutputStream testOutput;
-    private PrintStream originalOutStream;
+    private static final int UNPLANNED = Integer.MAX_VALUE;
+    private static final AtomicLong RUN_IDS = new AtomicLong();
+
+    /**
+     * A result along with where its test appears in the test plan, so that
+     * results can be put back in plan order.
+     */
+    private static final class OrderedResult {
+        private static final Comparator<OrderedResult> PLAN_ORDER =
+                Comparator.comparingInt((OrderedResult r) -> r.planIndex).thenComparingLong(r -> r.sequence);
+
+        private final int planIndex;
+        private final long sequence;
+        private final String suite;
+        private final GradedTestResult result;
+
+        /**
+         * Create a new OrderedResult.
+         * @param planIndex The index of the test in the test plan.
+         * @param sequence The order the result was recorded in.
+         * @param suite The name of the suite the test belongs to.
+         * @param result The result.
+         */
+        OrderedResult(int planIndex, long sequence, String suite, GradedTestResult result) {
+            this.planIndex = planIndex;
+            this.sequence = sequence;
+            this.suite = suite;
+            this.result = result;
+        }
+    }
+
+    private Queue<OrderedResult> gradedTestResults;
+    private Map<String, Integer> planOrder;
+    private Map<String, String> suites;
+    private AtomicLong sequence;
+    private Map<String, TestRun> testRuns;
+    private final int outputLimit;
+    private final String runId;
+    private volatile BiPredicate<String, GradedTestResult> onResult;
 
     /**
      * Constructor for a new listener. Initializes a list of
-     * {@link GradedTestResult}s and remembers the original
-     * <code>System.out</code> to restore it.
+     * {@link GradedTestResult}s, each keeping up to
+     * {@link BoundedOutput#DEFAULT_LIMIT} bytes of output.
      */
     public GradedTestListener() {
-        this.gradedTestResults = new ArrayList<>();
-        this.numFailedGradedTests = 0;
-        this.testOutput = new ByteArrayOutputStream();
-        this.originalOutStream = System.out;
+        this(BoundedOutput.DEFAULT_LIMIT);
+    }
+
+    /**
+     * Constructor for a new listener whose {@link GradedTestResult}s keep
+     * at most the given number of bytes of output each. A test that writes
+     * more keeps the head and tail of its output (see {@link BoundedOutput}).
+     * @param outputLimit The most bytes of output to keep for each test.
+     * @throws IllegalArgumentException If the limit is negative.
+     */
+    public GradedTestListener(int outputLimit) {
+        if (outputLimit < 0) {
+            throw new IllegalArgumentException("output limit must not be negative");
+        }
+        this.outputLimit = outputLimit;
+        this.gradedTestResults = new ConcurrentLinkedQueue<>();
+        this.planOrder = new ConcurrentHashMap<>();
+        this.suites = new ConcurrentHashMap<>();
+        this.sequence = new AtomicLong();
+        this.testRuns = new ConcurrentHashMap<>();
+        this.runId = "run-" + RUN_IDS.incrementAndGet();
+        this.onResult = null;
     }
 
     // <editor-fold "desc="accessors">
@@ -61,11 +139,30 @@ public class GradedTestListener implements TestExecutionListener {
     }
 
     /**
-     * Get the list of {@link GradedTestResult}.
-     * @return The list of {@link GradedTestResult}.
+     * Get the list of {@link GradedTestResult}, in the order the tests
+     * appear in the test plan.
+     * @return A new list of the {@link GradedTestResult}s.
      */
     public List<GradedTestResult> getGradedTestResults() {
-        return this.gradedTestResults;
+        List<GradedTestResult> results = new ArrayList<>();
+        for (OrderedResult r : this.orderedResults()) {
+            results.add(r.result);
+        }
+        return results;
+    }
+
+    /**
+     * Get the {@link GradedTestResult}s grouped by the fully qualified name
+     * of the suite (top-level test class) they belong to. Suites are in the
+     * order they appear in the test plan, as are the results of each suite.
+     * @return A new map from suite name to that suite's results.
+     */
+    public Map<String, List<GradedTestResult>> getGradedTestResultsBySuite() {
+        Map<String, List<GradedTestResult>> bySuite = new LinkedHashMap<>();
+        for (OrderedResult r : this.orderedResults()) {
+            bySuite.computeIfAbsent(r.suite, k -> new ArrayList<>()).add(r.result);
+        }
+        return bySuite;
     }
 
     /**
@@ -73,7 +170,36 @@ public class GradedTestListener implements TestExecutionListener {
      * @return The number of graded tests that failed.
      */
     public int getNumFailedGradedTests() {
-        return numFailedGradedTests;
+        int failed = 0;
+        for (OrderedResult r : this.gradedTestResults) {
+            if (!r.result.passed()) {
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Get the id that tells the runs of this listener apart from others.
+     * Pass it as the configuration parameter
+     * {@value GradedTestSkip#RUN_ID_PROPERTY_NAME} of the run for
+     * {@link #setOnResult(BiPredicate)} to be able to skip tests.
+     * @return The id.
+     */
+    public String getRunId() {
+        return this.runId;
+    }
+
+    /**
+     * Set what to call with each {@link GradedTestResult} as soon as its
+     * test finishes, along with the name of its suite. If it returns false,
+     * the graded tests of that suite that have not started yet are skipped.
+     * It may be called from several threads at once when tests run in
+     * parallel.
+     * @param onResult What to call with each result, or null for nothing.
+     */
+    public void setOnResult(BiPredicate<String, GradedTestResult> onResult) {
+        this.onResult = onResult;
     }
 
     // </editor-fold>
@@ -132,28 +258,102 @@ public class GradedTestListener implements TestExecutionListener {
         }
     }
 
+    /**
+     * Get the line that starts the output of a test that did not pass.
+     * @param t What the test threw, if anything.
+     * @return The header, marking tests that ran past their time limit.
+     */
+    private static String failureHeader(Optional<Throwable> t) {
+        if (t.isPresent() && t.get() instanceof GradedTestTimeoutException) {
+            return "TIMED OUT:: \n";
+        }
+        return "FAILED/ABORTED:: \n";
+    }
+
+    /**
+     * Create the result of a graded test, worth the points of its annotation.
+     * @param gt The annotation of the test.
+     * @return The result, with no score yet.
+     */
+    private GradedTestResult newResult(GradedTest gt) {
+        return new GradedTestResult(gt.name(), gt.number(), gt.points(), gt.visibility(), this.outputLimit);
+    }
+
+    /**
+     * Add a result in its place in the plan.
+     * @param testIdentifier The identifier of the test.
+     * @param ms The method of the test.
+     * @param result The result.
+     * @return The name of the suite of the test.
+     */
+    private String record(TestIdentifier testIdentifier, MethodSource ms, GradedTestResult result) {
+        int planIndex = this.planOrder.getOrDefault(testIdentifier.getUniqueId(), UNPLANNED);
+        String suite = this.suites.getOrDefault(testIdentifier.getUniqueId(), ms.getClassName());
+        this.gradedTestResults.add(new OrderedResult(planIndex, this.sequence.getAndIncrement(), suite, result));
+        return suite;
+    }
+
+    /**
+     * Get the results recorded so far, sorted in plan order.
+     * @return A new, sorted list of the results.
+     */
+    private List<OrderedResult> orderedResults() {
+        List<OrderedResult> ordered = new ArrayList<>(this.gradedTestResults);
+        ordered.sort(OrderedResult.PLAN_ORDER);
+        return ordered;
+    }
+
+    /**
+     * Record the position of every test in the plan, walking it depth first,
+     * so that results can be returned in plan order. Also records the suite
+     * of everything below the outermost class in each branch.
+     * @param testPlan The plan to walk.
+     * @param identifiers The identifiers at the current level of the plan.
+     * @param suite The suite of the current level, or null if above any class.
+     */
+    private void recordPlanOrder(TestPlan testPlan, Iterable<TestIdentifier> identifiers, String suite) {
+        for (TestIdentifier identifier : identifiers) {
+            this.planOrder.putIfAbsent(identifier.getUniqueId(), this.planOrder.size());
+            String s = suite;
+            Optional<TestSource> source = identifier.getSource();
+            if (s == null && source.isPresent() && source.get() instanceof ClassSource) {
+                s = ((ClassSource) source.get()).getClassName();
+            }
+            if (s != null) {
+                this.suites.put(identifier.getUniqueId(), s);
+            }
+            this.recordPlanOrder(testPlan, testPlan.getChildren(identifier), s);
+        }
+    }
+
     // </editor-fold>
 
     /**
      * Called when the execution of the {@link TestPlan} has started,
-     * <em>before</em> any test has been executed. Currently empty and
-     * does not have any use.
+     * <em>before</em> any test has been executed. Records the order of
+     * the tests in the plan and starts routing <code>System.out</code> and
+     * <code>System.err</code> to the tests that write to them.
      *
      * @param testPlan describes the tree of tests about to be executed
      */
     @Override
     public void testPlanExecutionStarted(TestPlan testPlan) {
+        this.recordPlanOrder(testPlan, testPlan.getRoots(), null);
+        GradedTestSkip.register(this.runId);
+        OutputCapture.install();
     }
 
     /**
      * Called when the execution of the {@link TestPlan} has finished,
-     * <em>after</em> all tests have been executed.Currently empty and
-     * does not have any use.
+     * <em>after</em> all tests have been executed. Stops routing
+     * <code>System.out</code> and <code>System.err</code>.
      *
      * @param testPlan describes the tree of tests that have been executed
      */
     @Override
     public void testPlanExecutionFinished(TestPlan testPlan) {
+        GradedTestSkip.unregister(this.runId);
+        OutputCapture.uninstall();
     }
 
     /**
@@ -168,7 +368,7 @@ public class GradedTestListener implements TestExecutionListener {
      * Tests should be created and registered before the test plan is
      * executed. However, even if it is registered dynamically, there is no
      * problem as the {@link GradedTestResult} will be created when the test
-     * is finished.
+     * is finished, in the same suite as its parent.
      *
      *
      * @param testIdentifier the identifier of the newly registered test
@@ -177,6 +377,10 @@ public class GradedTestListener implements TestExecutionListener {
     @Override
     public void dynamicTestRegistered(TestIdentifier testIdentifier) {
         System.out.println("WARNING:: dynamicTestRegistered");
+        Optional<String> parent = testIdentifier.getParentId();
+        if (parent.isPresent() && this.suites.containsKey(parent.get())) {
+            this.suites.put(testIdentifier.getUniqueId(), this.suites.get(parent.get()));
+        }
     }
 
     /**
@@ -195,7 +399,10 @@ public class GradedTestListener implements TestExecutionListener {
      *
      * <p>
      * This will log out the warning and reason for skipping the test. It will be
-     * up to the user to determine if this is a problem or not.
+     * up to the user to determine if this is a problem or not. A graded test
+     * skipped because its suite was stopped (see {@link GradedTestSkip})
+     * is expected instead, and gets a failed result with no points and its
+     * output marked as not run.
      *
      * @param testIdentifier the identifier of the skipped test or container
      * @param reason         a human-readable message describing why the execution
@@ -203,8 +410,19 @@ public class GradedTestListener implements TestExecutionListener {
      */
     @Override
     public void executionSkipped(TestIdentifier testIdentifier, String reason) {
-        System.out.println("WARNING:: executionSkipped - " + reason);
-
+        if (!GradedTestSkip.skippedBy(reason)) {
+            System.out.println("WARNING:: executionSkipped - " + reason);
+            return;
+        }
+        Optional<MethodSource> ms = getTestMethodSource(testIdentifier);
+        Optional<GradedTest> gt = ms.flatMap(this::getGradedTestAnnotation);
+        if (gt.isPresent()) {
+            GradedTestResult result = this.newResult(gt.get());
+            result.setScore(0);
+            result.addOutput("NOT RUN:: \n" + reason);
+            result.setPassed(false);
+            this.record(testIdentifier, ms.get(), result);
+        }
     }
 
     /**
@@ -224,16 +442,22 @@ public class GradedTestListener implements TestExecutionListener {
      * {@linkplain #executionSkipped skipping} any of its children.
      *
      * <p>
-     * For backwards compatability, this function sets the {@link testOutput} for
-     * the class.
+     * For a test, this starts capturing everything the current thread (and
+     * any thread it starts) writes to <code>System.out</code> and
+     * <code>System.err</code> into a new buffer for the test's output (up to
+     * the output limit of the listener), and
+     * starts measuring its wall-clock time, CPU time and allocated bytes.
+     * The JUnit Platform runs a test on the thread it reports it started on.
      *
      *
      * @param testIdentifier the identifier of the started test or container
      */
     @Override
     public void executionStarted(TestIdentifier testIdentifier) {
-        this.testOutput = new ByteArrayOutputStream();
-        System.setOut(new PrintStream(this.testOutput));
+        if (!testIdentifier.isTest()) {
+            return;
+        }
+        this.testRuns.put(testIdentifier.getUniqueId(), TestRun.start(this.outputLimit));
     }
 
     /**
@@ -263,7 +487,9 @@ public class GradedTestListener implements TestExecutionListener {
      * <p> Compared to the origional jGrade, this is a combination of <code>testFinished</code>
      * <code>testStarted</code>, and <code>testFailure</code>. It will create the
      * new {@link GradedTestResult} and add it to the list of results after the test
-     * has finished. It will also set the correct score for the test.
+     * has finished. It will also set the correct score for the test, and
+     * record its wall-clock time, CPU time and allocated bytes, and hand the
+     * result to the callback set with {@link #setOnResult(BiPredicate)}.
      *
      * @param testIdentifier      the identifier of the finished test or container
      * @param testExecutionResult the (unaggregated) result of the execution for
@@ -271,6 +497,10 @@ public class GradedTestListener implements TestExecutionListener {
      */
     @Override
     public void executionFinished(TestIdentifier testIdentifier, TestExecutionResult testExecutionResult) {
+        TestRun run = this.testRuns.remove(testIdentifier.getUniqueId());
+        if (run != null) {
+            run.end();
+        }
 
         // Create the current graded test result
         Optional<MethodSource> ms = getTestMethodSource(testIdentifier);
@@ -284,32 +514,31 @@ public class GradedTestListener implements TestExecutionListener {
         }
 
         GradedTest gt = gradedTestAnnotations.get();
-        GradedTestResult currentGradedTestResult = new GradedTestResult(
-            gt.name(),
-            gt.number(),
-            gt.points(),
-            gt.visibility()
-        );
+        GradedTestResult currentGradedTestResult = this.newResult(gt);
 
         // Check the status of the test and set the score
         if (testExecutionResult.getStatus() == TestExecutionResult.Status.SUCCESSFUL) { // All passed, full points
             currentGradedTestResult.setScore(gt.points());
         } else { // Failed or aborted, no points
             currentGradedTestResult.setScore(0);
-            currentGradedTestResult.addOutput("FAILED/ABORTED:: \n");
             Optional<Throwable> t = testExecutionResult.getThrowable();
+            currentGradedTestResult.addOutput(failureHeader(t));
             if (t.isPresent()) {
                 currentGradedTestResult.addOutput(t.get().toString());
             }
-            this.numFailedGradedTests++;
             currentGradedTestResult.setPassed(false);
         }
 
-        // Add any output and add to the list of results for this listener
-        currentGradedTestResult.addOutput(this.testOutput.toString());
-        this.gradedTestResults.add(currentGradedTestResult);
-
-        System.setOut(originalOutStream);
+        // Add any output and what the test cost, and add to the list of results for this listener
+        if (run != null) {
+            run.recordOutput(currentGradedTestResult);
+            run.recordMetrics(currentGradedTestResult);
+        }
+        String suite = this.record(testIdentifier, ms.get(), currentGradedTestResult);
+        BiPredicate<String, GradedTestResult> callback = this.onResult;
+        if (callback != null && !callback.test(suite, currentGradedTestResult)) {
+            GradedTestSkip.stop(this.runId, suite);
+        }
     }
 
     /**
@@ -25,6 +25,9 @@ public class GradedTestResult {
 
     // </editor-fold>
 
+    /** The value of a metric that was not measured. */
+    public static final long NOT_MEASURED = -1;
+
     // GradedTest annotation defaults
     static final String DEFAULT_NAME = "Unnamed Test";
     static final String DEFAULT_NUMBER = "";
@@ -37,9 +40,13 @@ public class GradedTestResult {
     private String visibility;
 
     private double score;
-    private StringBuilder output;
+    private BoundedOutput output;
     private boolean passed;
 
+    private long wallTimeNanos;
+    private long cpuTimeNanos;
+    private long allocatedBytes;
+
     /**
      * Create a new GradedTestResult, setting the initial score to 0.
      * @param name The name/description of the test.
@@ -52,6 +59,24 @@ public class GradedTestResult {
      */
     public GradedTestResult(String name, String number, double points, String visibility)
             throws IllegalArgumentException {
+        this(name, number, points, visibility, BoundedOutput.DEFAULT_LIMIT);
+    }
+
+    /**
+     * Create a new GradedTestResult, setting the initial score to 0, that
+     * keeps at most the given number of bytes of output. Past the limit,
+     * the head and tail of the output are kept and the middle is dropped
+     * (see {@link BoundedOutput}).
+     * @param name The name/description of the test.
+     * @param number The identifier for the question number.
+     * @param points The number of points the test is worth.
+     * @param visibility The visibility setting of the test.
+     * @param outputLimit The most bytes of output to keep.
+     * @throws IllegalArgumentException If the visibility is not valid or the
+     *                                  limit is negative.
+     */
+    public GradedTestResult(String name, String number, double points, String visibility, int outputLimit)
+            throws IllegalArgumentException {
         this.name = name;
         this.number = number;
         this.points = points;
@@ -64,8 +89,11 @@ public class GradedTestResult {
 
         this.visibility = visibility;
         this.score = 0;
-        this.output = new StringBuilder();
+        this.output = new BoundedOutput(outputLimit);
         this.passed = true;
+        this.wallTimeNanos = NOT_MEASURED;
+        this.cpuTimeNanos = NOT_MEASURED;
+        this.allocatedBytes = NOT_MEASURED;
     }
 
     // <editor-fold "desc="accessors">
@@ -78,6 +106,15 @@ public class GradedTestResult {
         this.output.append(s);
     }
 
+    /**
+     * Add everything another output kept to the test result, counting what
+     * it dropped as dropped here.
+     * @param o The output to append.
+     */
+    void addOutput(BoundedOutput o) {
+        this.output.append(o);
+    }
+
     /**
      * Set the score for the test.
      * @param score The score to set.
@@ -106,6 +143,20 @@ public class GradedTestResult {
         this.passed = passed;
     }
 
+    /**
+     * Set what running the test cost. Any metric that could not be measured
+     * is {@link #NOT_MEASURED}.
+     * @param wallTimeNanos The wall-clock time the test ran for, in nanoseconds.
+     * @param cpuTimeNanos The CPU time of the thread running the test, in
+     *                     nanoseconds.
+     * @param allocatedBytes The bytes allocated by the thread running the test.
+     */
+    public void setMetrics(long wallTimeNanos, long cpuTimeNanos, long allocatedBytes) {
+        this.wallTimeNanos = wallTimeNanos;
+        this.cpuTimeNanos = cpuTimeNanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
     /**
      * Get the name of the test.
      * @return The name of the test.
@@ -147,13 +198,64 @@ public class GradedTestResult {
     }
 
     /**
-     * Get the output of the test.
+     * Get the output of the test. If output was dropped, a line saying how
+     * many bytes were dropped stands in their place.
      * @return The output of the test.
      */
     public String getOutput() {
         return this.output.toString();
     }
 
+    /**
+     * Get the most bytes of output the result keeps.
+     * @return The limit.
+     */
+    public int getOutputLimit() {
+        return this.output.getLimit();
+    }
+
+    /**
+     * Get the number of bytes of output that were dropped because they were
+     * past the limit.
+     * @return The number of bytes, or 0 if nothing was dropped.
+     */
+    public long getDroppedOutputBytes() {
+        return this.output.getDroppedBytes();
+    }
+
+
+    /**
+     * Get the wall-clock time the test ran for.
+     * @return The time in nanoseconds, or {@link #NOT_MEASURED}.
+     */
+    public long getWallTimeNanos() {
+        return this.wallTimeNanos;
+    }
+
+    /**
+     * Get the CPU time used by the thread running the test.
+     * @return The time in nanoseconds, or {@link #NOT_MEASURED}.
+     */
+    public long getCpuTimeNanos() {
+        return this.cpuTimeNanos;
+    }
+
+    /**
+     * Get the number of bytes allocated by the thread running the test.
+     * @return The number of bytes, or {@link #NOT_MEASURED}.
+     */
+    public long getAllocatedBytes() {
+        return this.allocatedBytes;
+    }
+
+    /**
+     * Has any metric of what running the test cost.
+     * @return True if at least one metric was measured.
+     */
+    public boolean hasMetrics() {
+        return this.wallTimeNanos != NOT_MEASURED || this.cpuTimeNanos != NOT_MEASURED
+                || this.allocatedBytes != NOT_MEASURED;
+    }
 
     /**
      * Determine if the test for this result was considered to have passed
@@ -0,0 +1,109 @@
+package com.github.dscpsyl.jgrade2.gradedtest;
+
+import org.junit.jupiter.api.extension.ConditionEvaluationResult;
+import org.junit.jupiter.api.extension.ExecutionCondition;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * A JUnit Jupiter extension that skips the graded tests of a suite that have
+ * not started yet once a {@link GradedTestListener} has been told to stop
+ * that suite (see {@link GradedTestListener#setOnResult}). It is registered
+ * by the {@link GradedTest} annotation itself, like
+ * {@link GradedTestTimeout}.
+ * <p>
+ *     A run is told apart from others running at the same time, in other
+ *     graders or other workers of a batch, by the configuration parameter
+ *     {@value #RUN_ID_PROPERTY_NAME}, which holds the id of the run's
+ *     listener. Tests run without it are never skipped. Tests already
+ *     running when their suite is stopped run to the end.
+ * </p>
+ */
+public final class GradedTestSkip implements ExecutionCondition {
+
+    /**
+     * The configuration parameter holding the id of the listener of a run,
+     * see {@link GradedTestListener#getRunId()}.
+     */
+    public static final String RUN_ID_PROPERTY_NAME = "jgrade2.gradedtest.run.id";
+
+    /** The start of the reason given for every test skipped. */
+    static final String REASON = "skipped remaining tests of ";
+
+    /** The stopped suites of each run that is executing. */
+    private static final Map<String, Set<String>> STOPPED = new ConcurrentHashMap<>();
+
+    /**
+     * Start tracking the stopped suites of a run.
+     * @param runId The id of the run.
+     */
+    static void register(String runId) {
+        STOPPED.put(runId, ConcurrentHashMap.newKeySet());
+    }
+
+    /**
+     * Stop tracking a run once it has finished executing.
+     * @param runId The id of the run.
+     */
+    static void unregister(String runId) {
+        STOPPED.remove(runId);
+    }
+
+    /**
+     * Skip the graded tests of a suite that have not started yet.
+     * Nothing happens if the run is not executing.
+     * @param runId The id of the run.
+     * @param suite The fully qualified name of the suite.
+     */
+    static void stop(String runId, String suite) {
+        Set<String> stopped = STOPPED.get(runId);
+        if (stopped != null) {
+            stopped.add(suite);
+        }
+    }
+
+    /**
+     * Whether a test was skipped by this extension.
+     * @param reason The reason JUnit reported for skipping the test.
+     * @return True if its suite was stopped.
+     */
+    static boolean skippedBy(String reason) {
+        return reason != null && reason.startsWith(REASON);
+    }
+
+    @Override
+    public ConditionEvaluationResult evaluateExecutionCondition(ExtensionContext context) {
+        Optional<String> runId = context.getConfigurationParameter(RUN_ID_PROPERTY_NAME);
+        Set<String> stopped = runId.isPresent() ? STOPPED.get(runId.get()) : null;
+        if (stopped == null || stopped.isEmpty()) {
+            return ConditionEvaluationResult.enabled("suite not stopped");
+        }
+        String suite = suiteOf(context);
+        if (suite != null && stopped.contains(suite)) {
+            return ConditionEvaluationResult.disabled(REASON + suite);
+        }
+        return ConditionEvaluationResult.enabled("suite not stopped");
+    }
+
+    /**
+     * Get the suite of a test, the outermost test class it runs in, the
+     * same way the listener does.
+     * @param context The context of the test.
+     * @return The fully qualified name of the suite, or null if the test is
+     *         not in a class.
+     */
+    private static String suiteOf(ExtensionContext context) {
+        ExtensionContext outermost = context;
+        Optional<ExtensionContext> parent = context.getParent();
+        while (parent.isPresent() && parent.get().getTestClass().isPresent()) {
+            outermost = parent.get();
+            parent = outermost.getParent();
+        }
+        return outermost.getTestClass().map(Class::getName).orElse(null);
+    }
+}
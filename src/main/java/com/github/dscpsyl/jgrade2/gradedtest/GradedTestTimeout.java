@@ -0,0 +1,113 @@
+package com.github.dscpsyl.jgrade2.gradedtest;
+
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.InvocationInterceptor;
+import org.junit.jupiter.api.extension.ReflectiveInvocationContext;
+import org.junit.jupiter.api.function.Executable;
+import org.opentest4j.AssertionFailedError;
+
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * A JUnit Jupiter extension that enforces the time limit of
+ * {@link GradedTest} methods. It is registered by the annotation itself, so
+ * every graded test gets it without further setup.
+ * <p>
+ *     A test with a limit runs on a thread of its own. If it has not
+ *     returned when its time is up, that thread is interrupted and the test
+ *     fails right away with a {@link GradedTestTimeoutException}, so the
+ *     rest of the suite does not wait for it. A test that ignores the
+ *     interrupt is abandoned, still running, on its daemon thread. The CPU
+ *     time and allocated bytes of the test are measured on its own thread,
+ *     and not at all if it is abandoned.
+ * </p>
+ * <p>
+ *     The limit is {@link GradedTest#timeoutMillis()}, or for tests that do
+ *     not set one, the configuration parameter
+ *     {@value #DEFAULT_TIMEOUT_PROPERTY_NAME} (in milliseconds) if present.
+ *     Tests with neither run as usual, on the thread JUnit runs them on.
+ * </p>
+ */
+public final class GradedTestTimeout implements InvocationInterceptor {
+
+    /**
+     * The configuration parameter holding the default time limit of graded
+     * tests, in milliseconds.
+     */
+    public static final String DEFAULT_TIMEOUT_PROPERTY_NAME = "jgrade2.gradedtest.timeout.default";
+
+    /** No time limit. */
+    private static final long NO_TIMEOUT = 0;
+
+    @Override
+    public void interceptTestMethod(Invocation<Void> invocation,
+                                    ReflectiveInvocationContext<Method> invocationContext,
+                                    ExtensionContext extensionContext) throws Throwable {
+        withTimeout(invocation, timeoutMillis(invocationContext.getExecutable(), extensionContext)).execute();
+    }
+
+    @Override
+    public void interceptTestTemplateMethod(Invocation<Void> invocation,
+                                            ReflectiveInvocationContext<Method> invocationContext,
+                                            ExtensionContext extensionContext) throws Throwable {
+        withTimeout(invocation, timeoutMillis(invocationContext.getExecutable(), extensionContext)).execute();
+    }
+
+    /**
+     * Get the time limit of a test method.
+     * @param method The test method.
+     * @param context The context the test runs in.
+     * @return The limit in milliseconds, or {@link #NO_TIMEOUT}.
+     */
+    private static long timeoutMillis(Method method, ExtensionContext context) {
+        GradedTest gradedTest = method.getAnnotation(GradedTest.class);
+        if (gradedTest != null && gradedTest.timeoutMillis() > 0) {
+            return gradedTest.timeoutMillis();
+        }
+        return context.getConfigurationParameter(DEFAULT_TIMEOUT_PROPERTY_NAME, Long::parseLong)
+                .orElse(NO_TIMEOUT);
+    }
+
+    /**
+     * Wrap a test invocation so it fails if it runs longer than the limit.
+     * The wrapped invocation throws whatever the test threw, or a
+     * {@link GradedTestTimeoutException} if it timed out.
+     * @param invocation The invocation of the test.
+     * @param timeoutMillis The limit in milliseconds, or zero or negative
+     *                      for none.
+     * @return The invocation to execute in place of the original.
+     */
+    private static Executable withTimeout(Invocation<Void> invocation, long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            return invocation::proceed;
+        }
+
+        return () -> {
+            // Failures from the test itself are told apart from the timeout by identity.
+            AtomicReference<AssertionFailedError> failed = new AtomicReference<>();
+            Executable work = () -> {
+                try {
+                    invocation.proceed();
+                } catch (AssertionFailedError e) {
+                    failed.set(e);
+                    throw e;
+                }
+            };
+            TestRun run = TestRun.current();
+            try {
+                assertTimeoutPreemptively(Duration.ofMillis(timeoutMillis),
+                        run == null ? work : run.measuredElsewhere(work));
+            } catch (AssertionFailedError e) {
+                if (e == failed.get()) {
+                    throw e;
+                }
+                throw new GradedTestTimeoutException(timeoutMillis, e);
+            }
+        };
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.dscpsyl.jgrade2.gradedtest;
+
+import org.opentest4j.AssertionFailedError;
+
+
+/**
+ * Thrown when a {@link GradedTest} runs longer than its time limit. The
+ * {@link GradedTestListener} reports such a test as timed out, with zero
+ * points.
+ * @see GradedTestTimeout
+ */
+public class GradedTestTimeoutException extends AssertionFailedError {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long timeoutMillis;
+
+    /**
+     * Create a new GradedTestTimeoutException.
+     * @param timeoutMillis The time limit that was exceeded, in milliseconds.
+     * @param cause The failure reported by the timeout, if any.
+     */
+    public GradedTestTimeoutException(long timeoutMillis, Throwable cause) {
+        super("timed out after " + timeoutMillis + " ms", cause);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Get the time limit that was exceeded.
+     * @return The time limit, in milliseconds.
+     */
+    public long getTimeoutMillis() {
+        return this.timeoutMillis;
+    }
+}
@@ -0,0 +1,159 @@
+package com.github.dscpsyl.jgrade2.gradedtest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+
+/**
+ * Routes everything written to <code>System.out</code> and
+ * <code>System.err</code> to the output of the test running on the writing
+ * thread. While installed, both streams are replaced once by routing streams
+ * that look up the current thread's capture target, instead of being swapped
+ * for every test. A thread with no target (or whose target has ended)
+ * writes through to the original stream.
+ * <p>
+ *     The target is inherited by threads started while it is active, so
+ *     output from threads a test starts itself (for instance to enforce a
+ *     timeout) is still attributed to that test. Writing costs one
+ *     thread-local lookup on top of the original stream.
+ * </p>
+ */
+final class OutputCapture {
+
+    /**
+     * Where a thread's output is currently captured to. Once ended it no
+     * longer accepts output, so threads that inherited it but outlive the
+     * test write through to the original streams instead.
+     */
+    static final class Target {
+        private final OutputStream sink;
+        private final Target previous;
+        private volatile boolean open;
+
+        /**
+         * Create a new Target.
+         * @param sink The stream to capture output to.
+         * @param previous The target that was active on the thread before.
+         */
+        private Target(OutputStream sink, Target previous) {
+            this.sink = sink;
+            this.previous = previous;
+            this.open = true;
+        }
+    }
+
+    /**
+     * An output stream that writes to the current thread's target if there
+     * is one, or the fallback stream otherwise.
+     */
+    private static final class RoutingOutputStream extends OutputStream {
+        private final OutputStream fallback;
+
+        /**
+         * Create a new RoutingOutputStream.
+         * @param fallback The stream to write to when nothing is captured.
+         */
+        RoutingOutputStream(OutputStream fallback) {
+            this.fallback = fallback;
+        }
+
+        /**
+         * Get the stream to write to for the current thread.
+         * @return The stream.
+         */
+        private OutputStream current() {
+            Target target = CURRENT.get();
+            return target != null && target.open ? target.sink : this.fallback;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.current().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.current().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.current().flush();
+        }
+    }
+
+    private static final InheritableThreadLocal<Target> CURRENT = new InheritableThreadLocal<>();
+
+    private static int installs;
+    private static PrintStream originalOut;
+    private static PrintStream originalErr;
+    private static PrintStream routedOut;
+    private static PrintStream routedErr;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private OutputCapture() { }
+
+    /**
+     * Replace <code>System.out</code> and <code>System.err</code> with
+     * routing streams, if not already installed. Every call must be paired
+     * with a call to {@link #uninstall()}.
+     */
+    static synchronized void install() {
+        if (installs++ > 0) {
+            return;
+        }
+        originalOut = System.out;
+        originalErr = System.err;
+        routedOut = new PrintStream(new RoutingOutputStream(originalOut), true);
+        routedErr = new PrintStream(new RoutingOutputStream(originalErr), true);
+        System.setOut(routedOut);
+        System.setErr(routedErr);
+    }
+
+    /**
+     * Restore the original <code>System.out</code> and <code>System.err</code>
+     * once every {@link #install()} has been paired with an uninstall. A
+     * stream that was replaced by someone else in the meantime is left alone.
+     */
+    static synchronized void uninstall() {
+        if (installs == 0 || --installs > 0) {
+            return;
+        }
+        if (System.out == routedOut) {
+            System.setOut(originalOut);
+        }
+        if (System.err == routedErr) {
+            System.setErr(originalErr);
+        }
+        routedOut = null;
+        routedErr = null;
+    }
+
+    /**
+     * Start capturing the current thread's output (and that of threads it
+     * starts) to the sink.
+     * @param sink The stream to capture to. Must be safe to write to from
+     *             several threads.
+     * @return The new target, to pass to {@link #end(Target)}.
+     */
+    static Target begin(OutputStream sink) {
+        Target target = new Target(sink, CURRENT.get());
+        CURRENT.set(target);
+        return target;
+    }
+
+    /**
+     * Stop capturing to the target, going back to whatever the current
+     * thread was capturing to before it began.
+     * @param target The target returned from {@link #begin(OutputStream)}.
+     */
+    static void end(Target target) {
+        target.open = false;
+        if (CURRENT.get() == target) {
+            CURRENT.set(target.previous);
+        }
+    }
+}
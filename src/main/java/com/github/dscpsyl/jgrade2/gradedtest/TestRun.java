@@ -0,0 +1,185 @@
+package com.github.dscpsyl.jgrade2.gradedtest;
+
+import org.junit.jupiter.api.function.Executable;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+
+
+/**
+ * A single test while it runs: captures its output and measures what it
+ * costs. Wall-clock time is measured from {@link #start()} to
+ * {@link #end()}. CPU time and allocated bytes are measured for the thread
+ * that started the run, so they only cover work the test does on that
+ * thread, and are not measured if the run ends on another thread or the
+ * JVM does not support measuring them. Work moved to another thread, as a
+ * test with a time limit is, is measured on that thread instead through
+ * {@link #measuredElsewhere(Executable)}.
+ */
+final class TestRun {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final ThreadLocal<TestRun> CURRENT = new ThreadLocal<>();
+
+    private final BoundedOutput output;
+    private final OutputCapture.Target capture;
+    private final Thread thread;
+    private final long startNanos;
+    private final long startCpuNanos;
+    private final long startAllocatedBytes;
+    private long wallTimeNanos;
+    private long cpuTimeNanos;
+    private long allocatedBytes;
+    private volatile boolean movedElsewhere;
+    private volatile long elsewhereCpuNanos;
+    private volatile long elsewhereAllocatedBytes;
+
+    /**
+     * Create a new TestRun. Use {@link #start(int)}.
+     * @param outputLimit The most bytes of output to keep.
+     */
+    private TestRun(int outputLimit) {
+        // The routed streams encode with the default charset.
+        this.output = new BoundedOutput(outputLimit, Charset.defaultCharset());
+        this.capture = OutputCapture.begin(this.output);
+        this.thread = Thread.currentThread();
+        this.wallTimeNanos = GradedTestResult.NOT_MEASURED;
+        this.cpuTimeNanos = GradedTestResult.NOT_MEASURED;
+        this.allocatedBytes = GradedTestResult.NOT_MEASURED;
+        this.movedElsewhere = false;
+        this.elsewhereCpuNanos = GradedTestResult.NOT_MEASURED;
+        this.elsewhereAllocatedBytes = GradedTestResult.NOT_MEASURED;
+        this.startAllocatedBytes = currentAllocatedBytes();
+        this.startCpuNanos = currentCpuNanos();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Start a test on the current thread: capture what it (and any thread it
+     * starts) writes to <code>System.out</code> and <code>System.err</code>,
+     * and start measuring it.
+     * @param outputLimit The most bytes of output to keep.
+     * @return The running test.
+     */
+    static TestRun start(int outputLimit) {
+        TestRun run = new TestRun(outputLimit);
+        CURRENT.set(run);
+        return run;
+    }
+
+    /**
+     * Get the test started on the current thread that has not ended yet.
+     * @return The running test, or null if there is none.
+     */
+    static TestRun current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Move the measuring of CPU time and allocated bytes to the thread that
+     * will run some of the test's work, in place of the thread that started
+     * the run. From now on they are not measured unless that work returns
+     * or throws before the run ends, so a test abandoned on the other
+     * thread does not report the starting thread's idle wait instead.
+     * @param work The work of the test.
+     * @return What to run on the other thread: the work, measured.
+     */
+    Executable measuredElsewhere(Executable work) {
+        this.movedElsewhere = true;
+        return () -> {
+            long startCpu = currentCpuNanos();
+            long startAllocated = currentAllocatedBytes();
+            try {
+                work.execute();
+            } finally {
+                this.elsewhereCpuNanos = difference(currentCpuNanos(), startCpu);
+                this.elsewhereAllocatedBytes = difference(currentAllocatedBytes(), startAllocated);
+            }
+        };
+    }
+
+    /**
+     * End the test: stop capturing its output and measuring it.
+     */
+    void end() {
+        this.wallTimeNanos = System.nanoTime() - this.startNanos;
+        if (this.movedElsewhere) {
+            this.cpuTimeNanos = this.elsewhereCpuNanos;
+            this.allocatedBytes = this.elsewhereAllocatedBytes;
+        } else if (Thread.currentThread() == this.thread) {
+            this.cpuTimeNanos = difference(currentCpuNanos(), this.startCpuNanos);
+            this.allocatedBytes = difference(currentAllocatedBytes(), this.startAllocatedBytes);
+        }
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+        OutputCapture.end(this.capture);
+    }
+
+    /**
+     * Get everything the test wrote, as far as it was kept.
+     * @return The output, decoded with the platform's default charset.
+     */
+    String getOutput() {
+        return this.output.toString();
+    }
+
+    /**
+     * Add what the test wrote to its result, counting what was dropped as
+     * dropped from the result. Only complete after {@link #end()}.
+     * @param result The result of the test.
+     */
+    void recordOutput(GradedTestResult result) {
+        result.addOutput(this.output);
+    }
+
+    /**
+     * Record what the test cost on its result. Only meaningful after
+     * {@link #end()}.
+     * @param result The result of the test.
+     */
+    void recordMetrics(GradedTestResult result) {
+        result.setMetrics(this.wallTimeNanos, this.cpuTimeNanos, this.allocatedBytes);
+    }
+
+    /**
+     * Get the difference between two readings of a metric.
+     * @param end The reading at the end.
+     * @param start The reading at the start.
+     * @return The difference, or {@link GradedTestResult#NOT_MEASURED} if
+     *         either reading was not measured.
+     */
+    private static long difference(long end, long start) {
+        if (end == GradedTestResult.NOT_MEASURED || start == GradedTestResult.NOT_MEASURED) {
+            return GradedTestResult.NOT_MEASURED;
+        }
+        return end - start;
+    }
+
+    /**
+     * Get the CPU time of the current thread so far.
+     * @return The time in nanoseconds, or {@link GradedTestResult#NOT_MEASURED}.
+     */
+    private static long currentCpuNanos() {
+        if (!THREADS.isCurrentThreadCpuTimeSupported() || !THREADS.isThreadCpuTimeEnabled()) {
+            return GradedTestResult.NOT_MEASURED;
+        }
+        return THREADS.getCurrentThreadCpuTime();
+    }
+
+    /**
+     * Get the bytes allocated by the current thread so far.
+     * @return The number of bytes, or {@link GradedTestResult#NOT_MEASURED}.
+     */
+    private static long currentAllocatedBytes() {
+        if (!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+            return GradedTestResult.NOT_MEASURED;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+        if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+            return GradedTestResult.NOT_MEASURED;
+        }
+        return threads.getCurrentThreadAllocatedBytes();
+    }
+}
@@ -1,9 +1,5 @@
 package com.github.dscpsyl.jgrade2.gradescope;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import com.github.dscpsyl.jgrade2.Grader;
 import com.github.dscpsyl.jgrade2.OutputFormatter;
 import com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult;
@@ -13,12 +9,22 @@ import static com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult.AFTER_PUBLI
 import static com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult.HIDDEN;
 import static com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult.VISIBLE;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 
 /**
  * A concrete formatter for a {@link Grader} where the output it produces
- * is the JSON a Gradescope Autograder can work with.
+ * is the JSON a Gradescope Autograder can work with. The JSON is written
+ * as the results are walked rather than built up as a tree first, so
+ * {@link #format(Grader, OutputStream)} needs no more memory than the
+ * largest single value.
  */
 public class GradescopeJsonFormatter implements OutputFormatter {
 
@@ -31,18 +37,21 @@ public class GradescopeJsonFormatter implements OutputFormatter {
     private static final String NUMBER = "number";
     private static final String OUTPUT = "output";
     private static final String VISIBILITY = "visibility";
+    private static final String EXTRA_DATA = "extra_data";
+    private static final String WALL_TIME_NANOS = "wall_time_ns";
+    private static final String CPU_TIME_NANOS = "cpu_time_ns";
+    private static final String ALLOCATED_BYTES = "allocated_bytes";
 
-    private JSONObject json;
     private int prettyPrint;
     private String visibility;
     private String stdoutVisibility;
+    private boolean includeMetrics;
 
     /**
      * Creates an instance of the formatter. By default the pretty-print
      * option is off (the integer is negative).
      */
     public GradescopeJsonFormatter() {
-        this.json = new JSONObject();
         this.prettyPrint = -1;
     }
 
@@ -91,14 +100,24 @@ public class GradescopeJsonFormatter implements OutputFormatter {
     /**
      * Sets the pretty-print for the JSON to output. The integer is how many
      * spaces to add for each indent level. A negative integer corresponds to
-     * disabling pretty-print. If non-negative, simply calls
-     * {@link JSONObject#toString(int)}
+     * disabling pretty-print, as does zero.
      * @param prettyPrint The integer for how much to indent
      */
     public void setPrettyPrint(int prettyPrint) {
         this.prettyPrint = prettyPrint;
     }
 
+    /**
+     * Sets whether to write what each test cost (its wall-clock time, CPU
+     * time and allocated bytes, as far as they were measured) as
+     * <code>extra_data</code> of the test. Off by default.
+     * @param includeMetrics True to write the metrics of each test.
+     * @see GradedTestResult#getWallTimeNanos()
+     */
+    public void setIncludeMetrics(boolean includeMetrics) {
+        this.includeMetrics = includeMetrics;
+    }
+
     // </editor-fold>
 
     /**
@@ -109,81 +128,106 @@ public class GradescopeJsonFormatter implements OutputFormatter {
      */
     @Override
     public String format(Grader grader) {
-        json = new JSONObject();
-        this.assemble(grader, json);
+        StringWriter out = new StringWriter();
         try {
-            return this.prettyPrint >= 0 ? this.json.toString(this.prettyPrint) : this.json.toString();
-        } catch (JSONException e) {
+            this.write(grader, out);
+        } catch (IOException e) {
             throw new InternalError(e);
         }
+        return out.toString();
     }
 
     /**
-     * Assembles a {@link GradedTestResult} into a JSON object.
-     * @param r The result to assemble.
-     * @return The JSON object.
-     * @throws GradescopeJsonException If the result is not valid.
+     * Writes the {@link Grader} as JSON straight to the stream, encoded as
+     * UTF-8, one result at a time. Unlike {@link #format(Grader)}, the whole
+     * document is never held in memory. The stream is flushed but not
+     * closed.
+     * @param grader The grader to format.
+     * @param out The stream to write to.
+     * @throws IOException If writing to the stream fails.
+     * @throws GradescopeJsonException If the grader is not valid.
      */
-    private JSONObject assemble(GradedTestResult r) {
-        try {
-            return new JSONObject()
-                    .put(NAME, r.getName())
-                    .put(SCORE, r.getScore())
-                    .put(MAX_SCORE, r.getPoints())
-                    .put(NUMBER, r.getNumber())
-                    .put(OUTPUT, r.getOutput())
-                    .put(VISIBILITY, r.getVisibility());
-        } catch (JSONException e) {
-            throw new InternalError(e);
-        }
+    @Override
+    public void format(Grader grader, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        this.write(grader, writer);
+        writer.flush();
     }
 
     /**
-     * Assembles a list of {@link GradedTestResult}s into a JSON array.
-     * @param l The list of results to assemble.
-     * @return The JSON array.
-     * @see #assemble(GradedTestResult)
+     * Writes a {@link GradedTestResult} as a JSON object.
+     * @param json The writer to write to.
+     * @param r The result to write.
+     * @throws IOException If writing fails.
      */
-    private JSONArray assemble(List<GradedTestResult> l) {
-        JSONArray testResults = new JSONArray();
-        for (GradedTestResult r : l) {
-            testResults.put(assemble(r));
+    private void write(JsonWriter json, GradedTestResult r) throws IOException {
+        json.beginObject()
+                .name(NAME).value(r.getName())
+                .name(SCORE).value(r.getScore())
+                .name(MAX_SCORE).value(r.getPoints())
+                .name(NUMBER).value(r.getNumber())
+                .name(OUTPUT).value(r.getOutput())
+                .name(VISIBILITY).value(r.getVisibility());
+        if (this.includeMetrics && r.hasMetrics()) {
+            json.name(EXTRA_DATA).beginObject();
+            writeMetric(json, WALL_TIME_NANOS, r.getWallTimeNanos());
+            writeMetric(json, CPU_TIME_NANOS, r.getCpuTimeNanos());
+            writeMetric(json, ALLOCATED_BYTES, r.getAllocatedBytes());
+            json.endObject();
         }
-        return testResults;
+        json.endObject();
     }
 
     /**
-     * Assembles a {@link Grader} into a JSON object.
-     * @param grader The grader to assemble.
-     * @param json The JSON object to assemble into.
+     * Writes a {@link Grader} as a JSON object. The grader is validated
+     * before anything is written.
+     * @param grader The grader to write.
+     * @param out The writer to write to.
+     * @throws IOException If writing fails.
      * @throws GradescopeJsonException If the grader is not valid.
      */
-    private void assemble(Grader grader, JSONObject json) throws GradescopeJsonException {
-        try {
-            validateGrader(grader);
-            if (grader.hasScore()) {
-                json.put(SCORE, grader.getScore());
-            }
-            if (grader.hasMaxScore()) {
-                json.put(MAX_SCORE, grader.getMaxScore());
-            }
-            if (grader.hasExecutionTime()) {
-                json.put(EXECUTION_TIME, grader.getExecutionTime());
-            }
-            if (grader.hasOutput()) {
-                json.put(OUTPUT, grader.getOutput());
-            }
-            if (this.hasVisibility()) {
-                json.put(VISIBILITY, this.visibility);
-            }
-            if (this.hasStdoutVisibility()) {
-                json.put(STDOUT_VISIBILITY, this.stdoutVisibility);
-            }
-            if (grader.hasGradedTestResults()) {
-                json.put(TESTS, this.assemble(grader.getGradedTestResults()));
+    private void write(Grader grader, Writer out) throws IOException {
+        validateGrader(grader);
+        JsonWriter json = new JsonWriter(out, this.prettyPrint).beginObject();
+        if (grader.hasScore()) {
+            json.name(SCORE).value(grader.getScore());
+        }
+        if (grader.hasMaxScore()) {
+            json.name(MAX_SCORE).value(grader.getMaxScore());
+        }
+        if (grader.hasExecutionTime()) {
+            json.name(EXECUTION_TIME).value(grader.getExecutionTime());
+        }
+        if (grader.hasOutput()) {
+            json.name(OUTPUT).value(grader.getOutput());
+        }
+        if (this.hasVisibility()) {
+            json.name(VISIBILITY).value(this.visibility);
+        }
+        if (this.hasStdoutVisibility()) {
+            json.name(STDOUT_VISIBILITY).value(this.stdoutVisibility);
+        }
+        if (grader.hasGradedTestResults()) {
+            json.name(TESTS).beginArray();
+            for (GradedTestResult r : grader.getGradedTestResults()) {
+                this.write(json, r);
             }
-        } catch (JSONException e) {
-            throw new InternalError(e);
+            json.endArray();
+        }
+        json.endObject();
+    }
+
+    /**
+     * Writes a metric of a test as a member of the current object, unless
+     * it was not measured.
+     * @param json The writer to write to.
+     * @param name The name of the metric.
+     * @param value The value of the metric.
+     * @throws IOException If writing fails.
+     */
+    private static void writeMetric(JsonWriter json, String name, long value) throws IOException {
+        if (value != GradedTestResult.NOT_MEASURED) {
+            json.name(name).value(value);
         }
     }
 
@@ -0,0 +1,267 @@
+package com.github.dscpsyl.jgrade2.gradescope;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+
+
+/**
+ * A minimal streaming JSON writer. Values are escaped and written to the
+ * underlying {@link Writer} as they are given, so nothing but the current
+ * value is held in memory. Optionally pretty-prints with the given number
+ * of spaces per indent level, in the same layout as
+ * {@link JSONObject#toString(int)}.
+ */
+final class JsonWriter {
+
+    private static final char LINE_SEPARATOR = 0x2028;
+    private static final char PARAGRAPH_SEPARATOR = 0x2029;
+
+    private final Writer out;
+    private final int indent;
+    private int depth;
+    private boolean first;
+    private boolean afterName;
+
+    /**
+     * Create a new JsonWriter.
+     * @param out The writer to write the JSON to.
+     * @param indent The number of spaces per indent level. Zero or negative
+     *               disables pretty-print.
+     */
+    JsonWriter(Writer out, int indent) {
+        this.out = out;
+        this.indent = indent;
+        this.first = true;
+    }
+
+    /**
+     * Start a JSON object.
+     * @return This writer.
+     * @throws IOException If writing fails.
+     */
+    JsonWriter beginObject() throws IOException {
+        return this.open('{');
+    }
+
+    /**
+     * End the current JSON object.
+     * @return This writer.
+     * @throws IOException If writing fails.
+     */
+    JsonWriter endObject() throws IOException {
+        return this.close('}');
+    }
+
+    /**
+     * Start a JSON array.
+     * @return This writer.
+     * @throws IOException If writing fails.
+     */
+    JsonWriter beginArray() throws IOException {
+        return this.open('[');
+    }
+
+    /**
+     * End the current JSON array.
+     * @return This writer.
+     * @throws IOException If writing fails.
+     */
+    JsonWriter endArray() throws IOException {
+        return this.close(']');
+    }
+
+    /**
+     * Write the name of the next member of the current object.
+     * @param name The name.
+     * @return This writer.
+     * @throws IOException If writing fails.
+     */
+    JsonWriter name(String name) throws IOException {
+        this.separator();
+        this.string(name);
+        this.out.write(':');
+        if (this.indent > 0) {
+            this.out.write(' ');
+        }
+        this.afterName = true;
+        return this;
+    }
+
+    /**
+     * Write a string value.
+     * @param value The value.
+     * @return This writer.
+     * @throws IOException If writing fails.
+     */
+    JsonWriter value(String value) throws IOException {
+        this.beforeValue();
+        this.string(value);
+        return this;
+    }
+
+    /**
+     * Write a number value. Whole numbers are written without a fraction.
+     * @param value The value.
+     * @return This writer.
+     * @throws IOException If writing fails.
+     * @throws InternalError If the value is not finite, which JSON cannot
+     *                       represent.
+     */
+    JsonWriter value(double value) throws IOException {
+        this.beforeValue();
+        try {
+            this.out.write(JSONObject.numberToString(value));
+        } catch (JSONException e) {
+            throw new InternalError(e);
+        }
+        return this;
+    }
+
+    /**
+     * Write a number value.
+     * @param value The value.
+     * @return This writer.
+     * @throws IOException If writing fails.
+     */
+    JsonWriter value(long value) throws IOException {
+        this.beforeValue();
+        this.out.write(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * Start an object or array.
+     * @param c The opening character.
+     * @return This writer.
+     * @throws IOException If writing fails.
+     */
+    private JsonWriter open(char c) throws IOException {
+        if (this.depth > 0) {
+            this.beforeValue();
+        }
+        this.out.write(c);
+        this.depth++;
+        this.first = true;
+        return this;
+    }
+
+    /**
+     * End an object or array.
+     * @param c The closing character.
+     * @return This writer.
+     * @throws IOException If writing fails.
+     */
+    private JsonWriter close(char c) throws IOException {
+        this.depth--;
+        if (!this.first) {
+            this.newline();
+        }
+        this.out.write(c);
+        this.first = false;
+        return this;
+    }
+
+    /**
+     * Write whatever is needed before a value: nothing after a member name,
+     * otherwise a separator from the previous element.
+     * @throws IOException If writing fails.
+     */
+    private void beforeValue() throws IOException {
+        if (this.afterName) {
+            this.afterName = false;
+        } else {
+            this.separator();
+        }
+    }
+
+    /**
+     * Separate the next element from the previous one in the current
+     * object or array.
+     * @throws IOException If writing fails.
+     */
+    private void separator() throws IOException {
+        if (!this.first) {
+            this.out.write(',');
+        }
+        this.first = false;
+        this.newline();
+    }
+
+    /**
+     * Start a new, indented line if pretty-printing.
+     * @throws IOException If writing fails.
+     */
+    private void newline() throws IOException {
+        if (this.indent <= 0) {
+            return;
+        }
+        this.out.write('\n');
+        for (int i = 0; i < this.depth * this.indent; i++) {
+            this.out.write(' ');
+        }
+    }
+
+    /**
+     * Write a quoted, escaped string. Runs of characters that need no
+     * escaping are written straight from the string without copying.
+     * @param s The string.
+     * @throws IOException If writing fails.
+     */
+    private void string(String s) throws IOException {
+        this.out.write('"');
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            String escape = escape(s.charAt(i));
+            if (escape != null) {
+                this.out.write(s, start, i - start);
+                this.out.write(escape);
+                start = i + 1;
+            }
+        }
+        this.out.write(s, start, s.length() - start);
+        this.out.write('"');
+    }
+
+    /**
+     * Get the escape sequence for a character in a JSON string.
+     * @param c The character.
+     * @return The escape sequence, or null if the character needs none.
+     */
+    private static String escape(char c) {
+        switch (c) {
+            case '"':
+                return "\\\"";
+            case '\\':
+                return "\\\\";
+            case '\b':
+                return "\\b";
+            case '\f':
+                return "\\f";
+            case '\n':
+                return "\\n";
+            case '\r':
+                return "\\r";
+            case '\t':
+                return "\\t";
+            default:
+                if (isControl(c)) {
+                    return String.format("\\u%04x", (int) c);
+                }
+                return null;
+        }
+    }
+
+    /**
+     * Check if a character must be written as a unicode escape: control
+     * characters, which JSON does not allow unescaped, and the line and
+     * paragraph separators, which JavaScript does not allow in strings.
+     * @param c The character.
+     * @return True if the character must be escaped.
+     */
+    private static boolean isControl(char c) {
+        return c < ' ' || c == LINE_SEPARATOR || c == PARAGRAPH_SEPARATOR;
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.dscpsyl.jgrade2;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult;
+
+import org.junit.jupiter.api.BeforeEach;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+public class BatchGraderTest {
+
+    @TempDir
+    Path batchDir;
+
+    @TempDir
+    Path outputDir;
+
+    @BeforeEach
+    public void initSubmissions() throws IOException {
+        Files.createDirectory(batchDir.resolve("alice"));
+        Files.createDirectory(batchDir.resolve("bob"));
+        Files.createFile(batchDir.resolve("notes.txt"));
+    }
+
+    private static JSONObject readResult(Path file) throws IOException, JSONException {
+        return new JSONObject(new String(Files.readAllBytes(file)));
+    }
+
+    @Test
+    public void rejectsNonPositiveWorkers() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            new BatchGrader(ExampleGrading.class.getName(), batchDir, outputDir, 0);
+        });
+    }
+
+    @Test
+    public void onlyFindsDirectories() throws IOException {
+        BatchGrader unit = new BatchGrader(ExampleGrading.class.getName(), batchDir, outputDir, 1);
+        assertEquals(2, unit.findSubmissions().size());
+    }
+
+    @Test
+    public void writesOneResultPerSubmission() throws IOException, JSONException {
+        BatchGrader unit = new BatchGrader(ExampleGrading.class.getName(), batchDir, outputDir, 2);
+        assertEquals(0, unit.run());
+        for (Path submission : unit.findSubmissions()) {
+            JSONObject json = readResult(unit.resultFile(submission));
+            assertEquals("Batch Test", json.getJSONArray("tests").getJSONObject(0).get("name"));
+        }
+    }
+
+    @Test
+    public void writesZeroScoreForFailedSubmission() throws IOException, JSONException {
+        BatchGrader unit = new BatchGrader("thisClassDoesNotExist", batchDir, outputDir, 1);
+        assertEquals(2, unit.run());
+        JSONObject json = readResult(outputDir.resolve("alice.json"));
+        assertEquals(0.0, json.getDouble("score"), 0.0);
+        assertTrue(json.getString("output").contains("thisClassDoesNotExist"));
+    }
+
+    @Test
+    public void noOutputWritesNothing() throws IOException {
+        BatchGrader unit = new BatchGrader(ExampleGrading.class.getName(), batchDir, null, 1);
+        assertEquals(0, unit.run());
+        assertFalse(Files.exists(batchDir.resolve("alice.json")));
+    }
+
+    @Test
+    public void cachedResultsAreReused(@TempDir Path cacheDir) throws IOException {
+        ResultCache cache = new ResultCache(cacheDir, ResultCache.DEFAULT_MAX_BYTES);
+        BatchGrader unit = new BatchGrader(ExampleGrading.class.getName(), batchDir, outputDir, 1);
+        unit.setCache(cache);
+        assertEquals(0, unit.run());
+        String alice = Files.readString(outputDir.resolve("alice.json"));
+        Files.delete(outputDir.resolve("alice.json"));
+        assertEquals(0, unit.run());
+        assertEquals(alice, Files.readString(outputDir.resolve("alice.json")));
+        assertEquals(1, cache.getMisses());
+        assertEquals(3, cache.getHits());
+    }
+
+    @Test
+    public void failedSubmissionsAreNotCached(@TempDir Path cacheDir) throws IOException {
+        ResultCache cache = new ResultCache(cacheDir, ResultCache.DEFAULT_MAX_BYTES);
+        BatchGrader unit = new BatchGrader("thisClassDoesNotExist", batchDir, outputDir, 1);
+        unit.setCache(cache);
+        assertEquals(2, unit.run());
+        assertEquals(2, cache.getMisses());
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void compilesSources() throws IOException, JSONException {
+        Files.createDirectories(batchDir.resolve("alice/student"));
+        Files.writeString(batchDir.resolve("alice/student/Answer.java"), "package student;\npublic class Answer { }\n");
+        Files.writeString(batchDir.resolve("bob/Answer.java"), "public class Answer { int x = }\n");
+        BatchGrader unit = new BatchGrader(ExampleGrading.class.getName(), batchDir, outputDir, 2);
+        unit.setCompileSources(true);
+        assertEquals(0, unit.run());
+        JSONObject alice = readResult(outputDir.resolve("alice.json"));
+        assertEquals(2, alice.getJSONArray("tests").length());
+        assertEquals("Compilation", alice.getJSONArray("tests").getJSONObject(0).get("name"));
+        JSONObject bob = readResult(outputDir.resolve("bob.json"));
+        assertEquals(1, bob.getJSONArray("tests").length());
+        assertTrue(bob.getJSONArray("tests").getJSONObject(0).getString("output").contains("Answer.java:1: error"));
+    }
+
+    public static class ExampleGrading {
+        @Grade
+        public void gradeSomething(Grader g) {
+            g.addGradedTestResult(new GradedTestResult("Batch Test", "1", 5.0, GradedTestResult.VISIBLE));
+        }
+    }
+}
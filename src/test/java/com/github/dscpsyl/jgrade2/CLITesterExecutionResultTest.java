@@ -3,6 +3,10 @@ package com.github.dscpsyl.jgrade2;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
 
 public class CLITesterExecutionResultTest {
 
@@ -29,4 +33,35 @@ public class CLITesterExecutionResultTest {
         CLIResult unit = new CLITester.ExecutionResult("stdout", "stderr", 0);
         assertEquals("stdout", unit.getOutput());
     }
+
+    @Test
+    public void notTruncatedByDefault() {
+        CLITester.ExecutionResult unit = new CLITester.ExecutionResult("stdout", "stderr", 0);
+        assertFalse(unit.isTruncated(CLIResult.STREAM.STDOUT));
+        unit.setTruncated(CLIResult.STREAM.STDERR);
+        assertFalse(unit.isTruncated(CLIResult.STREAM.STDOUT));
+        assertTrue(unit.isTruncated(CLIResult.STREAM.STDERR));
+    }
+
+    @Test
+    public void otherResultsNotTruncated() {
+        CLIResult unit = new CLIResult() {
+            public String getOutput(STREAM stream) { return ""; }
+            public String getOutput() { return ""; }
+            public List<String> getOutputByLine(STREAM stream) { return null; }
+            public int exitValue() { return 0; }
+        };
+        assertFalse(unit.isTruncated(CLIResult.STREAM.STDOUT));
+        assertFalse(unit.timedOut());
+        assertEquals(-1, unit.elapsedMillis());
+    }
+
+    @Test
+    public void recordsTiming() {
+        CLITester.ExecutionResult unit = new CLITester.ExecutionResult("stdout", "stderr", 0);
+        assertEquals(-1, unit.elapsedMillis());
+        unit.setTiming(true, 42);
+        assertTrue(unit.timedOut());
+        assertEquals(42, unit.elapsedMillis());
+    }
 }
@@ -0,0 +1,120 @@
+package com.github.dscpsyl.jgrade2;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+
+public class CLITesterTest extends CLITester {
+
+    private static final String JAVA = ProcessHandle.current().info().command().orElse("java");
+
+    /*
+     * A program that writes its first argument's worth of bytes to stdout and stderr, then echoes stdin.
+     * With "hang", it instead starts a copy of itself that hangs too, prints the copy's pid and hangs.
+     */
+    public static class Chatter {
+        public static void main(String[] args) throws IOException, InterruptedException {
+            if (args[0].equals("hang")) {
+                if (args.length == 1) {
+                    Process child = new ProcessBuilder(JAVA, "-cp", System.getProperty("java.class.path"),
+                            Chatter.class.getName(), "hang", "child").start();
+                    System.out.println(child.pid());
+                    System.out.flush();
+                }
+                Thread.sleep(Long.MAX_VALUE);
+            }
+            int n = Integer.parseInt(args[0]);
+            for (int i = 0; i < n; i++) {
+                System.out.write('o');
+                System.err.write('e');
+            }
+            System.out.flush();
+            System.err.flush();
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+            String line = in.readLine();
+            while (line != null) {
+                System.out.println(line);
+                line = in.readLine();
+            }
+            System.exit(3);
+        }
+    }
+
+    @Override
+    protected List<String> getInvocation() {
+        return new ArrayList<>(Arrays.asList(JAVA, "-cp", System.getProperty("java.class.path"),
+                Chatter.class.getName()));
+    }
+
+    @Test
+    public void drainsOutputLargerThanPipeBuffer() {
+        addCommandLineArg("1000000");
+        CLIResult result = runCommand();
+        assertEquals(1_000_000, result.getOutput(CLIResult.STREAM.STDOUT).length());
+        assertEquals(1_000_000, result.getOutput(CLIResult.STREAM.STDERR).length());
+        assertFalse(result.isTruncated(CLIResult.STREAM.STDOUT));
+        assertEquals(3, result.exitValue());
+    }
+
+    @Test
+    public void truncatesAtOutputLimit() {
+        addCommandLineArg("100000");
+        setOutputLimit(1000);
+        CLIResult result = runCommand();
+        assertEquals(1000, result.getOutput(CLIResult.STREAM.STDOUT).length());
+        assertTrue(result.isTruncated(CLIResult.STREAM.STDOUT));
+        assertTrue(result.isTruncated(CLIResult.STREAM.STDERR));
+    }
+
+    @Test
+    public void feedsInput() {
+        addCommandLineArg("0");
+        CLIResult result = runCommand("a\nb\n");
+        assertEquals(Arrays.asList("a", "b"), result.getOutputByLine(CLIResult.STREAM.STDOUT));
+    }
+
+    @Test
+    public void reportsElapsedTime() {
+        addCommandLineArg("0");
+        CLIResult result = runCommand();
+        assertFalse(result.timedOut());
+        assertTrue(result.elapsedMillis() >= 0);
+    }
+
+    @Test
+    public void killsProcessTreeOnTimeout() throws Exception {
+        addCommandLineArg("hang");
+        setTimeoutMillis(60_000);
+        CLIResult result = runCommand(null, 3000);
+        assertTrue(result.timedOut());
+        assertTrue(result.elapsedMillis() >= 3000, "elapsed " + result.elapsedMillis());
+        assertTrue(result.elapsedMillis() < 30_000, "elapsed " + result.elapsedMillis());
+
+        long childPid = Long.parseLong(result.getOutput().trim());
+        Optional<ProcessHandle> child = ProcessHandle.of(childPid);
+        if (child.isPresent()) {
+            child.get().onExit().get(10, TimeUnit.SECONDS);
+            assertFalse(child.get().isAlive());
+        }
+    }
+
+    @Test
+    public void rejectsNegativeTimeout() {
+        assertThrows(IllegalArgumentException.class, () -> setTimeoutMillis(-1));
+    }
+
+    @Test
+    public void rejectsNegativeOutputLimit() {
+        assertThrows(IllegalArgumentException.class, () -> setOutputLimit(-1));
+    }
+}
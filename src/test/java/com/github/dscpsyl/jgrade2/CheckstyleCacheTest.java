@@ -0,0 +1,96 @@
+package com.github.dscpsyl.jgrade2;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+
+public class CheckstyleCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private Path jar;
+    private Path config;
+    private Path source;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        this.jar = Files.writeString(this.dir.resolve("checkstyle.jar"), "jar");
+        this.config = Files.writeString(this.dir.resolve("checks.xml"), "<module name=\"Checker\"/>");
+        this.source = Files.writeString(this.dir.resolve("Answer.java"), "class Answer { }");
+    }
+
+    private CheckstyleCache newCache() throws IOException {
+        return new CheckstyleCache(this.dir.resolve("cache"), this.jar.toString(), this.config.toString());
+    }
+
+    @Test
+    public void storesViolations() throws IOException {
+        CheckstyleCache unit = newCache();
+        String key = unit.key(this.source, "Answer.java");
+        assertNull(unit.get(key));
+        unit.put(key, List.of(new CheckstyleGrader.Violation("1", null, "message", "com.example.Check"),
+                new CheckstyleGrader.Violation(null, "2", null, null)));
+        List<CheckstyleGrader.Violation> stored = newCache().get(key);
+        assertEquals(2, stored.size());
+        assertEquals("1", stored.get(0).getLine());
+        assertNull(stored.get(0).getColumn());
+        assertEquals("message", stored.get(0).getMessage());
+        assertEquals("com.example.Check", stored.get(0).getSource());
+        assertEquals("2", stored.get(1).getColumn());
+        assertEquals(1, unit.getMisses());
+        assertEquals(0, unit.getHits());
+    }
+
+    @Test
+    public void storesFilesWithoutViolations() throws IOException {
+        CheckstyleCache unit = newCache();
+        String key = unit.key(this.source, "Answer.java");
+        unit.put(key, List.of());
+        assertEquals(List.of(), unit.get(key));
+        assertEquals(1, unit.getHits());
+    }
+
+    @Test
+    public void keyChangesWithFile() throws IOException {
+        CheckstyleCache unit = newCache();
+        String key = unit.key(this.source, "Answer.java");
+        assertEquals(key, newCache().key(this.source, "Answer.java"));
+        assertNotEquals(key, unit.key(this.source, "student/Answer.java"));
+        Files.writeString(this.source, "class Answer { int x; }");
+        assertNotEquals(key, unit.key(this.source, "Answer.java"));
+    }
+
+    @Test
+    public void keyChangesWithSetup() throws IOException {
+        String key = newCache().key(this.source, "Answer.java");
+        Files.writeString(this.config, "<module name=\"Checker\"><module name=\"TreeWalker\"/></module>");
+        String changedConfig = newCache().key(this.source, "Answer.java");
+        assertNotEquals(key, changedConfig);
+        Files.writeString(this.jar, "newer jar");
+        assertNotEquals(changedConfig, newCache().key(this.source, "Answer.java"));
+        String withoutConfig = new CheckstyleCache(this.dir.resolve("cache"), this.jar + File.pathSeparator
+                + this.dir.resolve("missing.jar"), null).key(this.source, "Answer.java");
+        assertNotEquals(key, withoutConfig);
+    }
+
+    @Test
+    public void cachesOnlySingleFileChecks() throws IOException {
+        assertTrue(CheckstyleCache.canCache(this.config.toString()));
+        Files.writeString(this.config, "<module name=\"Checker\">\n  <module name = \"JavadocPackage\"/>\n</module>");
+        assertFalse(CheckstyleCache.canCache(this.config.toString()));
+        Files.writeString(this.config, "<module name=\"com.puppycrawl.tools.checkstyle.checks.TranslationCheck\"/>");
+        assertFalse(CheckstyleCache.canCache(this.config.toString()));
+        assertFalse(CheckstyleCache.canCache(null));
+        assertFalse(CheckstyleCache.canCache("/sun_checks.xml"));
+    }
+}
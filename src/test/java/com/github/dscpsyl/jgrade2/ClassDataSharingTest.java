@@ -0,0 +1,91 @@
+package com.github.dscpsyl.jgrade2;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+public class ClassDataSharingTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * The JVM only records archives for classpaths of jars, so the class
+     * directories of this build are packed into one.
+     */
+    static String jarClasspath(Path dir) throws IOException, URISyntaxException {
+        Path jar = dir.resolve("jgrade2.jar");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            for (Class<?> c : List.of(JGrade2.class, ClassDataSharingTest.class)) {
+                Path root = Paths.get(c.getProtectionDomain().getCodeSource().getLocation().toURI());
+                List<Path> files;
+                try (Stream<Path> walk = Files.walk(root)) {
+                    files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                }
+                for (Path file : files) {
+                    out.putNextEntry(new JarEntry(root.relativize(file).toString().replace(File.separatorChar, '/')));
+                    Files.copy(file, (OutputStream) out);
+                    out.closeEntry();
+                }
+            }
+        }
+        List<String> classpath = new ArrayList<>();
+        classpath.add(jar.toString());
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (entry.endsWith(".jar")) {
+                classpath.add(entry);
+            }
+        }
+        return String.join(File.pathSeparator, classpath);
+    }
+
+    @Test
+    public void trainingCommandRecordsArchive() {
+        List<String> command = ClassDataSharing.trainingCommand(dir.resolve("app.jsa"), "app.jar",
+                List.of("-c", "Grading"));
+        assertTrue(command.contains("-XX:ArchiveClassesAtExit=" + dir.resolve("app.jsa").toAbsolutePath()));
+        assertTrue(command.contains("app.jar"));
+        assertTrue(command.contains(JGrade2.class.getName()));
+        assertEquals(List.of("-c", "Grading"), command.subList(command.size() - 2, command.size()));
+    }
+
+    @Test
+    public void recordsArchive() throws IOException, URISyntaxException {
+        Path archive = dir.resolve("app.jsa");
+        ClassDataSharing.dump(archive, jarClasspath(dir),
+                List.of("-c", ExampleGrading.class.getName(), "--no-output"));
+        assertTrue(Files.size(archive) > 0);
+    }
+
+    @Test
+    public void failedTrainingRun() throws IOException, URISyntaxException {
+        // Same classpath as recordsArchive, so only the missing class can fail the run.
+        String classpath = jarClasspath(dir);
+        IOException e = assertThrows(IOException.class, () -> ClassDataSharing.dump(dir.resolve("app.jsa"),
+                classpath, List.of("-c", "thisClassDoesNotExist", "--no-output")));
+        assertTrue(e.getMessage().contains("exited with code"));
+    }
+
+    public static class ExampleGrading {
+        @Grade
+        public void gradeSomething(Grader g) {
+            g.setScore(1.0);
+        }
+    }
+}
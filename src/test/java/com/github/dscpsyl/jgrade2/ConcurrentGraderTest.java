@@ -0,0 +1,150 @@
+package com.github.dscpsyl.jgrade2;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult;
+import com.github.dscpsyl.jgrade2.gradedtest.GradedTestListenerTest.BasicGradedTests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+
+public class ConcurrentGraderTest {
+
+    private static final int THREADS = 8;
+    private static final int PER_THREAD = 500;
+
+    private ConcurrentGrader unit;
+
+    @BeforeEach
+    public void initUnit() {
+        unit = new ConcurrentGrader();
+    }
+
+    private void runOnThreads(Runnable work) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                work.run();
+            });
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+    }
+
+    @Test
+    public void newGraderHasNothing() {
+        assertFalse(unit.hasOutput());
+        assertFalse(unit.hasGradedTestResults());
+        assertFalse(unit.hasScore());
+        assertFalse(unit.hasExecutionTime());
+        assertFalse(unit.hasMaxScore());
+    }
+
+    @Test
+    public void canSetAndAccessBasicMembers() {
+        unit.setMaxScore(25.0);
+        assertEquals(25.0, unit.getMaxScore(), 0.0);
+        unit.setScore(20.0);
+        assertEquals(20.0, unit.getScore(), 0.0);
+        unit.setExecutionTime(5000);
+        assertEquals(5000, unit.getExecutionTime());
+        unit.addOutput("a");
+        unit.addOutput("b");
+        assertEquals("ab", unit.getOutput());
+    }
+
+    @Test
+    public void concurrentAppendsAreNotLost() throws InterruptedException {
+        runOnThreads(() -> {
+            for (int i = 0; i < PER_THREAD; i++) {
+                unit.addGradedTestResult(new GradedTestResult("", "", 1.0, GradedTestResult.VISIBLE));
+                unit.addOutput("x");
+                unit.addScore(1.0);
+                unit.addMaxScore(2.0);
+            }
+        });
+        assertEquals(THREADS * PER_THREAD, unit.getGradedTestResults().size());
+        assertEquals(THREADS * PER_THREAD, unit.getOutput().length());
+        assertEquals(THREADS * PER_THREAD, unit.getScore(), 0.0);
+        assertEquals(2.0 * THREADS * PER_THREAD, unit.getMaxScore(), 0.0);
+    }
+
+    @Test
+    public void concurrentTestRunsAreNotLost() throws InterruptedException {
+        runOnThreads(() -> unit.runJUnitGradedTests(BasicGradedTests.class));
+        assertEquals(2 * THREADS, unit.getGradedTestResults().size());
+    }
+
+    @Test
+    public void deductiveStrategyAppliedOncePerRun() throws InterruptedException {
+        unit.setGraderStrategy(new DeductiveGraderStrategy(10, "deductive"));
+        runOnThreads(() -> unit.runJUnitGradedTests(BasicGradedTests.class));
+        assertEquals(3 * THREADS, unit.getGradedTestResults().size());
+    }
+
+    @Test
+    public void snapshotIsIndependentCopy() {
+        unit.addGradedTestResult(new GradedTestResult("first", "", 1.0, GradedTestResult.VISIBLE));
+        unit.addOutput("out");
+        unit.setScore(1.0);
+        unit.setMaxScore(2.0);
+        unit.setExecutionTime(3);
+
+        Grader snapshot = unit.snapshot();
+        unit.addGradedTestResult(new GradedTestResult("second", "", 1.0, GradedTestResult.VISIBLE));
+
+        assertFalse(snapshot instanceof ConcurrentGrader);
+        assertEquals(1, snapshot.getGradedTestResults().size());
+        assertEquals("out", snapshot.getOutput());
+        assertEquals(1.0, snapshot.getScore(), 0.0);
+        assertEquals(2.0, snapshot.getMaxScore(), 0.0);
+        assertEquals(3, snapshot.getExecutionTime());
+    }
+
+    @Test
+    public void snapshotKeepsOutputLimit() {
+        unit.setOutputLimit(4);
+        unit.addOutput("ab0123456789yz");
+        Grader snapshot = unit.snapshot();
+        assertEquals(4, snapshot.getOutputLimit());
+        assertEquals(10, snapshot.getDroppedOutputBytes());
+        assertEquals(unit.getOutput(), snapshot.getOutput());
+    }
+
+    @Test
+    public void forkIsConcurrent() {
+        assertTrue(unit.fork() instanceof ConcurrentGrader);
+    }
+
+    @Test
+    public void forkStartsFromScore() {
+        unit.setScore(3.0);
+        Grader child = unit.fork();
+        assertEquals(3.0, child.getScore(), 0.0);
+        child.addScore(2.0);
+        unit.join(child);
+        assertEquals(5.0, unit.getScore(), 0.0);
+    }
+
+    @Test
+    public void canTime() throws InterruptedException {
+        unit.startTimer();
+        Thread.sleep(20);
+        unit.stopTimer();
+        assertTrue(unit.hasExecutionTime());
+    }
+}
@@ -8,9 +8,12 @@ import org.junit.jupiter.api.BeforeEach;
 
 import static com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult.HIDDEN;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Predicate;
 
 public class DeductiveGraderStrategyTest {
 
@@ -111,4 +114,47 @@ public class DeductiveGraderStrategyTest {
         assertEquals(STARTING_SCORE - FLOOR, unit.getDeductedPoints(), 0.0);
         assertEquals(STARTING_SCORE, l.get(l.size() - 1).getScore(), 0.0);
     }
+
+    @Test
+    public void keepsRunningByDefault() {
+        Predicate<GradedTestResult> suite = this.unit.startSuite();
+        assertTrue(suite.test(failedGradedTestResult(STARTING_SCORE)));
+        assertTrue(suite.test(failedGradedTestResult(STARTING_SCORE)));
+    }
+
+    @Test
+    public void skipsRemainingAtFloor() {
+        this.unit.setFloor(FLOOR);
+        this.unit.setSkipRemainingAtFloor(true);
+
+        Predicate<GradedTestResult> suite = this.unit.startSuite();
+        assertTrue(suite.test(successfulGradedTestResult(STARTING_SCORE)));
+        assertTrue(suite.test(failedGradedTestResult(STARTING_SCORE - FLOOR - 1)));
+        assertFalse(suite.test(failedGradedTestResult(1)));
+    }
+
+    @Test
+    public void suitesCountSeparately() {
+        this.unit.setSkipRemainingAtFloor(true);
+
+        Predicate<GradedTestResult> first = this.unit.startSuite();
+        Predicate<GradedTestResult> second = this.unit.startSuite();
+        assertTrue(first.test(failedGradedTestResult(STARTING_SCORE - 1)));
+        assertTrue(second.test(failedGradedTestResult(STARTING_SCORE - 1)));
+        assertFalse(first.test(failedGradedTestResult(1)));
+        assertTrue(this.unit.startSuite().test(failedGradedTestResult(1)));
+    }
+
+    @Test
+    public void floorCarriesOverBetweenRuns() {
+        this.unit.setSkipRemainingAtFloor(true);
+        List<GradedTestResult> l = new ArrayList<>();
+        l.add(failedGradedTestResult(STARTING_SCORE - 1));
+        assertTrue(this.unit.startSuite().test(l.get(0)));
+        this.unit.grade(l);
+
+        Predicate<GradedTestResult> suite = this.unit.startSuite();
+        assertTrue(suite.test(successfulGradedTestResult(2.0)));
+        assertFalse(suite.test(failedGradedTestResult(1)));
+    }
 }
@@ -6,8 +6,28 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult;
 import com.github.dscpsyl.jgrade2.gradedtest.GradedTestListenerTest.BasicGradedTests;
+import com.github.dscpsyl.jgrade2.gradedtest.GradedTestListenerTest.DefaultTimeoutGradedTests;
+import com.github.dscpsyl.jgrade2.gradedtest.GradedTestListenerTest.StoppableGradedTests;
+import com.github.dscpsyl.jgrade2.gradedtest.GradedTestListenerTest.FailingGradedTest;
+import com.github.dscpsyl.jgrade2.gradedtest.GradedTestListenerTest.RunawayOutputGradedTest;
+import com.github.dscpsyl.jgrade2.gradedtest.BoundedOutput;
 
+import org.junit.platform.launcher.LauncherSession;
+
+import com.github.dscpsyl.jgrade2.suites.FirstSuite;
+import com.github.dscpsyl.jgrade2.suites.SecondSuite;
+
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Stream;
 
 
 public class GraderTest {
@@ -105,6 +125,100 @@ public class GraderTest {
         });
     }
 
+    @Test
+    public void forkKeepsStrategy() {
+        DeductiveGraderStrategy s = new DeductiveGraderStrategy(10, "deductive");
+        unit.setGraderStrategy(s);
+        Grader child = unit.fork();
+        child.runJUnitGradedTests(BasicGradedTests.class);
+        // Deductive strategy adds the base score result
+        assertEquals(3, child.getGradedTestResults().size());
+        assertFalse(unit.hasGradedTestResults());
+    }
+
+    @Test
+    public void joinAppendsInOrder() {
+        unit.addOutput("parent ");
+        unit.addGradedTestResult(new GradedTestResult("first", "", 0.0, "visible"));
+        unit.setExecutionTime(10);
+
+        Grader child = unit.fork();
+        child.addOutput("child");
+        child.addGradedTestResult(new GradedTestResult("second", "", 0.0, "visible"));
+        child.setExecutionTime(20);
+        unit.join(child);
+
+        assertEquals("parent child", unit.getOutput());
+        assertEquals("second", unit.getGradedTestResults().get(1).getName());
+        assertEquals(30, unit.getExecutionTime());
+    }
+
+    @Test
+    public void joinAddsScoreChanges() {
+        unit.setScore(1.0);
+        unit.setMaxScore(2.0);
+        Grader first = unit.fork();
+        Grader second = unit.fork();
+        assertEquals(1.0, first.getScore(), 0.0);
+        assertEquals(2.0, first.getMaxScore(), 0.0);
+        first.addScore(10.0);
+        first.addMaxScore(10.0);
+        second.addScore(5.0);
+        second.addMaxScore(10.0);
+
+        unit.join(first);
+        unit.join(second);
+        assertEquals(16.0, unit.getScore(), 0.0);
+        assertEquals(22.0, unit.getMaxScore(), 0.0);
+    }
+
+    @Test
+    public void joinAddsScoreSetOnFork() {
+        Grader child = unit.fork();
+        child.setScore(5.0);
+        child.setMaxScore(7.0);
+        unit.join(child);
+        assertEquals(5.0, unit.getScore(), 0.0);
+        assertEquals(7.0, unit.getMaxScore(), 0.0);
+    }
+
+    @Test
+    public void joinReplacesScoreSetInFork() {
+        unit.setScore(1.0);
+        Grader first = unit.fork();
+        Grader second = unit.fork();
+        Grader third = unit.fork();
+        first.setScore(4.0);
+        first.setMaxScore(10.0);
+        second.setScore(6.0);
+        second.addScore(1.0);
+        second.setMaxScore(20.0);
+        third.addScore(2.0);
+        third.addMaxScore(5.0);
+
+        unit.join(first);
+        unit.join(second);
+        unit.join(third);
+        assertEquals(9.0, unit.getScore(), 0.0);
+        assertEquals(25.0, unit.getMaxScore(), 0.0);
+    }
+
+    @Test
+    public void joinEmptyChangesNothing() {
+        unit.join(unit.fork());
+        assertFalse(unit.hasScore());
+        assertFalse(unit.hasMaxScore());
+        assertFalse(unit.hasExecutionTime());
+    }
+
+    @Test
+    public void testsCanRunInParallel() {
+        unit.runJUnitGradedTests(BasicGradedTests.class, JUnitParallelism.fixed(2));
+        assertEquals(2, unit.getGradedTestResults().size());
+        unit.runJUnitGradedTests(BasicGradedTests.class, JUnitParallelism.dynamic(1.5));
+        assertEquals(4, unit.getGradedTestResults().size());
+    }
+
     @Test
     public void testsCanRun(){
         unit.runJUnitGradedTests(BasicGradedTests.class);
@@ -113,6 +227,222 @@ public class GraderTest {
 
     }
 
+    private static List<String> names(List<GradedTestResult> results) {
+        List<String> names = new ArrayList<>();
+        for (GradedTestResult r : results) {
+            names.add(r.getName());
+        }
+        return names;
+    }
+
+    private static final List<String> SUITE_NAMES = Arrays.asList("first a", "first b", "second a", "second inner");
+
+    @Test
+    public void runsSeveralSuitesInOnePass() {
+        unit.runJUnitGradedTests(FirstSuite.class, SecondSuite.class);
+        assertEquals(SUITE_NAMES, names(unit.getGradedTestResults()));
+    }
+
+    @Test
+    public void addsSuitesInGivenOrder() {
+        unit.runJUnitGradedTests(SecondSuite.class, FirstSuite.class);
+        assertEquals(Arrays.asList("second a", "second inner", "first a", "first b"),
+                names(unit.getGradedTestResults()));
+    }
+
+    @Test
+    public void eachSuiteKeepsItsStrategy() {
+        DeductiveGraderStrategy first = new DeductiveGraderStrategy(5, "first");
+        DeductiveGraderStrategy second = new DeductiveGraderStrategy(10, "second");
+        unit.setGraderStrategy(first);
+        unit.setGraderStrategy(SecondSuite.class, second);
+        unit.runJUnitGradedTests(FirstSuite.class, SecondSuite.class);
+        assertEquals(Arrays.asList("first a", "first b", "first", "second a", "second inner", "second"),
+                names(unit.getGradedTestResults()));
+        assertEquals(10.0, unit.getGradedTestResults().get(5).getScore(), 0.0);
+    }
+
+    @Test
+    public void selectedSuiteWithoutResultsIsGraded() {
+        unit.setGraderStrategy(new DeductiveGraderStrategy(5, "empty"));
+        unit.runJUnitGradedTests(Object.class, FirstSuite.class);
+        assertEquals(Arrays.asList("empty", "first a", "first b", "empty"), names(unit.getGradedTestResults()));
+    }
+
+    @Test
+    public void forkKeepsSuiteStrategies() {
+        unit.setGraderStrategy(SecondSuite.class, new DeductiveGraderStrategy(10, "second"));
+        Grader child = unit.fork();
+        child.runJUnitGradedTests(SecondSuite.class);
+        assertEquals(Arrays.asList("second a", "second inner", "second"), names(child.getGradedTestResults()));
+    }
+
+    @Test
+    public void deductiveSkipsRemainingAtFloor() {
+        StoppableGradedTests.RAN.clear();
+        DeductiveGraderStrategy s = new DeductiveGraderStrategy(2, "deductive");
+        s.setSkipRemainingAtFloor(true);
+        unit.setGraderStrategy(s);
+        unit.runJUnitGradedTests(StoppableGradedTests.class);
+        assertEquals(Arrays.asList("a", "b"), StoppableGradedTests.RAN);
+        assertEquals(Arrays.asList("a", "b", "c", "d", "deductive"), names(unit.getGradedTestResults()));
+        assertTrue(unit.getGradedTestResults().get(3).getOutput().startsWith("NOT RUN:: \n"));
+        assertEquals(2.0, s.getDeductedPoints(), 0.0);
+    }
+
+    @Test
+    public void deductiveFloorCountsEachSuite() {
+        StoppableGradedTests.RAN.clear();
+        DeductiveGraderStrategy s = new DeductiveGraderStrategy(4, "deductive");
+        s.setSkipRemainingAtFloor(true);
+        unit.setGraderStrategy(s);
+        unit.runJUnitGradedTests(FailingGradedTest.class, StoppableGradedTests.class);
+        assertEquals(Arrays.asList("a", "b", "c"), StoppableGradedTests.RAN);
+    }
+
+    @Test
+    public void noDefaultTimeout() {
+        assertEquals(0, unit.getDefaultTimeoutMillis());
+    }
+
+    @Test
+    public void negativeDefaultTimeout() {
+        assertThrows(IllegalArgumentException.class, () -> unit.setDefaultTimeoutMillis(-1));
+    }
+
+    @Test
+    public void defaultTimeoutAppliesToRun() {
+        unit.setDefaultTimeoutMillis(100);
+        unit.runJUnitGradedTests(DefaultTimeoutGradedTests.class);
+        assertEquals(Arrays.asList("own limit", "default"), names(unit.getGradedTestResults()));
+        assertTrue(unit.getGradedTestResults().get(0).passed());
+        assertFalse(unit.getGradedTestResults().get(1).passed());
+    }
+
+    @Test
+    public void forkKeepsDefaultTimeout() {
+        unit.setDefaultTimeoutMillis(100);
+        assertEquals(100, unit.fork().getDefaultTimeoutMillis());
+    }
+
+    @Test
+    public void defaultOutputLimits() {
+        assertEquals(BoundedOutput.DEFAULT_LIMIT, unit.getOutputLimit());
+        assertEquals(BoundedOutput.DEFAULT_LIMIT, unit.getTestOutputLimit());
+        assertEquals(0, unit.getDroppedOutputBytes());
+    }
+
+    @Test
+    public void truncatesOutput() {
+        unit.addOutput("start ");
+        unit.setOutputLimit(10);
+        unit.addOutput("middle end");
+        assertEquals("start\n[... 6 bytes truncated ...]\ne end", unit.getOutput());
+        assertEquals(6, unit.getDroppedOutputBytes());
+        assertEquals(10, unit.getOutputLimit());
+    }
+
+    @Test
+    public void negativeOutputLimits() {
+        assertThrows(IllegalArgumentException.class, () -> unit.setOutputLimit(-1));
+        assertThrows(IllegalArgumentException.class, () -> unit.setTestOutputLimit(-1));
+    }
+
+    @Test
+    public void testOutputLimitAppliesToRun() {
+        unit.setTestOutputLimit(100);
+        unit.runJUnitGradedTests(RunawayOutputGradedTest.class);
+        GradedTestResult r = unit.getGradedTestResults().get(0);
+        assertEquals(100, r.getOutputLimit());
+        assertTrue(r.getDroppedOutputBytes() > 0);
+    }
+
+    @Test
+    public void forkKeepsOutputLimits() {
+        unit.setOutputLimit(10);
+        unit.setTestOutputLimit(20);
+        Grader child = unit.fork();
+        assertEquals(10, child.getOutputLimit());
+        assertEquals(20, child.getTestOutputLimit());
+    }
+
+    @Test
+    public void joinKeepsDroppedOutput() {
+        Grader child = unit.fork();
+        child.setOutputLimit(4);
+        child.addOutput("ab0123456789yz");
+        unit.join(child);
+        assertEquals(10, unit.getDroppedOutputBytes());
+        assertTrue(unit.getOutput().startsWith("ab\n"));
+        assertTrue(unit.getOutput().endsWith("\nyz"));
+    }
+
+    @Test
+    public void runsPackage() {
+        unit.runJUnitGradedTests(FirstSuite.class.getPackage().getName());
+        assertEquals(SUITE_NAMES, names(unit.getGradedTestResults()));
+    }
+
+    @Test
+    public void runsClasspathRoot(@TempDir Path root) throws IOException, URISyntaxException {
+        Path compiled = Paths.get(FirstSuite.class.getResource("FirstSuite.class").toURI()).getParent();
+        Path copy = root.resolve(FirstSuite.class.getPackage().getName().replace('.', '/'));
+        Files.createDirectories(copy);
+        try (Stream<Path> classes = Files.list(compiled)) {
+            for (Path c : (Iterable<Path>) classes::iterator) {
+                Files.copy(c, copy.resolve(c.getFileName()));
+            }
+        }
+        unit.runJUnitGradedTests(root);
+        assertEquals(SUITE_NAMES, names(unit.getGradedTestResults()));
+    }
+
+    @Test
+    public void reusesLauncherSession() {
+        unit.runJUnitGradedTests(BasicGradedTests.class);
+        LauncherSession session = unit.getLauncherSession();
+        unit.runJUnitGradedTests(BasicGradedTests.class);
+        assertSame(session, unit.getLauncherSession());
+        assertEquals(4, unit.getGradedTestResults().size());
+    }
+
+    @Test
+    public void forksShareLauncherSession() {
+        Grader child = unit.fork();
+        Grader grandchild = child.fork();
+        assertSame(unit.getLauncherSession(), child.getLauncherSession());
+        assertSame(unit.getLauncherSession(), grandchild.getLauncherSession());
+        child.close();
+        assertSame(unit.getLauncherSession(), child.getLauncherSession());
+    }
+
+    @Test
+    public void sharedLauncherSessionOutlivesGraders() {
+        try (LauncherSessionHolder launchers = new LauncherSessionHolder()) {
+            Grader first = new Grader(launchers);
+            Grader second = new ConcurrentGrader(launchers);
+            LauncherSession session = first.getLauncherSession();
+            assertSame(session, second.getLauncherSession());
+            first.close();
+            second.close();
+            assertSame(session, launchers.open());
+            launchers.close();
+            assertNotSame(session, first.getLauncherSession());
+        }
+    }
+
+    @Test
+    public void canRunAfterClose() {
+        unit.close();
+        unit.runJUnitGradedTests(BasicGradedTests.class);
+        LauncherSession session = unit.getLauncherSession();
+        unit.close();
+        unit.close();
+        assertNotSame(session, unit.getLauncherSession());
+        unit.runJUnitGradedTests(BasicGradedTests.class);
+        assertEquals(4, unit.getGradedTestResults().size());
+    }
+
 
     
 
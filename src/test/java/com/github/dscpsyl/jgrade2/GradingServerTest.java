@@ -0,0 +1,195 @@
+package com.github.dscpsyl.jgrade2;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+
+public class GradingServerTest {
+
+    @TempDir
+    Path dir;
+
+    private Path socket;
+    private GradingServer server;
+    private ExecutorService serving;
+    private Future<Void> served;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        this.socket = dir.resolve("jgrade2.sock");
+        this.server = new GradingServer(this.socket, 2);
+        this.serving = Executors.newSingleThreadExecutor();
+        this.served = this.serving.submit(() -> {
+            this.server.serve();
+            return null;
+        });
+    }
+
+    @AfterEach
+    public void stopServer() throws InterruptedException, ExecutionException, TimeoutException {
+        this.server.close();
+        this.served.get(10, TimeUnit.SECONDS);
+        this.serving.shutdown();
+        assertFalse(Files.exists(this.socket));
+    }
+
+    private JSONObject request(String... args) throws IOException, JSONException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GradingServer.request(this.socket, this.dir, List.of(args), out);
+        return new JSONObject(out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void rejectsNonPositiveWorkers() {
+        assertThrows(IllegalArgumentException.class, () -> new GradingServer(dir.resolve("other.sock"), 0));
+    }
+
+    @Test
+    public void gradesRequest() throws IOException, JSONException {
+        JSONObject json = request("-c", ExampleGrading.class.getName(), "--pretty-print");
+        assertEquals("Served Test", json.getJSONArray("tests").getJSONObject(0).get("name"));
+    }
+
+    @Test
+    public void gradesConcurrentRequests() throws InterruptedException, ExecutionException, JSONException {
+        ExecutorService clients = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<JSONObject>> responses = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                responses.add(clients.submit(() -> request("-c", ExampleGrading.class.getName())));
+            }
+            for (Future<JSONObject> response : responses) {
+                assertEquals(1, response.get().getJSONArray("tests").length());
+            }
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    @Test
+    public void gradesMoreRequestsThanConnectionThreads()
+            throws InterruptedException, ExecutionException, JSONException {
+        ExecutorService clients = Executors.newFixedThreadPool(12);
+        try {
+            List<Future<JSONObject>> responses = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                responses.add(clients.submit(() -> request("-c", ExampleGrading.class.getName())));
+            }
+            for (Future<JSONObject> response : responses) {
+                assertEquals(1, response.get().getJSONArray("tests").length());
+            }
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    @Test
+    public void failureWhileWritingSendsOnlyFailure() throws IOException, JSONException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GradingServer.request(this.socket, this.dir, List.of("-c", BrokenResultGrading.class.getName()), out);
+        JSONTokener tokener = new JSONTokener(out.toString(StandardCharsets.UTF_8));
+        JSONObject json = new JSONObject(tokener);
+        assertEquals(0, tokener.nextClean());
+        assertEquals(0.0, json.getDouble("score"), 0.0);
+        assertTrue(json.getString("output").contains("broken result"));
+    }
+
+    @Test
+    public void compilesRequest() throws IOException, JSONException {
+        Files.writeString(this.dir.resolve("Answer.java"), "public class Answer { }\n");
+        JSONObject json = request("-c", ExampleGrading.class.getName(), "--compile");
+        assertEquals("Compilation", json.getJSONArray("tests").getJSONObject(0).get("name"));
+        assertEquals("Served Test", json.getJSONArray("tests").getJSONObject(1).get("name"));
+    }
+
+    @Test
+    public void failedRequestScoresZero() throws IOException, JSONException {
+        JSONObject json = request("-c", "thisClassDoesNotExist");
+        assertEquals(0.0, json.getDouble("score"), 0.0);
+        assertTrue(json.getString("output").contains("thisClassDoesNotExist"));
+    }
+
+    @Test
+    public void missingClassScoresZero() throws IOException, JSONException {
+        JSONObject json = request("--pretty-print");
+        assertEquals(0.0, json.getDouble("score"), 0.0);
+        assertTrue(json.getString("output").contains("missing required class flag"));
+    }
+
+    @Test
+    public void invalidRequestScoresZero() throws IOException, JSONException {
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(this.socket))) {
+            channel.write(ByteBuffer.wrap("not json\n".getBytes(StandardCharsets.UTF_8)));
+            channel.shutdownOutput();
+            String response = new String(Channels.newInputStream(channel).readAllBytes(), StandardCharsets.UTF_8);
+            assertEquals(0.0, new JSONObject(response).getDouble("score"), 0.0);
+        }
+    }
+
+    @Test
+    public void noOutputRespondsWithNothing() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GradingServer.request(this.socket, this.dir, List.of("-c", ExampleGrading.class.getName(), "--no-output"),
+                out);
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    public void connectFromCommandLine() throws IOException, JSONException {
+        Path results = dir.resolve("results.json");
+        JGrade2.main(new String[] {"--connect", this.socket.toString(), "-c", ExampleGrading.class.getName(),
+            "-o", results.toString()});
+        JSONObject json = new JSONObject(Files.readString(results));
+        assertEquals("Served Test", json.getJSONArray("tests").getJSONObject(0).get("name"));
+    }
+
+    public static class BrokenResultGrading {
+        @Grade
+        public void gradeSomething(Grader g) {
+            GradedTestResult longOutput = new GradedTestResult("Long Test", "1", 5.0, GradedTestResult.VISIBLE);
+            longOutput.addOutput("x".repeat(64 * 1024));
+            g.addGradedTestResult(longOutput);
+            g.addGradedTestResult(new GradedTestResult("Broken Test", "2", 5.0, GradedTestResult.VISIBLE) {
+                @Override
+                public String getOutput() {
+                    throw new IllegalStateException("broken result");
+                }
+            });
+        }
+    }
+
+    public static class ExampleGrading {
+        @Grade
+        public void gradeSomething(Grader g) {
+            g.addGradedTestResult(new GradedTestResult("Served Test", "1", 5.0, GradedTestResult.VISIBLE));
+        }
+    }
+}
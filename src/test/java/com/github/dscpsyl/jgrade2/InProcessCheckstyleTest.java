@@ -0,0 +1,228 @@
+package com.github.dscpsyl.jgrade2;
+
+import com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+
+public class InProcessCheckstyleTest {
+
+    private static final String CLASSPATH = System.getProperty("java.class.path");
+    private static final String JAVA = ProcessHandle.current().info().command().orElse("java");
+
+    private static String read(InputStream xml) throws IOException {
+        return new String(xml.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    @TempDir
+    Path dir;
+
+    private Path config;
+    private Path source;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        this.config = this.dir.resolve("checks.xml");
+        Files.writeString(this.config, "<?xml version=\"1.0\"?>\n"
+                + "<!DOCTYPE module PUBLIC \"-//Checkstyle//DTD Checkstyle Configuration 1.3//EN\""
+                + " \"https://checkstyle.org/dtds/configuration_1_3.dtd\">\n"
+                + "<module name=\"Checker\">\n"
+                + "  <module name=\"TreeWalker\">\n"
+                + "    <module name=\"MagicNumber\"/>\n"
+                + "    <module name=\"MethodName\"/>\n"
+                + "  </module>\n"
+                + "</module>\n");
+        Path src = Files.createDirectories(this.dir.resolve("src"));
+        this.source = src.resolve("Bad.java");
+        Files.writeString(this.source, "public class Bad {\n"
+                + "    int Twice(int x) {\n"
+                + "        return x * 42 + 7;\n"
+                + "    }\n"
+                + "}\n");
+        Files.writeString(src.resolve("BadTest.java"), "public class BadTest { int Skipped() { return 99; } }\n");
+    }
+
+    @Test
+    public void reusesCheckerForSameConfig() {
+        InProcessCheckstyle checker = InProcessCheckstyle.forConfig(CLASSPATH, this.config.toString());
+        assertSame(checker, InProcessCheckstyle.forConfig(CLASSPATH, this.config.toString()));
+    }
+
+    @Test
+    public void runsRepeatedlyWithSameOutput() throws IOException {
+        InProcessCheckstyle checker = InProcessCheckstyle.forConfig(CLASSPATH, this.config.toString());
+        String first = read(checker.run(List.of(this.source.toFile())));
+        assertTrue(first.contains("MagicNumberCheck"));
+        assertTrue(first.contains("MethodNameCheck"));
+        assertEquals(first, read(checker.run(List.of(this.source.toFile()))));
+    }
+
+    @Test
+    public void matchesForkedOutput() throws IOException {
+        String inProcess = read(InProcessCheckstyle.forConfig(CLASSPATH, this.config.toString())
+                .run(List.of(this.source.toFile())));
+        String forked = CLITester.executeProcess(new ProcessBuilder(JAVA, "-cp", CLASSPATH,
+                        "com.puppycrawl.tools.checkstyle.Main", "-f", "xml", "-c", this.config.toString(),
+                        this.source.toAbsolutePath().toString()))
+                .getOutput(CLIResult.STREAM.STDOUT);
+        assertEquals(forked.trim(), inProcess.trim());
+    }
+
+    @Test
+    public void usesSunChecksWithoutConfig() throws IOException {
+        String xml = read(InProcessCheckstyle.forConfig(CLASSPATH, null).run(List.of(this.source.toFile())));
+        assertTrue(xml.contains("FinalParametersCheck"));
+    }
+
+    @Test
+    public void failsForMissingJar() {
+        String missing = this.dir.resolve("missing.jar").toString();
+        assertThrows(InternalError.class, () -> InProcessCheckstyle.forConfig(missing, null));
+    }
+
+    @Test
+    public void failsForMissingConfig() {
+        String missing = this.dir.resolve("missing.xml").toString();
+        assertThrows(InternalError.class, () -> InProcessCheckstyle.forConfig(CLASSPATH, missing));
+    }
+
+    @Test
+    public void checkstyleGraderInProcess() {
+        CheckstyleGrader grader = new CheckstyleGrader(10, 1, CLASSPATH, this.dir.resolve("src").toString());
+        grader.setConfig(this.config.toString());
+        grader.setInProcess(true);
+        GradedTestResult result = grader.runForGradedTestResult();
+        assertEquals(7.0, result.getScore());
+        assertTrue(result.getOutput().startsWith("Bad.java:\n"));
+        assertEquals(Map.of("MagicNumberCheck", 2, "MethodNameCheck", 1), grader.getErrorTypes());
+    }
+
+    @Test
+    public void checkstyleGraderReportsEveryFile() throws IOException {
+        Files.writeString(this.dir.resolve("src").resolve("Clean.java"), "public class Clean { }\n");
+        Files.writeString(this.dir.resolve("src").resolve("Other.java"),
+                "public class Other {\n    int Once() {\n        return 1;\n    }\n}\n");
+        CheckstyleGrader grader = new CheckstyleGrader(10, 4, CLASSPATH, this.dir.resolve("src").toString());
+        grader.setConfig(this.config.toString());
+        grader.setInProcess(true);
+        GradedTestResult result = grader.runForGradedTestResult();
+        assertEquals(0.0, result.getScore());
+        assertTrue(result.getOutput().contains("Bad.java:\n"));
+        assertTrue(result.getOutput().contains("Other.java:\n\tline: 2, column9"));
+        assertFalse(result.getOutput().contains("Clean.java"));
+        assertEquals(Map.of("MagicNumberCheck", 2, "MethodNameCheck", 2), grader.getErrorTypes());
+    }
+
+    @Test
+    public void checkstyleGraderWithoutViolations() throws IOException {
+        Path clean = Files.createDirectories(this.dir.resolve("clean"));
+        Files.writeString(clean.resolve("Clean.java"), "public class Clean { }\n");
+        CheckstyleGrader grader = new CheckstyleGrader(10, 1, CLASSPATH, clean.toString());
+        grader.setConfig(this.config.toString());
+        grader.setInProcess(true);
+        GradedTestResult result = grader.runForGradedTestResult();
+        assertEquals(10.0, result.getScore());
+        assertEquals("Passed all checks!", result.getOutput());
+        assertEquals(0, grader.getErrorTypeCount());
+    }
+
+    @Test
+    public void checkstyleGraderForkedWithoutReport() {
+        CheckstyleGrader grader = new CheckstyleGrader(10, 1, this.dir.resolve("missing.jar").toString(),
+                this.dir.resolve("src").toString());
+        GradedTestResult result = grader.runForGradedTestResult();
+        assertEquals(0.0, result.getScore());
+        assertTrue(result.getOutput().startsWith("Internal Error!\n"));
+    }
+
+    private GradedTestResult runCached(CheckstyleGrader grader, Path cacheDir) {
+        grader.setConfig(this.config.toString());
+        grader.setInProcess(true);
+        grader.setCacheDir(cacheDir.toString());
+        return grader.runForGradedTestResult();
+    }
+
+    @Test
+    public void checkstyleGraderCacheMatchesUncached() throws IOException {
+        Path src = this.dir.resolve("src");
+        Files.writeString(src.resolve("Clean.java"), "public class Clean { }\n");
+        Files.writeString(src.resolve("Other.java"), "public class Other {\n    int Once() {\n        return 1;\n    }\n}\n");
+        CheckstyleGrader uncached = new CheckstyleGrader(10, 1, CLASSPATH, src.toString());
+        uncached.setConfig(this.config.toString());
+        uncached.setInProcess(true);
+        GradedTestResult expected = uncached.runForGradedTestResult();
+
+        Path cacheDir = this.dir.resolve("cache");
+        for (int run = 0; run < 2; run++) {
+            CheckstyleGrader grader = new CheckstyleGrader(10, 1, CLASSPATH, src.toString());
+            GradedTestResult result = runCached(grader, cacheDir);
+            assertEquals(expected.getOutput(), result.getOutput());
+            assertEquals(expected.getScore(), result.getScore());
+            assertEquals(uncached.getErrorTypes(), grader.getErrorTypes());
+        }
+    }
+
+    @Test
+    public void checkstyleGraderDoesNotCacheCrossFileChecks() throws IOException {
+        Files.writeString(this.config, Files.readString(this.config).replace("<module name=\"TreeWalker\">",
+                "<module name=\"JavadocPackage\"/>\n  <module name=\"TreeWalker\">"));
+        Path cacheDir = this.dir.resolve("cache");
+        CheckstyleGrader grader = new CheckstyleGrader(10, 1, CLASSPATH, this.dir.resolve("src").toString());
+        GradedTestResult result = runCached(grader, cacheDir);
+        assertEquals(Map.of("JavadocPackageCheck", 1, "MagicNumberCheck", 2, "MethodNameCheck", 1),
+                grader.getErrorTypes());
+        assertEquals(6.0, result.getScore());
+        assertFalse(Files.exists(cacheDir));
+    }
+
+    @Test
+    public void checkstyleGraderOnlyChecksChangedFiles() throws IOException {
+        Path src = this.dir.resolve("src");
+        Path other = src.resolve("Other.java");
+        Files.writeString(other, "public class Other { }\n");
+        Path cacheDir = this.dir.resolve("cache");
+        runCached(new CheckstyleGrader(10, 1, CLASSPATH, src.toString()), cacheDir);
+
+        CheckstyleCache cache = new CheckstyleCache(cacheDir, CLASSPATH, this.config.toString());
+        cache.put(cache.key(this.source, "Bad.java"), List.of(
+                new CheckstyleGrader.Violation("1", null, "cached", "com.example.CachedCheck")));
+        Files.writeString(other, "public class Other {\n    int Once() {\n        return 1;\n    }\n}\n");
+
+        CheckstyleGrader grader = new CheckstyleGrader(10, 1, CLASSPATH, src.toString());
+        GradedTestResult result = runCached(grader, cacheDir);
+        assertEquals(8.0, result.getScore());
+        assertTrue(result.getOutput().contains("Bad.java:\n\tline: 1"));
+        assertTrue(result.getOutput().contains("cached [CachedCheck]"));
+        assertTrue(result.getOutput().contains("Other.java:\n\tline: 2, column9"));
+        assertEquals(Map.of("CachedCheck", 1, "MethodNameCheck", 1), grader.getErrorTypes());
+    }
+
+    @Test
+    public void checkstyleGraderCacheFailure() throws IOException {
+        Path cacheDir = Files.writeString(this.dir.resolve("cache"), "not a directory");
+        CheckstyleGrader grader = new CheckstyleGrader(10, 1, CLASSPATH, this.dir.resolve("src").toString());
+        GradedTestResult result = runCached(grader, cacheDir);
+        assertEquals(0.0, result.getScore());
+        assertTrue(result.getOutput().startsWith("Internal Error!\n"));
+    }
+
+    @Test
+    public void pathSeparatedClasspath() throws IOException {
+        String classpath = CLASSPATH + File.pathSeparator + this.dir;
+        String xml = read(InProcessCheckstyle.forConfig(classpath, this.config.toString())
+                .run(List.of(this.source.toFile())));
+        assertTrue(xml.contains("MagicNumberCheck"));
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.dscpsyl.jgrade2;
 
+import org.apache.commons.cli.ParseException;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -9,10 +10,16 @@ import com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -84,6 +91,19 @@ public class JGradeCommandLineTest {
         });
     }
 
+    @Test
+    public void acceptsMetricsFlag() throws JSONException, IOException {
+        JGrade2.main(new String[] {"--metrics", "-c", this.getClass().getCanonicalName()});
+        assertTrue(new JSONObject(captureOut.toString()).has("tests"));
+    }
+
+    @Test
+    public void rejectsMetricsWithoutOutput() {
+        assertThrows(RuntimeException.class, () -> {
+            JGrade2.main(new String[] {"--metrics", "--no-output", "-c", this.getClass().getCanonicalName()});
+        });
+    }
+
     @Test
     public void printedValidJson() throws JSONException, IOException{
         JGrade2.main(new String[] {"--format", "json", "-c", this.getClass().getCanonicalName()});
@@ -94,6 +114,134 @@ public class JGradeCommandLineTest {
         assertEquals("Test GradedTestResult", gradedTestResult.get("name"));
     }
 
+    @Test
+    public void gradesBatchDirectory(@TempDir Path batchDir) throws JSONException, IOException {
+        Files.createDirectory(batchDir.resolve("submission"));
+        JGrade2.main(new String[] {"-c", this.getClass().getCanonicalName(),
+                "--batch", batchDir.toString(), "--workers", "2"});
+        JSONObject json = new JSONObject(new String(Files.readAllBytes(batchDir.resolve("submission.json"))));
+        assertTrue(json.has("tests"));
+    }
+
+    @Test
+    public void rejectsInvalidWorkerCount(@TempDir Path batchDir) throws IOException {
+        assertThrows(RuntimeException.class, () -> {
+            JGrade2.main(new String[] {"-c", this.getClass().getCanonicalName(),
+                    "--batch", batchDir.toString(), "--workers", "many"});
+        });
+    }
+
+    @Test
+    public void parallelKeepsMethodOrder() throws JSONException, IOException {
+        JGrade2.main(new String[] {"--parallel", "3", "-c", ParallelGrading.class.getName()});
+        JSONObject json = new JSONObject(captureOut.toString());
+        assertEquals(4, json.getJSONArray("tests").length());
+        assertEquals("before", json.getJSONArray("tests").getJSONObject(0).get("name"));
+        assertEquals("a", json.getJSONArray("tests").getJSONObject(1).get("name"));
+        assertEquals("b", json.getJSONArray("tests").getJSONObject(2).get("name"));
+        assertEquals("after 2", json.getJSONArray("tests").getJSONObject(3).get("name"));
+    }
+
+    @Test
+    public void parentFirstPackages() throws JSONException, IOException {
+        JGrade2.main(new String[] {"--parent-first", "edu.staff, student.tests,", "-c", ParallelGrading.class.getName()});
+        JSONObject json = new JSONObject(captureOut.toString());
+        assertEquals(4, json.getJSONArray("tests").length());
+    }
+
+    @Test
+    public void dumpCdsFailsWithTrainingRun(@TempDir Path dir) throws IOException, URISyntaxException {
+        // The training run takes this JVM's classpath, which has to be jars for it to get as far as the class.
+        String classpath = System.getProperty("java.class.path");
+        System.setProperty("java.class.path", ClassDataSharingTest.jarClasspath(dir));
+        try {
+            String archive = dir.resolve("app.jsa").toString();
+            RuntimeException e = assertThrows(RuntimeException.class, () -> {
+                JGrade2.main(new String[] {"--dump-cds", archive, "-c", "thisClassDoesNotExist", "--no-output"});
+            });
+            assertTrue(e.getCause().getMessage().contains("exited with code"));
+        } finally {
+            System.setProperty("java.class.path", classpath);
+        }
+    }
+
+    @Test
+    public void argsWithoutOptions() {
+        assertEquals(List.of("-c", "Grading", "--pretty-print"), JGrade2.argsWithout(
+                new String[] {"--dump-cds", "app.jsa", "-c", "Grading", "--pretty-print"}, "--dump-cds"));
+        assertEquals(List.of("-c", "Grading"), JGrade2.argsWithout(
+                new String[] {"-c", "Grading", "--dump-cds=app.jsa", "-oresults.json"}, "--dump-cds", "-o"));
+        assertEquals(List.of("-c", "Grading"), JGrade2.argsWithout(
+                new String[] {"--connect", "s.sock", "-c", "Grading", "-o", "results.json"}, "--connect", "-o"));
+    }
+
+    @Test
+    public void connectWithoutServer() {
+        assertThrows(RuntimeException.class, () -> {
+            JGrade2.main(new String[] {"--connect", "no-such.sock", "-c", ParallelGrading.class.getName()});
+        });
+    }
+
+    @Test
+    public void cachedResultSkipsGrading(@TempDir Path cacheDir) throws IOException {
+        String[] args = {"-c", CountedGrading.class.getName(), "--cache", cacheDir.toString()};
+        int before = CountedGrading.GRADED.get();
+        JGrade2.main(args);
+        String first = captureOut.toString();
+        JGrade2.main(args);
+        assertEquals(before + 1, CountedGrading.GRADED.get());
+        assertEquals(first + first, captureOut.toString());
+        assertTrue(captureErr.toString().contains("1 hits, 0 misses"));
+    }
+
+    @Test
+    public void rejectsCacheWithoutOutput(@TempDir Path cacheDir) {
+        RuntimeException e = assertThrows(RuntimeException.class, () -> {
+            JGrade2.main(new String[] {"-c", CountedGrading.class.getName(), "--no-output", "--cache",
+                cacheDir.toString()});
+        });
+        assertTrue(e.getMessage().contains("--cache needs Gradescope JSON output"));
+        assertTrue(e.getCause() instanceof ParseException);
+    }
+
+    public static class CountedGrading {
+        static final AtomicInteger GRADED = new AtomicInteger();
+
+        @Grade
+        public void grade(Grader g) {
+            g.addGradedTestResult(new GradedTestResult("counted", "", 1.0, GradedTestResult.VISIBLE));
+            GRADED.incrementAndGet();
+        }
+    }
+
+    public static class ParallelGrading {
+        private final AtomicInteger finished = new AtomicInteger();
+
+        @BeforeGrading
+        public void setup(Grader g) {
+            g.addGradedTestResult(new GradedTestResult("before", "", 0.0, GradedTestResult.VISIBLE));
+        }
+
+        @Grade
+        public void a(Grader g) throws InterruptedException {
+            Thread.sleep(200);
+            g.addGradedTestResult(new GradedTestResult("a", "", 1.0, GradedTestResult.VISIBLE));
+            finished.incrementAndGet();
+        }
+
+        @Grade
+        public void b(Grader g) {
+            g.addGradedTestResult(new GradedTestResult("b", "", 1.0, GradedTestResult.VISIBLE));
+            finished.incrementAndGet();
+        }
+
+        @AfterGrading
+        public void teardown(Grader g) {
+            g.addGradedTestResult(new GradedTestResult("after " + finished.get(), "", 0.0,
+                    GradedTestResult.VISIBLE));
+        }
+    }
+
     @Grade
     public void graderMethod(Grader g) {
         g.addGradedTestResult(new GradedTestResult(
@@ -0,0 +1,38 @@
+package com.github.dscpsyl.jgrade2;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Map;
+
+public class JUnitParallelismTest {
+
+    @Test
+    public void fixedSetsParallelism() {
+        JUnitParallelism unit = JUnitParallelism.fixed(4);
+        assertEquals(JUnitParallelism.Strategy.FIXED, unit.getStrategy());
+        assertEquals(4.0, unit.getParallelism(), 0.0);
+        Map<String, String> params = unit.toConfigurationParameters();
+        assertEquals("true", params.get("junit.jupiter.execution.parallel.enabled"));
+        assertEquals("concurrent", params.get("junit.jupiter.execution.parallel.mode.default"));
+        assertEquals("fixed", params.get("junit.jupiter.execution.parallel.config.strategy"));
+        assertEquals("4", params.get("junit.jupiter.execution.parallel.config.fixed.parallelism"));
+    }
+
+    @Test
+    public void dynamicSetsFactor() {
+        JUnitParallelism unit = JUnitParallelism.dynamic(2.5);
+        assertEquals(JUnitParallelism.Strategy.DYNAMIC, unit.getStrategy());
+        Map<String, String> params = unit.toConfigurationParameters();
+        assertEquals("dynamic", params.get("junit.jupiter.execution.parallel.config.strategy"));
+        assertEquals("2.5", params.get("junit.jupiter.execution.parallel.config.dynamic.factor"));
+    }
+
+    @Test
+    public void rejectsNonPositive() {
+        assertThrows(IllegalArgumentException.class, () -> JUnitParallelism.fixed(0));
+        assertThrows(IllegalArgumentException.class, () -> JUnitParallelism.dynamic(-1.0));
+    }
+}
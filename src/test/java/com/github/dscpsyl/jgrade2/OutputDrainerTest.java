@@ -0,0 +1,81 @@
+package com.github.dscpsyl.jgrade2;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.Arrays;
+
+
+public class OutputDrainerTest {
+
+    private static InputStream bytes(int n) {
+        byte[] data = new byte[n];
+        Arrays.fill(data, (byte) 'x');
+        return new ByteArrayInputStream(data);
+    }
+
+    @Test
+    public void keepsEverythingUnderLimit() throws IOException, InterruptedException {
+        OutputDrainer unit = OutputDrainer.start(new ByteArrayInputStream("hello".getBytes()), 100, "test");
+        assertEquals("hello", unit.await());
+        assertFalse(unit.isTruncated());
+    }
+
+    @Test
+    public void keepsOutputLargerThanOneRead() throws IOException, InterruptedException {
+        OutputDrainer unit = OutputDrainer.start(bytes(100_000), 200_000, "test");
+        assertEquals(100_000, unit.await().length());
+        assertFalse(unit.isTruncated());
+    }
+
+    @Test
+    public void truncatesAtLimit() throws IOException, InterruptedException {
+        OutputDrainer unit = OutputDrainer.start(bytes(100_000), 10_000, "test");
+        assertEquals(10_000, unit.await().length());
+        assertTrue(unit.isTruncated());
+    }
+
+    @Test
+    public void exactlyAtLimitNotTruncated() throws IOException, InterruptedException {
+        OutputDrainer unit = OutputDrainer.start(bytes(10), 10, "test");
+        assertEquals(10, unit.await().length());
+        assertFalse(unit.isTruncated());
+    }
+
+    @Test
+    public void reportsReadFailure() {
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("broken");
+            }
+        };
+        OutputDrainer unit = OutputDrainer.start(failing, 10, "test");
+        assertThrows(IOException.class, unit::await);
+    }
+
+    @Test
+    public void givesUpOnStreamThatStaysOpen() throws IOException, InterruptedException {
+        PipedOutputStream writer = new PipedOutputStream();
+        PipedInputStream stream = new PipedInputStream(writer);
+        writer.write("partial".getBytes());
+        writer.flush();
+        OutputDrainer unit = OutputDrainer.start(stream, 100, "test");
+        assertEquals("partial", unit.await(200));
+        assertTrue(unit.isTruncated());
+        writer.close();
+    }
+
+    @Test
+    public void timedAwaitOfEndedStream() throws IOException, InterruptedException {
+        OutputDrainer unit = OutputDrainer.start(new ByteArrayInputStream("done".getBytes()), 100, "test");
+        assertEquals("done", unit.await(5000));
+        assertFalse(unit.isTruncated());
+    }
+}
@@ -0,0 +1,23 @@
+package com.github.dscpsyl.jgrade2;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+
+public class OutputFormatterTest {
+
+    @Test
+    public void defaultStreamWritesFormattedString() throws IOException {
+        OutputFormatter formatter = g -> "score é " + g.getScore();
+        Grader grader = new Grader();
+        grader.setScore(1.5);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        formatter.format(grader, out);
+        assertEquals("score é 1.5", out.toString(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,236 @@
+package com.github.dscpsyl.jgrade2;
+
+import com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class ReflectGradeTest {
+
+    private PrintStream err;
+    private ByteArrayOutputStream errContent;
+
+    @BeforeEach
+    public void captureErr() {
+        this.err = System.err;
+        this.errContent = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(this.errContent));
+    }
+
+    @AfterEach
+    public void restoreErr() {
+        System.setErr(this.err);
+    }
+
+    private static List<String> names(List<Method> methods) {
+        List<String> names = new ArrayList<>();
+        for (Method m : methods) {
+            names.add(m.getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void planIsCachedPerClass() {
+        assertSame(ReflectGrade.gradePlan(PhasedGrading.class), ReflectGrade.gradePlan(PhasedGrading.class));
+        assertNotSame(ReflectGrade.gradePlan(PhasedGrading.class), ReflectGrade.gradePlan(FailingGrading.class));
+    }
+
+    @Test
+    public void methodsInPhaseOrder() {
+        List<List<Method>> phases = ReflectGrade.graderPhases(PhasedGrading.class);
+        assertEquals(3, phases.size());
+        assertEquals(List.of("setUp"), names(phases.get(0)));
+        assertEquals(List.of("gradeA", "gradeB"), names(phases.get(1)));
+        assertEquals(List.of("tearDown"), names(phases.get(2)));
+        assertEquals(List.of("setUp", "gradeA", "gradeB", "tearDown"),
+                names(ReflectGrade.graderMethods(PhasedGrading.class)));
+    }
+
+    @Test
+    public void planCannotBeModified() {
+        assertThrows(UnsupportedOperationException.class, () -> ReflectGrade.graderMethods(PhasedGrading.class).clear());
+        assertThrows(UnsupportedOperationException.class,
+                () -> ReflectGrade.graderPhases(PhasedGrading.class).get(1).clear());
+    }
+
+    @Test
+    public void invalidMethodsWarnedOnce() {
+        ReflectGrade.gradePlan(InvalidGrading.class);
+        String warnings = this.errContent.toString();
+        assertTrue(warnings.contains("method wrongParameter parameter should be of type Grader"));
+        ReflectGrade.gradePlan(InvalidGrading.class);
+        assertEquals(warnings, this.errContent.toString());
+        assertEquals(List.of("valid"), names(ReflectGrade.graderMethods(InvalidGrading.class)));
+    }
+
+    @Test
+    public void bindsExactHandles() {
+        for (List<MethodHandle> phase : ReflectGrade.gradePlan(PhasedGrading.class).getPhases()) {
+            for (MethodHandle step : phase) {
+                assertEquals(GradePlan.STEP_TYPE, step.type());
+            }
+        }
+    }
+
+    @Test
+    public void invokesPlanInOrder() {
+        Grader grader = new Grader();
+        GradeInvoker.invokePhases(new PhasedGrading(), grader, ReflectGrade.gradePlan(PhasedGrading.class), 1);
+        assertEquals("setUp\ngradeA\ngradeB\ntearDown\n", grader.getOutput());
+    }
+
+    @Test
+    public void invokesPlanConcurrently() {
+        Grader grader = new Grader();
+        GradeInvoker.invokePhases(new PhasedGrading(), grader, ReflectGrade.gradePlan(PhasedGrading.class), 2);
+        assertEquals("setUp\ngradeA\ngradeB\ntearDown\n", grader.getOutput());
+    }
+
+    @Test
+    public void concurrentScoresMatchSequential() {
+        for (int parallelism : new int[] {1, 2, 3}) {
+            Grader grader = new Grader();
+            grader.setScore(1);
+            GradeInvoker.invokePhases(new ScoringGrading(), grader, ReflectGrade.gradePlan(ScoringGrading.class),
+                    parallelism);
+            assertEquals(16.0, grader.getScore(), 0.0, "parallelism " + parallelism);
+            assertEquals(20.0, grader.getMaxScore(), 0.0, "parallelism " + parallelism);
+        }
+    }
+
+    @Test
+    public void concurrentSetScoreMatchesSequential() {
+        for (int parallelism : new int[] {1, 2, 3}) {
+            for (Grader grader : new Grader[] {new Grader(), new ConcurrentGrader()}) {
+                grader.setScore(1);
+                GradeInvoker.invokePhases(new SettingGrading(), grader, ReflectGrade.gradePlan(SettingGrading.class),
+                        parallelism);
+                assertEquals(5.0, grader.getScore(), 0.0, "parallelism " + parallelism);
+                assertEquals(12.0, grader.getMaxScore(), 0.0, "parallelism " + parallelism);
+            }
+        }
+    }
+
+    @Test
+    public void reportsFailingMethods() {
+        Grader grader = new Grader();
+        GradeInvoker.invokePhases(new FailingGrading(), grader, ReflectGrade.gradePlan(FailingGrading.class), 1);
+        assertEquals(1, grader.getGradedTestResults().size());
+        String err = this.errContent.toString();
+        assertTrue(err.contains("failed invoking method gradeA"));
+        assertTrue(err.contains("IllegalStateException: broken"));
+    }
+
+    @Test
+    public void reportsInaccessibleMethods() {
+        Grader grader = new Grader();
+        GradeInvoker.invokePhases(new HiddenGrading(), grader, ReflectGrade.gradePlan(HiddenGrading.class), 1);
+        assertFalse(grader.hasGradedTestResults());
+        String err = this.errContent.toString();
+        assertTrue(err.contains("failed invoking method gradeHidden"));
+        assertTrue(err.contains("IllegalAccessException"));
+    }
+
+    public static class PhasedGrading {
+        @BeforeGrading
+        public void setUp(Grader g) {
+            g.addOutput("setUp\n");
+        }
+
+        @Grade
+        public void gradeB(Grader g) {
+            g.addOutput("gradeB\n");
+        }
+
+        @Grade
+        public void gradeA(Grader g) {
+            g.addOutput("gradeA\n");
+        }
+
+        @AfterGrading
+        public void tearDown(Grader g) {
+            g.addOutput("tearDown\n");
+        }
+
+        public void notGraded(Grader g) {
+            g.addOutput("notGraded\n");
+        }
+    }
+
+    public static class ScoringGrading {
+        @Grade
+        public void gradeA(Grader g) {
+            g.addScore(10);
+            g.addMaxScore(10);
+        }
+
+        @Grade
+        public void gradeB(Grader g) {
+            assertTrue(g.getScore() >= 1);
+            g.addScore(5);
+            g.addMaxScore(10);
+        }
+
+        @Grade
+        public void gradeC(Grader g) {
+            g.addOutput("no score change\n");
+        }
+    }
+
+    public static class SettingGrading {
+        @Grade
+        public void gradeA(Grader g) {
+            g.addScore(10);
+            g.setMaxScore(10);
+        }
+
+        @Grade
+        public void gradeB(Grader g) {
+            g.setScore(3);
+        }
+
+        @Grade
+        public void gradeC(Grader g) {
+            g.addScore(2);
+            g.addMaxScore(2);
+        }
+    }
+
+    public static class FailingGrading {
+        @Grade
+        public void gradeA(Grader g) {
+            throw new IllegalStateException("broken");
+        }
+
+        @Grade
+        public void gradeB(Grader g) {
+            g.addGradedTestResult(new GradedTestResult("After failure", "1", 1.0, GradedTestResult.VISIBLE));
+        }
+    }
+
+    public static class InvalidGrading {
+        @Grade
+        public void wrongParameter(String s) { }
+
+        @Grade
+        public void valid(Grader g) { }
+    }
+
+    static class HiddenGrading {
+        @Grade
+        public void gradeHidden(Grader g) {
+            g.addGradedTestResult(new GradedTestResult("Hidden", "1", 1.0, GradedTestResult.VISIBLE));
+        }
+    }
+}
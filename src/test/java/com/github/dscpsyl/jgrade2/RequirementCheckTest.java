@@ -0,0 +1,120 @@
+package com.github.dscpsyl.jgrade2;
+
+import com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+
+public class RequirementCheckTest {
+
+    public static class Submission {
+        public static String greet(String name) {
+            return "Hello, " + name;
+        }
+
+        int count(List<Map<String, Integer>> values, int... more) {
+            return values.size() + more.length;
+        }
+    }
+
+    @RequiredClass(value = "com.github.dscpsyl.jgrade2.RequirementCheckTest$Submission",
+            methods = {"public static String greet(String name)", "int count(java.util.List<Map<String, Integer>>, int...)"})
+    @RequiredClass("java.lang.String")
+    public static class Satisfied {
+        @Grade
+        public void grade(Grader grader) {
+            grader.addGradedTestResult(new GradedTestResult("graded", "", 1.0, GradedTestResult.VISIBLE));
+        }
+    }
+
+    @RequiredClass(value = "com.github.dscpsyl.jgrade2.RequirementCheckTest$Submission",
+            methods = {"static int greet(String)", "String count(List, int[])", "static int count(List, int[])"})
+    @RequiredClass("thisClassDoesNotExist")
+    public static class Unsatisfied {
+        public Unsatisfied() {
+            fail("should not be instantiated");
+        }
+    }
+
+    @RequiredClass(value = "student.Broken", methods = "Helper help()")
+    public static class NeedsBroken { }
+
+    @RequiredClass(value = "java.lang.String", methods = "not a signature")
+    public static class Invalid { }
+
+    @Test
+    public void noProblemsWhenSatisfied() {
+        assertEquals(List.of(), RequirementCheck.findProblems(Satisfied.class));
+        assertEquals(List.of(), RequirementCheck.findProblems(RequirementCheckTest.class));
+    }
+
+    @Test
+    public void listsEveryProblem() {
+        String name = Submission.class.getName();
+        assertEquals(List.of("class " + name + " is missing method static int greet(String)",
+                "class " + name + " is missing method String count(List, int[])",
+                "class " + name + " is missing method static int count(List, int[])",
+                "missing class thisClassDoesNotExist"), RequirementCheck.findProblems(Unsatisfied.class));
+    }
+
+    @Test
+    public void gradesWhenSatisfied() {
+        Grader grader = new Grader();
+        JGrade2.grade(grader, Satisfied.class, 1);
+        assertEquals(1, grader.getGradedTestResults().size());
+        assertEquals("graded", grader.getGradedTestResults().get(0).getName());
+        assertFalse(grader.hasScore());
+    }
+
+    @Test
+    public void skipsGradingWhenUnsatisfied() {
+        Grader grader = new Grader();
+        JGrade2.grade(grader, Unsatisfied.class, 1);
+        assertEquals(0.0, grader.getScore());
+        assertEquals(1, grader.getGradedTestResults().size());
+        GradedTestResult result = grader.getGradedTestResults().get(0);
+        assertEquals(RequirementCheck.RESULT_NAME, result.getName());
+        assertEquals(0.0, result.getPoints());
+        assertFalse(result.passed());
+        assertTrue(result.getOutput().contains("  - missing class thisClassDoesNotExist\n"));
+    }
+
+    @Test
+    public void reportsMethodsThatCannotBeLoaded(@TempDir Path dir) throws IOException {
+        Path source = dir.resolve("student/Broken.java");
+        Files.createDirectories(source.getParent());
+        Files.writeString(source, "package student;\n"
+                + "class Helper { }\n"
+                + "public class Broken {\n"
+                + "    Helper help() { return new Helper(); }\n"
+                + "}\n");
+        assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null,
+                "-d", dir.toString(), source.toString()));
+        Files.delete(dir.resolve("student/Helper.class"));
+
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        try (SubmissionClassLoader loader = new SubmissionClassLoader(dir, getClass().getClassLoader(), List.of())) {
+            thread.setContextClassLoader(loader);
+            assertEquals(List.of("class student.Broken could not be loaded: java.lang.NoClassDefFoundError: student/Helper"),
+                    RequirementCheck.findProblems(NeedsBroken.class));
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+    }
+
+    @Test
+    public void rejectsInvalidSignature() {
+        assertThrows(IllegalArgumentException.class, () -> RequirementCheck.findProblems(Invalid.class));
+    }
+}
@@ -0,0 +1,189 @@
+package com.github.dscpsyl.jgrade2;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+
+public class ResultCacheTest {
+
+    private static final List<String> SETTINGS = ResultCache.settings(-1, false, List.of(), false);
+
+    @TempDir
+    Path cacheDir;
+
+    @TempDir
+    Path submission;
+
+    private ResultCache unit;
+    private AtomicInteger graded;
+
+    @BeforeEach
+    public void initCache() throws IOException {
+        this.unit = new ResultCache(cacheDir, ResultCache.DEFAULT_MAX_BYTES);
+        this.graded = new AtomicInteger();
+        Files.createDirectories(submission.resolve("student"));
+        Files.write(submission.resolve("student/Answer.class"), new byte[] {1, 2, 3});
+    }
+
+    private String key() throws IOException {
+        return this.unit.key(submission, ResultCacheTest.class.getName(), List.of(), SETTINGS);
+    }
+
+    private byte[] get(ResultCache cache, String key, String result) throws IOException {
+        return cache.get(key, out -> {
+            this.graded.incrementAndGet();
+            out.write(result.getBytes(StandardCharsets.UTF_8));
+        });
+    }
+
+    @Test
+    public void rejectsNonPositiveSize() {
+        assertThrows(IllegalArgumentException.class, () -> new ResultCache(cacheDir, 0));
+    }
+
+    @Test
+    public void hitSkipsGrading() throws IOException {
+        String key = key();
+        assertArrayEquals("result".getBytes(StandardCharsets.UTF_8), get(this.unit, key, "result"));
+        assertArrayEquals("result".getBytes(StandardCharsets.UTF_8), get(this.unit, key, "other"));
+        assertEquals(1, this.graded.get());
+        assertEquals(1, this.unit.getHits());
+        assertEquals(1, this.unit.getMisses());
+        assertTrue(this.unit.report().contains("1 hits, 1 misses, 0 evicted"));
+    }
+
+    @Test
+    public void sharedBetweenCaches() throws IOException {
+        String key = key();
+        get(this.unit, key, "result");
+        ResultCache other = new ResultCache(cacheDir, ResultCache.DEFAULT_MAX_BYTES);
+        assertArrayEquals("result".getBytes(StandardCharsets.UTF_8), get(other, key, "other"));
+        assertEquals(1, other.getHits());
+    }
+
+    @Test
+    public void failedGradingIsNotStored() throws IOException {
+        String key = key();
+        assertThrows(IOException.class, () -> this.unit.get(key, out -> {
+            throw new IOException("failed");
+        }));
+        get(this.unit, key, "result");
+        assertEquals(2, this.unit.getMisses());
+    }
+
+    @Test
+    public void sameKeyForSameClasses() throws IOException {
+        String key = key();
+        Files.writeString(submission.resolve("student/notes.txt"), "notes");
+        assertEquals(key, key());
+        assertEquals(64, key.length());
+    }
+
+    @Test
+    public void keyChangesWithSubmission() throws IOException {
+        String key = key();
+        Files.write(submission.resolve("student/Answer.class"), new byte[] {1, 2, 4});
+        assertNotEquals(key, key());
+        String changed = key();
+        Files.write(submission.resolve("student/Other.class"), new byte[] {5});
+        assertNotEquals(changed, key());
+        String withOther = key();
+        Files.writeString(submission.resolve("student/Answer.java"), "class Answer { }");
+        assertNotEquals(withOther, key());
+    }
+
+    @Test
+    public void keyChangesWithSettings() throws IOException {
+        String key = key();
+        assertNotEquals(key, this.unit.key(submission, ResultCacheTest.class.getName(), List.of(),
+                ResultCache.settings(2, false, List.of(), false)));
+        assertNotEquals(key, this.unit.key(submission, ResultCacheTest.class.getName(), List.of(),
+                ResultCache.settings(-1, true, List.of(), false)));
+        assertNotEquals(key, this.unit.key(submission, ResultCacheTest.class.getName(), List.of(),
+                ResultCache.settings(-1, false, List.of(), true)));
+        assertNotEquals(key, this.unit.key(submission, GraderTest.class.getName(), List.of(), SETTINGS));
+    }
+
+    @Test
+    public void keyChangesWithStaffClasses() throws IOException {
+        Files.write(submission.resolve("student/Grading.class"), new byte[] {6});
+        String key = this.unit.key(submission, "student.Grading", List.of(), SETTINGS);
+        Files.write(submission.resolve("student/GradingTest.class"), new byte[] {7});
+        assertNotEquals(key, this.unit.key(submission, "student.Grading", List.of(), SETTINGS));
+    }
+
+    @Test
+    public void staffDigestCoversWholeClassRoot() throws IOException {
+        Path staff = this.cacheDir.resolve("staff-classes");
+        Files.createDirectories(staff.resolve("staff/grading"));
+        Files.createDirectories(staff.resolve("staff/helpers/util"));
+        Files.write(staff.resolve("staff/grading/Grading.class"), new byte[] {1});
+        Files.write(staff.resolve("staff/helpers/util/Helper.class"), new byte[] {2});
+        URL grading = staff.resolve("staff/grading/Grading.class").toUri().toURL();
+
+        byte[] digest = this.unit.staffDigest(grading, "staff.grading.Grading");
+        assertArrayEquals(digest, this.unit.staffDigest(grading, "staff.grading.Grading"));
+        Files.write(staff.resolve("staff/helpers/util/Helper.class"), new byte[] {3});
+        assertFalse(Arrays.equals(digest, this.unit.staffDigest(grading, "staff.grading.Grading")));
+    }
+
+    @Test
+    public void staffDigestOfChangedJar() throws IOException {
+        Path jar = this.cacheDir.resolve("staff.jar");
+        writeJar(jar, new byte[] {1});
+        URL grading = new URL("jar:" + jar.toUri() + "!/staff/Grading.class");
+        byte[] digest = this.unit.staffDigest(grading, "staff.Grading");
+        assertArrayEquals(digest, this.unit.staffDigest(grading, "staff.Grading"));
+
+        writeJar(jar, new byte[] {1, 2});
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        assertFalse(Arrays.equals(digest, this.unit.staffDigest(grading, "staff.Grading")));
+    }
+
+    private static void writeJar(Path jar, byte[] helper) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new JarEntry("staff/Grading.class"));
+            out.write(1);
+            out.putNextEntry(new JarEntry("staff/helpers/Helper.class"));
+            out.write(helper);
+        }
+    }
+
+    @Test
+    public void keyOfClassInJar() throws IOException {
+        String key = this.unit.key(submission, Test.class.getName(), List.of(), SETTINGS);
+        assertEquals(key, this.unit.key(submission, Test.class.getName(), List.of(), SETTINGS));
+        assertNotEquals(key, this.unit.key(submission, TempDir.class.getName(), List.of(), SETTINGS));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException, InterruptedException {
+        ResultCache small = new ResultCache(cacheDir, 25);
+        get(small, "a", "0123456789");
+        Thread.sleep(50);
+        get(small, "b", "0123456789");
+        Thread.sleep(50);
+        get(small, "a", "0123456789");
+        Thread.sleep(50);
+        get(small, "c", "0123456789");
+        assertEquals(1, small.getEvictions());
+        assertTrue(Files.exists(cacheDir.resolve("a.json")));
+        assertFalse(Files.exists(cacheDir.resolve("b.json")));
+        assertTrue(Files.exists(cacheDir.resolve("c.json")));
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.dscpsyl.jgrade2;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+
+public class SubmissionClassLoaderTest {
+
+    @TempDir
+    Path parentDir;
+
+    @TempDir
+    Path submissionDir;
+
+    private static void compile(Path dir, String answer) throws IOException {
+        Path source = dir.resolve("student/Answer.java");
+        Files.createDirectories(source.getParent());
+        Files.writeString(source, "package student;\n"
+                + "public class Answer {\n"
+                + "    @Override public String toString() { return \"" + answer + "\"; }\n"
+                + "}\n");
+        assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null,
+                "-d", dir.toString(), source.toString()));
+    }
+
+    private static String answer(ClassLoader loader) throws ReflectiveOperationException {
+        return loader.loadClass("student.Answer").getConstructor().newInstance().toString();
+    }
+
+    @Test
+    public void submissionClassesFirst() throws IOException, ReflectiveOperationException {
+        compile(parentDir, "staff");
+        compile(submissionDir, "student");
+        try (URLClassLoader parent = new URLClassLoader(new URL[]{parentDir.toUri().toURL()});
+             SubmissionClassLoader unit = new SubmissionClassLoader(submissionDir, parent, List.of())) {
+            assertEquals("student", answer(unit));
+            assertSame(unit, unit.loadClass("student.Answer").getClassLoader());
+            assertEquals(1, unit.getDefinedClassCount());
+            assertEquals(submissionDir.resolve("student/Answer.java").toUri().toURL(),
+                    unit.getResource("student/Answer.java"));
+        }
+    }
+
+    @Test
+    public void staffPackagesFromParent() throws IOException, ReflectiveOperationException {
+        compile(parentDir, "staff");
+        compile(submissionDir, "student");
+        try (URLClassLoader parent = new URLClassLoader(new URL[]{parentDir.toUri().toURL()});
+             SubmissionClassLoader unit = new SubmissionClassLoader(submissionDir, parent, List.of("student"))) {
+            assertEquals("staff", answer(unit));
+            assertEquals(0, unit.getDefinedClassCount());
+            assertTrue(unit.getParentFirst().contains("student."));
+            assertEquals(parentDir.resolve("student/Answer.java").toUri().toURL(),
+                    unit.getResource("student/Answer.java"));
+        }
+    }
+
+    @Test
+    public void gradingPackageFromParent() throws IOException, ReflectiveOperationException {
+        compile(parentDir, "staff");
+        compile(submissionDir, "student");
+        List<String> staffPackages = SubmissionClassLoader.staffPackages("student.Answer", List.of("student", "tests"));
+        assertEquals(List.of("student", "tests"), staffPackages);
+        try (URLClassLoader parent = new URLClassLoader(new URL[]{parentDir.toUri().toURL()});
+             SubmissionClassLoader unit = new SubmissionClassLoader(submissionDir, parent, staffPackages)) {
+            assertEquals("staff", answer(unit));
+            assertEquals(0, unit.getDefinedClassCount());
+        }
+    }
+
+    @Test
+    public void unnamedGradingClassFromParent() throws IOException {
+        try (SubmissionClassLoader unit = new SubmissionClassLoader(submissionDir, getClass().getClassLoader(),
+                SubmissionClassLoader.staffPackages("GradeHello", List.of()))) {
+            assertTrue(unit.isParentFirst("GradeHello"));
+            assertTrue(unit.isParentFirst("GradeHello$Tests"));
+            assertTrue(unit.isParentFirst("GradeHello.class"));
+            assertFalse(unit.isParentFirst("GradeHelloWorld"));
+            assertFalse(unit.isParentFirst("Hello"));
+        }
+    }
+
+    @Test
+    public void missingClassesFromParent() throws IOException, ReflectiveOperationException {
+        compile(parentDir, "staff");
+        try (URLClassLoader parent = new URLClassLoader(new URL[]{parentDir.toUri().toURL()});
+             SubmissionClassLoader unit = new SubmissionClassLoader(submissionDir, parent, List.of())) {
+            assertEquals("staff", answer(unit));
+            assertThrows(ClassNotFoundException.class, () -> unit.loadClass("student.Missing"));
+        }
+    }
+
+    @Test
+    public void jgradeClassesFromParent() throws IOException, ClassNotFoundException {
+        try (SubmissionClassLoader unit = new SubmissionClassLoader(submissionDir,
+                getClass().getClassLoader(), List.of())) {
+            assertSame(Grader.class, unit.loadClass(Grader.class.getName()));
+            assertSame(String.class, unit.loadClass(String.class.getName()));
+            assertTrue(unit.isParentFirst("org.junit.jupiter.api.Test"));
+            assertFalse(unit.isParentFirst("student.Answer"));
+        }
+    }
+
+    @Test
+    public void unloadedOnceClosed() throws IOException, ReflectiveOperationException, InterruptedException {
+        compile(submissionDir, "student");
+        WeakReference<ClassLoader> ref = loadAndClose();
+        for (int i = 0; i < 100 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(ref.get());
+        int live = SubmissionClassLoader.getLiveCount();
+        try (SubmissionClassLoader unit = new SubmissionClassLoader(submissionDir,
+                getClass().getClassLoader(), List.of())) {
+            assertEquals(live + 1, SubmissionClassLoader.getLiveCount());
+        }
+    }
+
+    private WeakReference<ClassLoader> loadAndClose() throws IOException, ReflectiveOperationException {
+        try (SubmissionClassLoader unit = new SubmissionClassLoader(submissionDir,
+                getClass().getClassLoader(), List.of())) {
+            assertEquals("student", answer(unit));
+            return new WeakReference<>(unit);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.github.dscpsyl.jgrade2;
+
+import com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+
+public class SubmissionCompilerTest {
+
+    private static final String ANSWER = "package student;\n"
+            + "public class Answer {\n"
+            + "    static class Inner { }\n"
+            + "    @Override public String toString() { return \"compiled \" + new Inner().getClass().getSimpleName(); }\n"
+            + "}\n";
+
+    private static final String GRADING = "package student;\n"
+            + "import com.github.dscpsyl.jgrade2.Grade;\n"
+            + "import com.github.dscpsyl.jgrade2.Grader;\n"
+            + "import com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult;\n"
+            + "public class Grading {\n"
+            + "    @Grade public void grade(Grader g) {\n"
+            + "        g.addGradedTestResult(new GradedTestResult(new Answer().toString(), \"\", 1.0, \"visible\"));\n"
+            + "    }\n"
+            + "}\n";
+
+    @TempDir
+    Path dir;
+
+    private SubmissionCompiler unit;
+
+    @BeforeEach
+    public void createCompiler() {
+        this.unit = new SubmissionCompiler();
+    }
+
+    @AfterEach
+    public void closeCompiler() throws IOException {
+        this.unit.close();
+    }
+
+    private void write(String name, String source) throws IOException {
+        Path file = dir.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, source);
+    }
+
+    @Test
+    public void compilesInMemory() throws IOException {
+        write("student/Answer.java", ANSWER);
+        SubmissionCompiler.Compilation compilation = this.unit.compile(dir);
+        assertTrue(compilation.succeeded());
+        assertEquals(List.of(), compilation.getDiagnostics());
+        assertTrue(compilation.getClasses().containsKey("student.Answer"));
+        assertTrue(compilation.getClasses().containsKey("student.Answer$Inner"));
+        try (Stream<Path> files = Files.walk(dir)) {
+            assertTrue(files.noneMatch(f -> f.toString().endsWith(".class")));
+        }
+        GradedTestResult result = compilation.toGradedTestResult();
+        assertEquals(SubmissionCompiler.COMPILATION_TEST_NAME, result.getName());
+        assertTrue(result.passed());
+        assertEquals(0.0, result.getPoints());
+        assertEquals("Compiled 1 source files.", result.getOutput());
+    }
+
+    @Test
+    public void loadsCompiledClasses() throws IOException, ReflectiveOperationException {
+        write("student/Answer.java", ANSWER);
+        SubmissionCompiler.Compilation compilation = this.unit.compile(dir);
+        try (SubmissionClassLoader loader = new SubmissionClassLoader(dir, compilation.getClasses(),
+                getClass().getClassLoader(), List.of())) {
+            Class<?> answer = loader.loadClass("student.Answer");
+            assertSame(loader, answer.getClassLoader());
+            assertEquals("compiled Inner", answer.getConstructor().newInstance().toString());
+            assertEquals(2, loader.getDefinedClassCount());
+        }
+    }
+
+    @Test
+    public void reportsErrors() throws IOException {
+        write("student/Answer.java", "package student;\npublic class Answer {\n    int x = \n}\n");
+        SubmissionCompiler.Compilation compilation = this.unit.compile(dir);
+        assertFalse(compilation.succeeded());
+        GradedTestResult result = compilation.toGradedTestResult();
+        assertFalse(result.passed());
+        assertTrue(result.getOutput().startsWith("student/Answer.java:4: error: "), result.getOutput());
+    }
+
+    @Test
+    public void noSources() throws IOException {
+        SubmissionCompiler.Compilation compilation = this.unit.compile(dir);
+        assertTrue(compilation.succeeded());
+        assertTrue(compilation.getClasses().isEmpty());
+    }
+
+    @Test
+    public void gradesCompiledSubmission() throws IOException, ClassNotFoundException {
+        write("student/Answer.java", ANSWER);
+        write("student/Grading.java", GRADING);
+        Grader grader = new Grader();
+        assertEquals(3, this.unit.grade(grader, dir, "student.Grading", List.of(), 1));
+        List<GradedTestResult> results = grader.getGradedTestResults();
+        assertEquals(2, results.size());
+        assertEquals(SubmissionCompiler.COMPILATION_TEST_NAME, results.get(0).getName());
+        assertEquals("compiled Inner", results.get(1).getName());
+    }
+
+    @Test
+    public void skipsGradingWhenCompilingFails() throws IOException, ClassNotFoundException {
+        write("student/Answer.java", "package student;\npublic class Answer { int x = }\n");
+        write("student/Grading.java", GRADING);
+        Grader grader = new Grader();
+        assertEquals(0, this.unit.grade(grader, dir, "student.Grading", List.of(), 1));
+        assertEquals(1, grader.getGradedTestResults().size());
+        assertFalse(grader.getGradedTestResults().get(0).passed());
+    }
+
+    @Test
+    public void compilesConcurrently() throws InterruptedException, ExecutionException, IOException {
+        List<Path> submissions = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Path submission = Files.createDirectories(dir.resolve("s" + i + "/student"));
+            Files.writeString(submission.resolve("Answer.java"), ANSWER);
+            submissions.add(submission.getParent());
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            for (int round = 0; round < 2; round++) {
+                List<Future<SubmissionCompiler.Compilation>> compiled = new ArrayList<>();
+                for (Path submission : submissions) {
+                    compiled.add(pool.submit(() -> this.unit.compile(submission)));
+                }
+                for (Future<SubmissionCompiler.Compilation> compilation : compiled) {
+                    assertTrue(compilation.get().succeeded());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
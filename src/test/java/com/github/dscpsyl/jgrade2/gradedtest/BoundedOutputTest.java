@@ -0,0 +1,141 @@
+package com.github.dscpsyl.jgrade2.gradedtest;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+
+
+public class BoundedOutputTest {
+
+    private static String repeat(char c, int n) {
+        return String.valueOf(c).repeat(n);
+    }
+
+    @Test
+    public void keepsEverythingUnderLimit() {
+        BoundedOutput unit = new BoundedOutput(100);
+        assertTrue(unit.isEmpty());
+        unit.append("hello ");
+        unit.append("world");
+        assertEquals("hello world", unit.toString());
+        assertFalse(unit.isTruncated());
+        assertEquals(0, unit.getDroppedBytes());
+        assertFalse(unit.isEmpty());
+    }
+
+    @Test
+    public void keepsEverythingAtLimit() {
+        BoundedOutput unit = new BoundedOutput(10);
+        unit.append("0123456789");
+        assertEquals("0123456789", unit.toString());
+        assertFalse(unit.isTruncated());
+    }
+
+    @Test
+    public void keepsHeadAndTail() {
+        BoundedOutput unit = new BoundedOutput(10);
+        unit.append("01234");
+        unit.append(repeat('x', 100));
+        unit.append("56789");
+        assertEquals("01234\n[... 100 bytes truncated ...]\n56789", unit.toString());
+        assertEquals(100, unit.getDroppedBytes());
+        assertTrue(unit.isTruncated());
+    }
+
+    @Test
+    public void keepsTailAcrossManySmallWrites() {
+        BoundedOutput unit = new BoundedOutput(6);
+        for (int i = 0; i < 1000; i++) {
+            unit.write('0' + i % 10);
+        }
+        assertEquals("012\n[... 994 bytes truncated ...]\n789", unit.toString());
+    }
+
+    @Test
+    public void keepsTailAcrossChunks() {
+        BoundedOutput unit = new BoundedOutput(40000);
+        StringBuilder expectedTail = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            String line = i + "\n";
+            unit.append(line);
+            expectedTail.append(line);
+        }
+        String tail = expectedTail.substring(expectedTail.length() - 20000);
+        String out = unit.toString();
+        assertTrue(out.endsWith("bytes truncated ...]\n" + tail));
+        assertTrue(out.startsWith("0\n1\n2\n"));
+        assertEquals(expectedTail.length() - 40000, unit.getDroppedBytes());
+    }
+
+    @Test
+    public void characterSpanningHeadAndTail() {
+        BoundedOutput unit = new BoundedOutput(6);
+        unit.append("aaéb");
+        assertEquals("aaéb", unit.toString());
+    }
+
+    @Test
+    public void zeroLimitKeepsNothing() {
+        BoundedOutput unit = new BoundedOutput(0);
+        unit.append("abc");
+        assertEquals("\n[... 3 bytes truncated ...]\n", unit.toString());
+        assertFalse(unit.isEmpty());
+    }
+
+    @Test
+    public void negativeLimit() {
+        assertThrows(IllegalArgumentException.class, () -> new BoundedOutput(-1));
+    }
+
+    @Test
+    public void appendsOtherOutput() {
+        BoundedOutput other = new BoundedOutput(10);
+        other.append("01234" + repeat('x', 50) + "56789");
+        BoundedOutput unit = new BoundedOutput(100);
+        unit.append("before ");
+        unit.append(other);
+        assertEquals("before 01234\n[... 50 bytes truncated ...]\n56789", unit.toString());
+        assertEquals(50, unit.getDroppedBytes());
+    }
+
+    @Test
+    public void appendsOtherOutputInAnotherCharset() {
+        BoundedOutput other = new BoundedOutput(100, StandardCharsets.UTF_16);
+        other.append("grüße");
+        BoundedOutput unit = new BoundedOutput(100);
+        unit.append(other);
+        assertEquals("grüße", unit.toString());
+        assertEquals(StandardCharsets.UTF_8, unit.getCharset());
+        assertEquals(100, unit.getLimit());
+    }
+
+    @Test
+    public void appendingTruncatedOutputEndsHead() {
+        BoundedOutput other = new BoundedOutput(4);
+        other.append("ab" + repeat('x', 10) + "yz");
+        BoundedOutput unit = new BoundedOutput(20);
+        unit.append(other);
+        unit.append("0123456789");
+        assertEquals("ab\n[... 12 bytes truncated ...]\n0123456789", unit.toString());
+    }
+
+    @Test
+    public void concurrentWritesAreCounted() throws InterruptedException {
+        BoundedOutput unit = new BoundedOutput(64);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    unit.append("abcd");
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(4 * 1000 * 4 - 64, unit.getDroppedBytes());
+    }
+}
@@ -9,10 +9,23 @@ import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
 import org.junit.platform.launcher.core.LauncherFactory;
 
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.opentest4j.AssertionFailedError;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
 
+import java.io.PrintStream;
+import com.github.dscpsyl.jgrade2.suites.FirstSuite;
+import com.github.dscpsyl.jgrade2.suites.SecondSuite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 
 public class GradedTestListenerTest {
@@ -32,8 +45,14 @@ public class GradedTestListenerTest {
 
     // Method established in Grader.runJUnitGradedTests
     private void runWithListenerForExample(Class<?> exampleUnitTests, GradedTestListener listener) {
+        runWithListenerForExample(exampleUnitTests, listener, Collections.emptyMap());
+    }
+
+    private void runWithListenerForExample(Class<?> exampleUnitTests, GradedTestListener listener,
+                                           Map<String, String> configurationParameters) {
         LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request()
                 .selectors(selectClass(exampleUnitTests))
+                .configurationParameters(configurationParameters)
                 .build();
 
         LauncherSession session = LauncherFactory.openSession();
@@ -129,8 +148,360 @@ public class GradedTestListenerTest {
         assertNotEquals("", result.getOutput());
     }
 
+    private static List<String> names(List<GradedTestResult> results) {
+        List<String> names = new ArrayList<>();
+        for (GradedTestResult r : results) {
+            names.add(r.getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void parallelResultsInPlanOrder() {
+        GradedTestListener sequential = new GradedTestListener();
+        runWithListenerForExample(SlowGradedTests.class, sequential);
+
+        Map<String, String> parallel = new HashMap<>();
+        parallel.put("junit.jupiter.execution.parallel.enabled", "true");
+        parallel.put("junit.jupiter.execution.parallel.mode.default", "concurrent");
+        runWithListenerForExample(SlowGradedTests.class, this.listener, parallel);
+
+        assertEquals(4, listener.getNumGradedTests());
+        assertEquals(2, listener.getNumFailedGradedTests());
+        assertEquals(names(sequential.getGradedTestResults()), names(listener.getGradedTestResults()));
+    }
+
+    @Test
+    public void capturesErrorFromTest() {
+        GradedTestResult result = getOnlyGradedTestResult(TestWithErrorOutput.class, this.listener);
+        assertEquals(EXAMPLE_STRING, result.getOutput());
+    }
+
+    @Test
+    public void capturesOutputFromThreadStartedByTest() {
+        GradedTestResult result = getOnlyGradedTestResult(TestWithThreadOutput.class, this.listener);
+        assertEquals(EXAMPLE_STRING, result.getOutput());
+    }
+
+    @Test
+    public void restoresStandardStreamsAfterRun() {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        runWithListenerForExample(TestWithOutput.class, this.listener);
+        assertSame(out, System.out);
+        assertSame(err, System.err);
+    }
+
+    @Test
+    public void parallelOutputGoesToEachTest() {
+        Map<String, String> parallel = new HashMap<>();
+        parallel.put("junit.jupiter.execution.parallel.enabled", "true");
+        parallel.put("junit.jupiter.execution.parallel.mode.default", "concurrent");
+        runWithListenerForExample(ChattyGradedTests.class, this.listener, parallel);
+
+        List<GradedTestResult> results = listener.getGradedTestResults();
+        assertEquals(4, results.size());
+        for (GradedTestResult r : results) {
+            assertEquals(ChattyGradedTests.expectedOutput(r.getName()), r.getOutput());
+        }
+    }
+
+    @Test
+    public void groupsResultsBySuite() {
+        LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request()
+                .selectors(selectClass(SecondSuite.class), selectClass(FirstSuite.class))
+                .build();
+        LauncherSession session = LauncherFactory.openSession();
+        Launcher launcher = session.getLauncher();
+        launcher.execute(launcher.discover(request), this.listener);
+        session.close();
+
+        Map<String, List<GradedTestResult>> bySuite = listener.getGradedTestResultsBySuite();
+        assertEquals(new ArrayList<>(Arrays.asList(SecondSuite.class.getName(), FirstSuite.class.getName())),
+                new ArrayList<>(bySuite.keySet()));
+        assertEquals(Arrays.asList("second a", "second inner"), names(bySuite.get(SecondSuite.class.getName())));
+        assertEquals(Arrays.asList("first a", "first b"), names(bySuite.get(FirstSuite.class.getName())));
+    }
+
+    @Test
+    public void timesOutWithoutWaiting() {
+        long start = System.currentTimeMillis();
+        runWithListenerForExample(TimeoutGradedTests.class, this.listener);
+        assertTrue(System.currentTimeMillis() - start < TimeoutGradedTests.IGNORES_INTERRUPT_MILLIS);
+
+        List<GradedTestResult> results = listener.getGradedTestResults();
+        assertEquals(Arrays.asList("fails in time", "fast", "hangs", "ignores interrupt"), names(results));
+        assertEquals(3, listener.getNumFailedGradedTests());
+        assertEquals("FAILED/ABORTED:: \n" + new AssertionFailedError(EXAMPLE_MESSAGE), results.get(0).getOutput());
+        assertEquals(1.0, results.get(1).getScore());
+        for (GradedTestResult r : results.subList(2, 4)) {
+            assertEquals(0.0, r.getScore());
+            assertFalse(r.passed());
+            assertTrue(r.getOutput().startsWith("TIMED OUT:: \n"));
+            assertTrue(r.getOutput().contains("timed out after " + TimeoutGradedTests.LIMIT_MILLIS + " ms"));
+            assertTrue(r.getOutput().endsWith("started " + r.getName() + System.lineSeparator()));
+        }
+        assertEquals(GradedTestResult.NOT_MEASURED, results.get(3).getCpuTimeNanos());
+        assertEquals(GradedTestResult.NOT_MEASURED, results.get(3).getAllocatedBytes());
+    }
+
+    @Test
+    public void usesDefaultTimeout() {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put(GradedTestTimeout.DEFAULT_TIMEOUT_PROPERTY_NAME, "100");
+        runWithListenerForExample(DefaultTimeoutGradedTests.class, this.listener, parameters);
+        List<GradedTestResult> results = listener.getGradedTestResults();
+        assertEquals(Arrays.asList("own limit", "default"), names(results));
+        assertTrue(results.get(0).passed());
+        assertTrue(results.get(1).getOutput().contains("timed out after 100 ms"));
+    }
+
+    @Test
+    public void noTimeoutByDefault() {
+        runWithListenerForExample(DefaultTimeoutGradedTests.class, this.listener);
+        for (GradedTestResult r : listener.getGradedTestResults()) {
+            assertTrue(r.passed());
+        }
+    }
+
+    @Test
+    public void measuresTests() {
+        GradedTestResult r = getOnlyGradedTestResult(CostlyGradedTest.class, this.listener);
+        assertTrue(r.getWallTimeNanos() >= TimeUnit.MILLISECONDS.toNanos(CostlyGradedTest.SLEEP_MILLIS));
+        assertTrue(r.getCpuTimeNanos() == GradedTestResult.NOT_MEASURED || r.getCpuTimeNanos() >= 0);
+        assertTrue(r.getAllocatedBytes() == GradedTestResult.NOT_MEASURED
+                || r.getAllocatedBytes() >= CostlyGradedTest.ALLOCATION);
+    }
+
+    @Test
+    public void measuresTimedTestsOnTheirThread() {
+        GradedTestResult r = getOnlyGradedTestResult(TimedCostlyGradedTest.class, this.listener);
+        assertTrue(r.passed());
+        assertTrue(r.getAllocatedBytes() == GradedTestResult.NOT_MEASURED
+                || r.getAllocatedBytes() >= TimedCostlyGradedTest.ALLOCATION);
+    }
+
+    @Test
+    public void truncatesRunawayOutput() {
+        GradedTestListener bounded = new GradedTestListener(RunawayOutputGradedTest.LIMIT);
+        runWithListenerForExample(RunawayOutputGradedTest.class, bounded);
+        GradedTestResult r = bounded.getGradedTestResults().get(0);
+        assertEquals(RunawayOutputGradedTest.LIMIT, r.getOutputLimit());
+        assertTrue(r.getDroppedOutputBytes() > 0);
+        assertTrue(r.getOutput().startsWith("line 0\n"));
+        assertTrue(r.getOutput().endsWith("line 9999\n"));
+        assertTrue(r.getOutput().contains("bytes truncated"));
+    }
+
+    @Test
+    public void skipsRestOfSuiteWhenStopped() {
+        StoppableGradedTests.RAN.clear();
+        this.listener.setOnResult((suite, r) -> {
+            assertEquals(StoppableGradedTests.class.getName(), suite);
+            return r.passed();
+        });
+        runWithListenerForExample(StoppableGradedTests.class, this.listener,
+                Collections.singletonMap(GradedTestSkip.RUN_ID_PROPERTY_NAME, this.listener.getRunId()));
+
+        List<GradedTestResult> results = listener.getGradedTestResults();
+        assertEquals(Arrays.asList("a", "b", "c", "d"), names(results));
+        assertEquals(Arrays.asList("a", "b"), StoppableGradedTests.RAN);
+        assertTrue(results.get(0).passed());
+        assertFalse(results.get(1).passed());
+        for (GradedTestResult r : results.subList(2, 4)) {
+            assertFalse(r.passed());
+            assertEquals(0.0, r.getScore());
+            assertEquals(EXAMPLE_POINTS, r.getPoints());
+            assertEquals("NOT RUN:: \nskipped remaining tests of " + StoppableGradedTests.class.getName(),
+                    r.getOutput());
+        }
+    }
+
+    @Test
+    public void runsEverythingWithoutRunId() {
+        StoppableGradedTests.RAN.clear();
+        this.listener.setOnResult((suite, r) -> false);
+        runWithListenerForExample(StoppableGradedTests.class, this.listener);
+        assertEquals(Arrays.asList("a", "b", "c", "d"), StoppableGradedTests.RAN);
+        assertEquals(2, listener.getNumFailedGradedTests());
+    }
+
+    @Test
+    public void negativeOutputLimit() {
+        assertThrows(IllegalArgumentException.class, () -> new GradedTestListener(-1));
+    }
+
     /* * HELPER EXAMPLE "UNIT TEST" CLASSES * */
 
+    @TestMethodOrder(MethodOrderer.MethodName.class)
+    public static class StoppableGradedTests {
+        public static final List<String> RAN = Collections.synchronizedList(new ArrayList<>());
+
+        @Test
+        @GradedTest(name = "a", points = EXAMPLE_POINTS)
+        public void a() { RAN.add("a"); }
+
+        @Test
+        @GradedTest(name = "b", points = EXAMPLE_POINTS)
+        public void b() { RAN.add("b"); fail(); }
+
+        @Test
+        @GradedTest(name = "c", points = EXAMPLE_POINTS)
+        public void c() { RAN.add("c"); fail(); }
+
+        @Test
+        @GradedTest(name = "d", points = EXAMPLE_POINTS)
+        public void d() { RAN.add("d"); }
+    }
+
+    public static class FailingGradedTest {
+        @Test
+        @GradedTest(name = "fails", points = 2 * EXAMPLE_POINTS)
+        public void fails() { fail(); }
+    }
+
+    public static class RunawayOutputGradedTest {
+        static final int LIMIT = 1000;
+
+        @Test
+        @GradedTest
+        public void printsALot() {
+            for (int i = 0; i < 10000; i++) {
+                System.out.println("line " + i);
+            }
+        }
+    }
+
+    public static class CostlyGradedTest {
+        static final long SLEEP_MILLIS = 20;
+        static final int ALLOCATION = 1 << 20;
+        static byte[] kept;
+
+        @Test
+        @GradedTest
+        public void costly() throws InterruptedException {
+            kept = new byte[ALLOCATION];
+            Thread.sleep(SLEEP_MILLIS);
+        }
+    }
+
+    public static class TimedCostlyGradedTest {
+        static final int ALLOCATION = 1 << 24;
+        static byte[] kept;
+
+        @Test
+        @GradedTest(timeoutMillis = 60_000)
+        public void costly() {
+            kept = new byte[ALLOCATION];
+        }
+    }
+
+    @TestMethodOrder(MethodOrderer.MethodName.class)
+    public static class TimeoutGradedTests {
+        public static final long LIMIT_MILLIS = 200;
+        static final long IGNORES_INTERRUPT_MILLIS = 3000;
+
+        @Test
+        @GradedTest(name = "fails in time", timeoutMillis = 5000)
+        public void failsInTime() {
+            fail(EXAMPLE_MESSAGE);
+        }
+
+        @Test
+        @GradedTest(name = "fast", timeoutMillis = 5000)
+        public void fast() { }
+
+        @Test
+        @GradedTest(name = "hangs", timeoutMillis = LIMIT_MILLIS)
+        public void hangs() throws InterruptedException {
+            System.out.println("started hangs");
+            Thread.sleep(Long.MAX_VALUE);
+        }
+
+        @Test
+        @GradedTest(name = "ignores interrupt", timeoutMillis = LIMIT_MILLIS)
+        public void ignoresInterrupt() {
+            System.out.println("started ignores interrupt");
+            long end = System.currentTimeMillis() + IGNORES_INTERRUPT_MILLIS;
+            while (System.currentTimeMillis() < end) {
+                try {
+                    Thread.sleep(end - System.currentTimeMillis());
+                } catch (InterruptedException ignored) {
+                    // Keep going, like a student's loop that swallows interrupts.
+                }
+            }
+        }
+    }
+
+    @TestMethodOrder(MethodOrderer.MethodName.class)
+    public static class DefaultTimeoutGradedTests {
+        @Test
+        @GradedTest(name = "default")
+        public void usesDefault() throws InterruptedException {
+            Thread.sleep(300);
+        }
+
+        @Test
+        @GradedTest(name = "own limit", timeoutMillis = 5000)
+        public void ownLimit() throws InterruptedException {
+            Thread.sleep(300);
+        }
+    }
+
+
+    public static class ChattyGradedTests {
+        private static final int LINES = 50;
+
+        static String expectedOutput(String name) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < LINES; i++) {
+                sb.append(name).append(' ').append(i).append(System.lineSeparator());
+            }
+            return sb.toString();
+        }
+
+        private static void chat(String name) throws InterruptedException {
+            for (int i = 0; i < LINES; i++) {
+                System.out.println(name + " " + i);
+                Thread.sleep(1);
+            }
+        }
+
+        @Test
+        @GradedTest(name="a")
+        public void a() throws InterruptedException { chat("a"); }
+
+        @Test
+        @GradedTest(name="b")
+        public void b() throws InterruptedException { chat("b"); }
+
+        @Test
+        @GradedTest(name="c")
+        public void c() throws InterruptedException { chat("c"); }
+
+        @Test
+        @GradedTest(name="d")
+        public void d() throws InterruptedException { chat("d"); }
+    }
+
+    public static class SlowGradedTests {
+        @Test
+        @GradedTest(name="slowest")
+        public void slowest() throws InterruptedException { Thread.sleep(300); }
+
+        @Test
+        @GradedTest(name="slow")
+        public void slow() throws InterruptedException { Thread.sleep(150); fail(); }
+
+        @Test
+        @GradedTest(name="fast")
+        public void fast() { fail(); }
+
+        @Test
+        @GradedTest(name="fastest")
+        public void fastest() { assertTrue(true); }
+    }
+
     public static class BasicGradedTests {
         @Test
         @GradedTest(name=EXAMPLE_NAME, points=2.0)
@@ -186,4 +557,18 @@ public class GradedTestListenerTest {
         @Test
         @GradedTest public void gradedTest() { System.out.print(EXAMPLE_STRING); }
     }
+
+    public static class TestWithErrorOutput {
+        @Test
+        @GradedTest public void gradedTest() { System.err.print(EXAMPLE_STRING); }
+    }
+
+    public static class TestWithThreadOutput {
+        @Test
+        @GradedTest public void gradedTest() throws InterruptedException {
+            Thread t = new Thread(() -> System.out.print(EXAMPLE_STRING));
+            t.start();
+            t.join();
+        }
+    }
 }
@@ -6,6 +6,8 @@ import org.junit.jupiter.api.BeforeEach;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class GradedTestResultTest {
 
@@ -75,4 +77,22 @@ public class GradedTestResultTest {
         });
         
     }
+
+    @Test
+    public void notMeasuredByDefault() {
+        assertFalse(unit.hasMetrics());
+        assertEquals(GradedTestResult.NOT_MEASURED, unit.getWallTimeNanos());
+        assertEquals(GradedTestResult.NOT_MEASURED, unit.getCpuTimeNanos());
+        assertEquals(GradedTestResult.NOT_MEASURED, unit.getAllocatedBytes());
+    }
+
+    @Test
+    public void setMetrics() {
+        unit.setMetrics(GradedTestResult.NOT_MEASURED, GradedTestResult.NOT_MEASURED, 3);
+        assertTrue(unit.hasMetrics());
+        unit.setMetrics(1, 2, 3);
+        assertEquals(1, unit.getWallTimeNanos());
+        assertEquals(2, unit.getCpuTimeNanos());
+        assertEquals(3, unit.getAllocatedBytes());
+    }
 }
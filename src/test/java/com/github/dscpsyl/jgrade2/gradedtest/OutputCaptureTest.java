@@ -0,0 +1,145 @@
+package com.github.dscpsyl.jgrade2.gradedtest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+
+public class OutputCaptureTest {
+
+    private PrintStream originalOut;
+    private PrintStream originalErr;
+    private ByteArrayOutputStream uncaptured;
+
+    @BeforeEach
+    public void initUnit() {
+        this.originalOut = System.out;
+        this.originalErr = System.err;
+        this.uncaptured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(this.uncaptured, true));
+        System.setErr(new PrintStream(this.uncaptured, true));
+    }
+
+    @AfterEach
+    public void restoreStreams() {
+        System.setOut(this.originalOut);
+        System.setErr(this.originalErr);
+    }
+
+    @Test
+    public void capturesOutAndErr() {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        OutputCapture.install();
+        OutputCapture.Target target = OutputCapture.begin(sink);
+        System.out.print("out ");
+        System.err.print("err");
+        OutputCapture.end(target);
+        System.out.print("after");
+        OutputCapture.uninstall();
+        assertEquals("out err", sink.toString());
+        assertEquals("after", this.uncaptured.toString());
+    }
+
+    @Test
+    public void otherThreadsNotCaptured() throws InterruptedException {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        OutputCapture.install();
+        Thread other = new Thread(() -> System.out.print("other"));
+        other.start();
+        other.join();
+        OutputCapture.Target target = OutputCapture.begin(sink);
+        System.out.print("mine");
+        OutputCapture.end(target);
+        OutputCapture.uninstall();
+        assertEquals("mine", sink.toString());
+        assertEquals("other", this.uncaptured.toString());
+    }
+
+    @Test
+    public void startedThreadsInheritTarget() throws InterruptedException {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        OutputCapture.install();
+        OutputCapture.Target target = OutputCapture.begin(sink);
+        Thread child = new Thread(() -> System.out.print("child"));
+        child.start();
+        child.join();
+        OutputCapture.end(target);
+        Thread late = new Thread(() -> System.out.print("late"));
+        late.start();
+        late.join();
+        OutputCapture.uninstall();
+        assertEquals("child", sink.toString());
+        assertEquals("late", this.uncaptured.toString());
+    }
+
+    @Test
+    public void endedTargetNotUsedByInheritingThread() throws InterruptedException {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        OutputCapture.install();
+        OutputCapture.Target target = OutputCapture.begin(sink);
+        Object lock = new Object();
+        Thread child;
+        synchronized (lock) {
+            child = new Thread(() -> {
+                synchronized (lock) {
+                    System.out.print("outlived");
+                }
+            });
+            child.start();
+            OutputCapture.end(target);
+        }
+        child.join();
+        OutputCapture.uninstall();
+        assertEquals("", sink.toString());
+        assertEquals("outlived", this.uncaptured.toString());
+    }
+
+    @Test
+    public void nestedTargetsRestorePrevious() {
+        ByteArrayOutputStream outer = new ByteArrayOutputStream();
+        ByteArrayOutputStream inner = new ByteArrayOutputStream();
+        OutputCapture.install();
+        OutputCapture.Target outerTarget = OutputCapture.begin(outer);
+        System.out.print("a");
+        OutputCapture.Target innerTarget = OutputCapture.begin(inner);
+        System.out.print("b");
+        OutputCapture.end(innerTarget);
+        System.out.print("c");
+        OutputCapture.end(outerTarget);
+        OutputCapture.uninstall();
+        assertEquals("ac", outer.toString());
+        assertEquals("b", inner.toString());
+    }
+
+    @Test
+    public void restoresStreamsAfterLastUninstall() {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        OutputCapture.install();
+        OutputCapture.install();
+        assertNotSame(out, System.out);
+        OutputCapture.uninstall();
+        assertNotSame(out, System.out);
+        OutputCapture.uninstall();
+        assertSame(out, System.out);
+        assertSame(err, System.err);
+        OutputCapture.uninstall();
+        assertSame(out, System.out);
+    }
+
+    @Test
+    public void leavesStreamReplacedByOthers() {
+        PrintStream err = System.err;
+        PrintStream replacement = new PrintStream(new ByteArrayOutputStream());
+        OutputCapture.install();
+        System.setOut(replacement);
+        OutputCapture.uninstall();
+        assertSame(replacement, System.out);
+        assertSame(err, System.err);
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.dscpsyl.jgrade2.gradedtest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class TestRunTest {
+
+    private static GradedTestResult newResult() {
+        return new GradedTestResult("", "", 1.0, GradedTestResult.VISIBLE);
+    }
+
+    @Test
+    public void measuresOnSameThread() {
+        TestRun run = TestRun.start(BoundedOutput.DEFAULT_LIMIT);
+        byte[] allocated = new byte[1 << 16];
+        run.end();
+        GradedTestResult result = newResult();
+        run.recordMetrics(result);
+        assertTrue(result.getWallTimeNanos() >= 0);
+        assertNotEquals(GradedTestResult.NOT_MEASURED, result.getCpuTimeNanos());
+        assertTrue(result.getAllocatedBytes() >= allocated.length);
+    }
+
+    @Test
+    public void notMeasuredBeforeEnd() {
+        GradedTestResult result = newResult();
+        TestRun run = TestRun.start(BoundedOutput.DEFAULT_LIMIT);
+        run.recordMetrics(result);
+        run.end();
+        assertFalse(result.hasMetrics());
+    }
+
+    @Test
+    public void onlyWallTimeWhenEndedOnOtherThread() throws InterruptedException {
+        TestRun run = TestRun.start(BoundedOutput.DEFAULT_LIMIT);
+        Thread other = new Thread(run::end);
+        other.start();
+        other.join();
+        GradedTestResult result = newResult();
+        run.recordMetrics(result);
+        assertTrue(result.getWallTimeNanos() >= 0);
+        assertEquals(GradedTestResult.NOT_MEASURED, result.getCpuTimeNanos());
+        assertEquals(GradedTestResult.NOT_MEASURED, result.getAllocatedBytes());
+    }
+
+    @Test
+    public void measuresWorkMovedElsewhere() throws InterruptedException {
+        TestRun run = TestRun.start(BoundedOutput.DEFAULT_LIMIT);
+        assertSame(run, TestRun.current());
+        int size = 1 << 20;
+        Executable work = run.measuredElsewhere(() -> assertEquals(size, new byte[size].length));
+        Thread other = new Thread(() -> assertDoesNotThrow(work));
+        other.start();
+        other.join();
+        run.end();
+        assertNull(TestRun.current());
+        GradedTestResult result = newResult();
+        run.recordMetrics(result);
+        assertNotEquals(GradedTestResult.NOT_MEASURED, result.getCpuTimeNanos());
+        assertTrue(result.getAllocatedBytes() >= size);
+    }
+
+    @Test
+    public void notMeasuredWhenWorkMovedElsewhereDoesNotFinish() {
+        TestRun run = TestRun.start(BoundedOutput.DEFAULT_LIMIT);
+        run.measuredElsewhere(() -> { });
+        run.end();
+        GradedTestResult result = newResult();
+        run.recordMetrics(result);
+        assertTrue(result.getWallTimeNanos() >= 0);
+        assertEquals(GradedTestResult.NOT_MEASURED, result.getCpuTimeNanos());
+        assertEquals(GradedTestResult.NOT_MEASURED, result.getAllocatedBytes());
+    }
+
+    @Test
+    public void capturesOutput() {
+        OutputCapture.install();
+        try {
+            TestRun run = TestRun.start(BoundedOutput.DEFAULT_LIMIT);
+            System.out.print("captured");
+            run.end();
+            assertEquals("captured", run.getOutput());
+        } finally {
+            OutputCapture.uninstall();
+        }
+    }
+}
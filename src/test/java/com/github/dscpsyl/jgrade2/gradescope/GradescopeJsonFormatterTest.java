@@ -11,7 +11,14 @@ import com.github.dscpsyl.jgrade2.gradedtest.GradedTestResult;
 import org.junit.jupiter.api.BeforeEach;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 public class GradescopeJsonFormatterTest {
 
@@ -83,4 +90,105 @@ public class GradescopeJsonFormatterTest {
     public void prettyPrintSelect(){
         assertAll(()->{unit.setPrettyPrint(2);});
     }
+
+    @Test
+    public void streamMatchesString() throws IOException {
+        grader.setScore(20.0);
+        grader.setExecutionTime(45);
+        grader.addOutput("overall");
+        grader.addGradedTestResult(new GradedTestResult("a", "1", 2.0, "visible"));
+        grader.addGradedTestResult(new GradedTestResult("b", "2", 3.5, "hidden"));
+        unit.setVisibility("after_due_date");
+        unit.setStdoutVisibility("hidden");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        unit.format(grader, out);
+        assertEquals(unit.format(grader), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void streamRejectsInvalidGraderBeforeWriting() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThrows(GradescopeJsonException.class, () -> unit.format(grader, out));
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    public void writesAllFields() throws JSONException {
+        grader.setScore(20.0);
+        grader.setMaxScore(30.0);
+        grader.setExecutionTime(45);
+        grader.addOutput("overall");
+        GradedTestResult r = new GradedTestResult("name", "1.2", 2.5, "visible");
+        r.setScore(1.5);
+        r.addOutput("result output");
+        grader.addGradedTestResult(r);
+        unit.setVisibility("hidden");
+        unit.setStdoutVisibility("visible");
+
+        JSONObject json = new JSONObject(unit.format(grader));
+        assertEquals(20.0, json.getDouble("score"), 0.0);
+        assertEquals(30.0, json.getDouble("max_score"), 0.0);
+        assertEquals(45, json.getLong("execution_time"));
+        assertEquals("overall", json.getString("output"));
+        assertEquals("hidden", json.getString("visibility"));
+        assertEquals("visible", json.getString("stdout_visibility"));
+        JSONObject test = json.getJSONArray("tests").getJSONObject(0);
+        assertEquals("name", test.getString("name"));
+        assertEquals("1.2", test.getString("number"));
+        assertEquals(1.5, test.getDouble("score"), 0.0);
+        assertEquals(2.5, test.getDouble("max_score"), 0.0);
+        assertEquals("result output", test.getString("output"));
+        assertEquals("visible", test.getString("visibility"));
+    }
+
+    @Test
+    public void escapesOutput() throws JSONException {
+        String output = "quote \" backslash \\ newline \n tab \t bell \u0007 unicode \u00e9\u2028";
+        grader.setScore(1.0);
+        grader.addOutput(output);
+        assertEquals(output, new JSONObject(unit.format(grader)).getString("output"));
+    }
+
+    @Test
+    public void streamsUtf8() throws IOException, JSONException {
+        grader.setScore(1.0);
+        grader.addOutput("\u00e9\u4e2d");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        unit.format(grader, out);
+        assertEquals("\u00e9\u4e2d", new JSONObject(out.toString(StandardCharsets.UTF_8)).getString("output"));
+    }
+
+    @Test
+    public void prettyPrintIndents() throws JSONException {
+        grader.setScore(20.0);
+        grader.addGradedTestResult(new GradedTestResult("", "", 20.0, "visible"));
+        unit.setPrettyPrint(2);
+        String s = unit.format(grader);
+        assertValidJson(s);
+        assertTrue(s.startsWith("{\n  \"score\": 20,\n  \"tests\": [\n    {\n      \"name\": \"\","), s);
+        assertTrue(s.endsWith("\n    }\n  ]\n}"), s);
+    }
+
+    @Test
+    public void metricsOffByDefault() throws JSONException {
+        GradedTestResult r = new GradedTestResult("", "", 1.0, "visible");
+        r.setMetrics(10, 20, 30);
+        grader.addGradedTestResult(r);
+        assertFalse(new JSONObject(unit.format(grader)).getJSONArray("tests").getJSONObject(0).has("extra_data"));
+    }
+
+    @Test
+    public void writesMeasuredMetrics() throws JSONException {
+        GradedTestResult r = new GradedTestResult("", "", 1.0, "visible");
+        r.setMetrics(10, GradedTestResult.NOT_MEASURED, 30);
+        grader.addGradedTestResult(r);
+        grader.addGradedTestResult(new GradedTestResult("", "", 1.0, "visible"));
+        unit.setIncludeMetrics(true);
+        JSONObject json = new JSONObject(unit.format(grader));
+        JSONObject extra = json.getJSONArray("tests").getJSONObject(0).getJSONObject("extra_data");
+        assertEquals(10, extra.getLong("wall_time_ns"));
+        assertFalse(extra.has("cpu_time_ns"));
+        assertEquals(30, extra.getLong("allocated_bytes"));
+        assertFalse(json.getJSONArray("tests").getJSONObject(1).has("extra_data"));
+    }
 }
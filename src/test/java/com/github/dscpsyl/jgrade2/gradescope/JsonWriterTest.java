@@ -0,0 +1,63 @@
+package com.github.dscpsyl.jgrade2.gradescope;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+
+public class JsonWriterTest {
+
+    private static String compact(String value) throws IOException {
+        StringWriter out = new StringWriter();
+        new JsonWriter(out, -1).beginObject().name("v").value(value).endObject();
+        return out.toString();
+    }
+
+    @Test
+    public void emptyObject() throws IOException {
+        StringWriter out = new StringWriter();
+        new JsonWriter(out, 2).beginObject().endObject();
+        assertEquals("{}", out.toString());
+    }
+
+    @Test
+    public void compactNesting() throws IOException {
+        StringWriter out = new StringWriter();
+        new JsonWriter(out, 0).beginObject()
+                .name("a").value(1L)
+                .name("b").beginArray().value(2.0).value(2.5).beginObject().endObject().endArray()
+                .name("c").beginArray().endArray()
+                .endObject();
+        assertEquals("{\"a\":1,\"b\":[2,2.5,{}],\"c\":[]}", out.toString());
+    }
+
+    @Test
+    public void prettyNesting() throws IOException {
+        StringWriter out = new StringWriter();
+        new JsonWriter(out, 2).beginObject()
+                .name("a").value("x")
+                .name("b").beginArray().value(1L).endArray()
+                .endObject();
+        assertEquals("{\n  \"a\": \"x\",\n  \"b\": [\n    1\n  ]\n}", out.toString());
+    }
+
+    @Test
+    public void escapesStrings() throws IOException {
+        assertEquals("{\"v\":\"a\\\"b\\\\c\"}", compact("a\"b\\c"));
+        assertEquals("{\"v\":\"\\b\\f\\n\\r\\t\"}", compact("\b\f\n\r\t"));
+        assertEquals("{\"v\":\"\\u0000\\u001f\\u2028\\u2029\"}", compact("\u0000\u001f  "));
+        assertEquals("{\"v\":\"é/\"}", compact("é/"));
+    }
+
+    @Test
+    public void rejectsNonFiniteNumbers() {
+        StringWriter out = new StringWriter();
+        JsonWriter json = new JsonWriter(out, 0);
+        assertThrows(InternalError.class,
+                () -> json.beginArray().value(Double.NaN));
+    }
+}
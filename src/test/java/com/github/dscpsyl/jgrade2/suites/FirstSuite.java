@@ -0,0 +1,19 @@
+package com.github.dscpsyl.jgrade2.suites;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.dscpsyl.jgrade2.gradedtest.GradedTest;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/* An example suite, selected together with SecondSuite by the multi-suite tests. */
+public class FirstSuite {
+    @Test
+    @GradedTest(name="first a", points=1.0)
+    public void a() { assertTrue(true); }
+
+    @Test
+    @GradedTest(name="first b", points=2.0)
+    public void b() { assertTrue(true); }
+}
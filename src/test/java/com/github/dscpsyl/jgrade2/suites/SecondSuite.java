@@ -0,0 +1,23 @@
+package com.github.dscpsyl.jgrade2.suites;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import com.github.dscpsyl.jgrade2.gradedtest.GradedTest;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/* An example suite with nested tests, which belong to this suite too. */
+public class SecondSuite {
+    @Test
+    @GradedTest(name="second a", points=3.0)
+    public void a() { assertTrue(true); }
+
+    @Nested
+    public class Inner {
+        @Test
+        @GradedTest(name="second inner", points=4.0)
+        public void inner() { assertTrue(true); }
+    }
+}